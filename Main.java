@@ -1,6 +1,8 @@
+import ilsi.hash.IntIntHashTable;
 import ilsi.hash.StaticHashTable;
 import ilsi.hash.RandomHashTable;
 import ilsi.hash.OpenAddressingHashTable;
+import ilsi.hash.RobinHoodHashTable;
 
 import java.util.List;
 
@@ -21,6 +23,10 @@ public class Main {
         System.out.println("\n===== Testing OpenAddressingHashTable =====");
         testOpenAddressingHashTable();
         
+        // Test RobinHoodHashTable
+        System.out.println("\n===== Testing RobinHoodHashTable =====");
+        testRobinHoodHashTable();
+        
         // Problem 1: Two-Sum
         System.out.println("\n===== Problem 1: Two-Sum =====");
         testTwoSum();
@@ -86,6 +92,18 @@ public class Main {
         System.out.println("Search for API: " + numbers.search("API"));
         System.out.println("Search for GEC: " + numbers.search("GEC"));
         System.out.println("Size: " + numbers.size());
+
+        // a reseed of a large table rehashes with a new function : every key must still be found
+        RandomHashTable<Integer, Integer> large = new RandomHashTable<Integer, Integer>();
+        int count = 1 << 20;
+        for (int i = 0; i < count; i++) large.insert(i, i);
+        large.reseed();
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (large.search(i) != null) found++;
+        }
+        System.out.println("After reseed: " + found + " of " + large.size() + " keys found");
+        if (found != count) throw new AssertionError("reseed lost " + (count - found) + " keys");
     }
     
     /**
@@ -108,6 +126,27 @@ public class Main {
         System.out.println("Size after deletion: " + numbers.size());
     }
     
+    /**
+     * Test RobinHoodHashTable implementation
+     */
+    public static void testRobinHoodHashTable() {
+        RobinHoodHashTable<String, Integer> numbers = new RobinHoodHashTable<String, Integer>();
+        numbers.insert("ISLI", 25);
+        numbers.insert("GMS", 60);
+        numbers.insert("GME", 40);
+        numbers.insert("API", 450);
+
+        System.out.println("Search for API: " + numbers.search("API"));
+        System.out.println("Search for GEC: " + numbers.search("GEC"));
+        System.out.println("Size: " + numbers.size());
+        
+        System.out.println("\nDeleting GMS...");
+        Integer deleted = numbers.delete("GMS");
+        System.out.println("Deleted value: " + deleted);
+        System.out.println("Search for GME: " + numbers.search("GME"));
+        System.out.println("Size after deletion: " + numbers.size());
+    }
+    
     /**
      * Problem 1: Two-Sum Problem
      * Given an array of integers and a target sum, find indices of two numbers that add up to target
@@ -150,15 +189,15 @@ public class Main {
      * Space complexity: O(n)
      */
     public static int[] twoSum(int[] T, int N) {
-        // Use hash table to store value -> index mapping
-        StaticHashTable<Integer, Integer> map = new StaticHashTable<>();
+        // Use hash table to store value -> index mapping (int keys and values, no boxing)
+        IntIntHashTable map = new IntIntHashTable();
         
         for (int i = 0; i < T.length; i++) {
             int complement = N - T[i];
             
             // Check if complement exists in hash table
-            Integer complementIndex = map.search(complement);
-            if (complementIndex != null) {
+            int complementIndex = map.getOrDefault(complement, -1);
+            if (complementIndex >= 0) {
                 return new int[] {complementIndex, i};
             }
             
@@ -206,39 +245,22 @@ public class Main {
             return false;
         }
         
-        // Use hash table to count character frequencies
-        StaticHashTable<Character, Integer> charCount = new StaticHashTable<>();
+        // Use hash table to count character frequencies (primitive counters, no allocation per update)
+        IntIntHashTable charCount = new IntIntHashTable();
         
         // Count characters in first string
         for (int i = 0; i < normalized1.length(); i++) {
-            char c = normalized1.charAt(i);
-            Integer count = charCount.search(c);
-            if (count == null) {
-                charCount.insert(c, 1);
-            } else {
-                charCount.insert(c, count + 1);
-            }
+            charCount.addTo(normalized1.charAt(i), 1);
         }
         
         // Subtract characters from second string
         for (int i = 0; i < normalized2.length(); i++) {
-            char c = normalized2.charAt(i);
-            Integer count = charCount.search(c);
-            if (count == null) {
-                return false; // Character not in first string
-            } else {
-                charCount.insert(c, count - 1);
-            }
-        }
-        
-        // Check if all counts are zero
-        List<Integer> counts = charCount.values();
-        for (Integer count : counts) {
-            if (count != 0) {
-                return false;
+            if (charCount.addTo(normalized2.charAt(i), -1) < 0) {
+                return false; // More occurrences than in the first string
             }
         }
         
+        // Same lengths and no count went below zero, so all counts are zero
         return true;
     }
     
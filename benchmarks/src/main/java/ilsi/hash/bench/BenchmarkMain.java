@@ -0,0 +1,32 @@
+package ilsi.hash.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar.
+ * It accepts the usual JMH command line, and always adds the GC profiler
+ * so that every result comes with gc.alloc.rate.norm (bytes allocated per operation).
+ * The forked JVMs get the module jdk.incubator.vector.
+ *
+ * Examples :
+ *   java -jar benchmarks.jar HashTableBenchmark.searchHit -p size=1000000
+ *   java -jar benchmarks.jar WorkloadMixBenchmark -p mix=CHURN -p keyKind=ADVERSARIAL
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsPrepend("--add-modules=jdk.incubator.vector")  // the SIMD probing of SwissHashTable
+                .build();
+        new Runner(options).run();
+    }
+}
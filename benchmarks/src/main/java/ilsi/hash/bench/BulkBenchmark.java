@@ -0,0 +1,111 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.HashTable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Batched operations against the equivalent loop of single operations :
+ * searchAll against search on a batch of random keys (half hits, half misses),
+ * and insertAll against insert to build a table.
+ * The tables are large enough not to fit in the caches, where batching matters most.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BulkBenchmark {
+
+    static final int BATCH = 4096;
+
+    @Param({"STATIC", "STATIC_INCREMENTAL", "COMPACT", "RANDOM", "OPEN_ADDRESSING", "ROBIN_HOOD", "CUCKOO", "SWISS", "CONCURRENT_STATIC", "NON_BLOCKING", "SHARDED"})
+    public TableKind table;
+
+    @Param({"INTEGER", "STRING"})
+    public KeyKind keyKind;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Object[] hits;
+    private Object[] batch;
+    private Object[] results;
+    private HashTable<Object, Object> map;
+
+    /**
+     * The keys and values of the build benchmarks
+     */
+    private Object[] build;
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        this.hits = keyKind.generate(size, true);
+        Object[] misses = keyKind.generate(BATCH, false);
+        Random rand = new Random(11);
+        this.batch = new Object[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            batch[i] = rand.nextBoolean() ? hits[rand.nextInt(size)] : misses[i];
+        }
+        this.results = new Object[BATCH];
+        this.build = keyKind.generate(BATCH * 16, true);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillTable() {
+        this.map = table.create();
+        for (int i = 0; i < size; i++) {
+            map.insert(hits[i], hits[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object[] searchLoop() {
+        HashTable<Object, Object> t = this.map;
+        for (int i = 0; i < BATCH; i++) {
+            results[i] = t.search(batch[i]);
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object[] searchAll() {
+        return map.searchAll(batch, results);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH * 16)
+    public HashTable<Object, Object> insertLoop() {
+        HashTable<Object, Object> t = table.create();
+        for (Object key : build) {
+            t.insert(key, key);
+        }
+        return t;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH * 16)
+    public HashTable<Object, Object> insertAll() {
+        HashTable<Object, Object> t = table.create();
+        t.insertAll(build, build);
+        return t;
+    }
+}
@@ -0,0 +1,101 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.BoundedCache;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BoundedCache under a skewed workload : Zipf(0.9) keys over a key space 100 times the cache size,
+ * with a fraction of one-time keys (a scan). Each operation searches a key and inserts it on a miss.
+ * The hits and misses counters give the hit rate of each policy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+
+    static final int KEYS = 1 << 20;
+
+    @Param({"LRU", "W_TINY_LFU"})
+    public BoundedCache.Policy policy;
+
+    @Param({"10000"})
+    public int maximumSize;
+
+    /**
+     * The percentage of one-time keys
+     */
+    @Param({"0", "20"})
+    public int scanPercent;
+
+    private BoundedCache<Integer, Integer> cache;
+    private Integer[] keys;
+    private int cursor;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long hits;
+        public long misses;
+    }
+
+    @Setup(Level.Trial)
+    public void fill() {
+        this.cache = BoundedCache.<Integer, Integer>builder().maximumSize(maximumSize).policy(policy).build();
+        // a precomputed key sequence : the benchmark does not measure the sampling
+        double[] cdf = new double[100 * maximumSize];
+        double sum = 0;
+        for (int i = 0; i < cdf.length; i++) {
+            sum += 1 / Math.pow(i + 1, 0.9);
+            cdf[i] = sum;
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        this.keys = new Integer[KEYS];
+        int scan = cdf.length;
+        for (int i = 0; i < KEYS; i++) {
+            if (random.nextInt(100) < scanPercent) {
+                keys[i] = scan++;
+            } else {
+                int k = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+                keys[i] = (k < 0) ? -k - 1 : k;
+            }
+        }
+        for (int i = 0; i < KEYS; i++) {
+            cache.insert(keys[i], i);
+        }
+    }
+
+    @Benchmark
+    public Integer searchOrInsert(Counters counters) {
+        int i = cursor;
+        cursor = (i + 1) & (KEYS - 1);
+        Integer key = keys[i];
+        Integer value = cache.search(key);
+        if (value == null) {
+            counters.misses++;
+            cache.insert(key, i);
+        } else {
+            counters.hits++;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,106 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.ConcurrentStaticHashTable;
+import ilsi.hash.HashTable;
+import ilsi.hash.NonBlockingHashTable;
+import ilsi.hash.ShardedHashTable;
+import ilsi.hash.StaticHashTable;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a table shared by all the benchmark threads, on a mixed read/write load.
+ * Run it once per thread count to see the scaling, for example :
+ *   java -jar benchmarks.jar ConcurrentBenchmark -t 1
+ *   java -jar benchmarks.jar ConcurrentBenchmark -t 16
+ * GLOBAL_LOCK is the baseline : a StaticHashTable behind one lock.
+ * STRIPED is ConcurrentStaticHashTable, NON_BLOCKING is NonBlockingHashTable,
+ * SHARDED is ShardedHashTable (64 StaticHashTable shards, one lock each).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(Threads.MAX)
+public class ConcurrentBenchmark {
+
+    /**
+     * The shared tables compared
+     */
+    public enum Shared {
+        GLOBAL_LOCK, STRIPED, NON_BLOCKING, SHARDED
+    }
+
+    @Param({"GLOBAL_LOCK", "STRIPED", "NON_BLOCKING", "SHARDED"})
+    public Shared impl;
+
+    @Param({"1000000"})
+    public int size;
+
+    /**
+     * Percentage of searches, the rest is split between inserts and deletes
+     */
+    @Param({"99", "90", "50"})
+    public int readPercent;
+
+    private HashTable<Integer, Integer> map;
+    private Object lock;
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        switch (impl) {
+            case STRIPED:
+                this.map = new ConcurrentStaticHashTable<Integer, Integer>(2 * size);
+                break;
+            case NON_BLOCKING:
+                this.map = new NonBlockingHashTable<Integer, Integer>(size);
+                break;
+            case SHARDED:
+                this.map = new ShardedHashTable<Integer, Integer>(64);
+                map.ensureCapacity(2 * size);
+                break;
+            default:
+                this.map = new StaticHashTable<Integer, Integer>();
+        }
+        this.lock = new Object();
+        for (int i = 0; i < size; i++) {
+            map.insert(i, i);
+        }
+    }
+
+    @Benchmark
+    public Integer mixed() {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        int key = rand.nextInt(2 * size);
+        int op = rand.nextInt(100);
+        if (impl == Shared.GLOBAL_LOCK) {
+            synchronized (lock) {
+                return apply(op, key);
+            }
+        }
+        return apply(op, key);
+    }
+
+    private Integer apply(int op, int key) {
+        if (op < readPercent) return map.search(key);
+        if ((op & 1) == 0) return map.insert(key, key);
+        return map.delete(key);
+    }
+}
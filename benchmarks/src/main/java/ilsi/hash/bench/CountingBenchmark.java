@@ -0,0 +1,130 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.CountingHashTable;
+import ilsi.hash.IntIntHashTable;
+import ilsi.hash.OpenAddressingHashTable;
+import ilsi.hash.StaticHashTable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frequency counting over a stream of int ids (the anagram / two-sum pattern of Main) :
+ * boxed StaticHashTable search + insert, the single probe merge of StaticHashTable and
+ * OpenAddressingHashTable, CountingHashTable.increment (boxed keys, primitive counts)
+ * and the primitive IntIntHashTable.addTo.
+ * The primitive version should report gc.alloc.rate.norm close to 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountingBenchmark {
+
+    static final int STREAM = 1 << 16;
+
+    /**
+     * The number of distinct ids in the stream
+     */
+    @Param({"64", "4096", "65536"})
+    public int distinct;
+
+    private int[] stream;
+    private StaticHashTable<Integer, Integer> boxed;
+    private StaticHashTable<Integer, Integer> merged;
+    private OpenAddressingHashTable<Integer, Integer> mergedOpen;
+    private CountingHashTable<Integer> counting;
+    private IntIntHashTable primitive;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random rand = new Random(7);
+        this.stream = new int[STREAM];
+        for (int i = 0; i < STREAM; i++) {
+            stream[i] = rand.nextInt(distinct) * 0x9E3779B9;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        this.boxed = new StaticHashTable<Integer, Integer>();
+        this.merged = new StaticHashTable<Integer, Integer>();
+        this.mergedOpen = new OpenAddressingHashTable<Integer, Integer>();
+        this.counting = new CountingHashTable<Integer>();
+        this.primitive = new IntIntHashTable();
+        for (int id : stream) {
+            boxed.insert(id, 0);
+            merged.insert(id, 0);
+            mergedOpen.insert(id, 0);
+            counting.insert(id, 0L);
+            primitive.insert(id, 0);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM)
+    public StaticHashTable<Integer, Integer> countBoxed() {
+        StaticHashTable<Integer, Integer> t = this.boxed;
+        for (int id : stream) {
+            Integer count = t.search(id);
+            t.insert(id, count == null ? 1 : count + 1);
+        }
+        return t;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM)
+    public StaticHashTable<Integer, Integer> countMerge() {
+        StaticHashTable<Integer, Integer> t = this.merged;
+        for (int id : stream) {
+            t.merge(id, 1, Integer::sum);
+        }
+        return t;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM)
+    public OpenAddressingHashTable<Integer, Integer> countMergeOpenAddressing() {
+        OpenAddressingHashTable<Integer, Integer> t = this.mergedOpen;
+        for (int id : stream) {
+            t.merge(id, 1, Integer::sum);
+        }
+        return t;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM)
+    public CountingHashTable<Integer> countCountingTable() {
+        CountingHashTable<Integer> t = this.counting;
+        for (int id : stream) {
+            t.increment(id);
+        }
+        return t;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM)
+    public IntIntHashTable countPrimitive() {
+        IntIntHashTable t = this.primitive;
+        for (int id : stream) {
+            t.addTo(id, 1);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,70 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.HashTable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A hash-flooding attack : every key has the same hashCode() (KeyKind.FLOOD).
+ * The chained tables treeify the bucket and search in O(log n), the open addressing
+ * tables have no defense and probe the whole cluster, the cuckoo table keeps MAX_SAME_HASH
+ * keys in the two buckets and puts the others in its sorted overflow, searched in O(log n).
+ *
+ * The sizes stay small : building an open addressing table under flooding costs O(n^2).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FloodBenchmark {
+
+    @Param({"STATIC", "STATIC_INCREMENTAL", "RANDOM", "OPEN_ADDRESSING", "ROBIN_HOOD", "CUCKOO"})
+    public TableKind table;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private HashTable<Object, Object> map;
+    private Object[] hits;
+    private Object[] misses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        this.hits = KeyKind.FLOOD.generate(size, true);
+        this.misses = KeyKind.FLOOD.generate(size, false);
+        this.map = table.create();
+        for (int i = 0; i < size; i++) {
+            map.insert(hits[i], i);
+        }
+    }
+
+    @Benchmark
+    public Object searchHit() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return map.search(hits[i]);
+    }
+
+    @Benchmark
+    public Object searchMiss() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return map.search(misses[i]);
+    }
+}
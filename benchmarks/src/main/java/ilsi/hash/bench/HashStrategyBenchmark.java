@@ -0,0 +1,122 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.HashStrategies;
+import ilsi.hash.HashStrategy;
+import ilsi.hash.StaticHashTable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The hash functions of HashStrategies : the cost of one hash, and a search in a
+ * StaticHashTable using it. MODULO is the former RandomHashTable function ((a*k + b) mod p) mod m,
+ * with its two divisions, as a baseline.
+ *
+ * keyPattern SEQUENTIAL (0, 1, 2, ...) is the easy case for the weak functions,
+ * STRIDED (multiples of 4096) shows the functions whose high bits ignore some bits of the key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashStrategyBenchmark {
+
+    static final int KEYS = 1024;
+
+    /**
+     * The strategies compared
+     */
+    public enum Function {
+        MULTIPLY_SHIFT, MULTIPLY_SHIFT_64, MERSENNE, WYMIX, XXHASH32, TABULATION, MODULO;
+
+        HashStrategy create() {
+            switch (this) {
+                case MULTIPLY_SHIFT_64:
+                    return HashStrategies.multiplyShift64(42);
+                case MERSENNE:
+                    return HashStrategies.mersenne(42);
+                case WYMIX:
+                    return HashStrategies.wyMix(42);
+                case XXHASH32:
+                    return HashStrategies.xxHash32(42);
+                case TABULATION:
+                    return HashStrategies.tabulation(42);
+                case MODULO:
+                    final long p = 1000000007L;
+                    return new HashStrategy() {
+                        public int hash(int h) {
+                            // the index is taken from the top bits : shift the residue up to them
+                            return (int) (((123456789L * Math.abs((long) h) + 987654321L) % p) % (1L << 30)) << 2;
+                        }
+                    };
+                default:
+                    return HashStrategies.MULTIPLY_SHIFT;
+            }
+        }
+    }
+
+    @Param({"MULTIPLY_SHIFT", "MULTIPLY_SHIFT_64", "MERSENNE", "WYMIX", "XXHASH32", "TABULATION", "MODULO"})
+    public Function function;
+
+    @Param({"SEQUENTIAL", "STRIDED"})
+    public String keyPattern;
+
+    @Param({"1000000"})
+    public int size;
+
+    private HashStrategy strategy;
+    private int[] keys;
+    private Integer[] boxed;
+    private StaticHashTable<Integer, Integer> map;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        this.strategy = function.create();
+        int stride = keyPattern.equals("STRIDED") ? 4096 : 1;
+        this.keys = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i * 7919 * stride;
+        }
+        this.boxed = new Integer[size];
+        this.map = new StaticHashTable<Integer, Integer>(16, strategy);
+        map.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i * stride;
+            map.insert(boxed[i], i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int hash() {
+        HashStrategy s = this.strategy;
+        int x = 0;
+        for (int k : keys) {
+            x ^= s.hash(k);
+        }
+        return x;
+    }
+
+    @Benchmark
+    public Integer searchHit() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return map.search(boxed[i]);
+    }
+}
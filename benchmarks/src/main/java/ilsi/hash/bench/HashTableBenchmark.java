@@ -0,0 +1,203 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.HashTable;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the single operations of every HashTable implementation :
+ * insert, search (hit and miss), delete, keys and values, plus the build of a full table.
+ *
+ * Run with "-prof gc" (the default of BenchmarkMain) to get gc.alloc.rate.norm,
+ * the number of bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HashTableBenchmark {
+
+    @Param({"STATIC", "STATIC_INCREMENTAL", "COMPACT", "RANDOM", "OPEN_ADDRESSING", "ROBIN_HOOD", "CUCKOO", "SWISS", "CONCURRENT_STATIC", "NON_BLOCKING", "SHARDED"})
+    public TableKind table;
+
+    @Param({"INTEGER", "STRING", "ADVERSARIAL"})
+    public KeyKind keyKind;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    /**
+     * Keys stored in the table
+     */
+    private Object[] hits;
+
+    /**
+     * Keys never stored in the table
+     */
+    private Object[] misses;
+
+    private HashTable<Object, Object> map;
+    private int cursor;
+
+    /**
+     * The growing table of growInsert, and the number of keys inserted in it
+     */
+    private HashTable<Object, Object> growing;
+    private int grown;
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        this.hits = keyKind.generate(size, true);
+        this.misses = keyKind.generate(size, false);
+    }
+
+    /**
+     * A fresh full table for every iteration, so that the write benchmarks
+     * of one iteration do not change the table seen by the next one.
+     */
+    @Setup(Level.Iteration)
+    public void fillTable() {
+        this.map = table.create();
+        for (int i = 0; i < size; i++) {
+            map.insert(hits[i], hits[i]);
+        }
+        this.cursor = 0;
+        this.growing = table.create();
+        this.grown = 0;
+    }
+
+    /**
+     * Returns the index of the next key to use, cycling over all the keys
+     */
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Object searchHit() {
+        return map.search(hits[next()]);
+    }
+
+    @Benchmark
+    public Object searchMiss() {
+        return map.search(misses[next()]);
+    }
+
+    /**
+     * Replaces the value of a key already in the table (the size does not change)
+     */
+    @Benchmark
+    public Object insertExisting() {
+        Object k = hits[next()];
+        return map.insert(k, k);
+    }
+
+    /**
+     * Removes a key and puts it back (the size does not change)
+     */
+    @Benchmark
+    public Object deleteInsert() {
+        Object k = hits[next()];
+        map.delete(k);
+        return map.insert(k, k);
+    }
+
+    @Benchmark
+    public List<Object> keys() {
+        return map.keys();
+    }
+
+    @Benchmark
+    public List<Object> values() {
+        return map.values();
+    }
+
+    /**
+     * Full scans without a list : forEach, the reusable cursor and a parallel stream.
+     * forEach and cursorScan should report gc.alloc.rate.norm close to 0 B/op.
+     */
+    @Benchmark
+    public void forEachScan(Blackhole bh) {
+        map.forEach((k, v) -> bh.consume(v));
+    }
+
+    @Benchmark
+    public void cursorScan(Blackhole bh) {
+        HashTable.Cursor<Object, Object> c = map.cursor();
+        while (c.advance()) {
+            bh.consume(c.value());
+        }
+    }
+
+    @Benchmark
+    public long parallelStreamScan() {
+        return map.parallelStream().filter(e -> e.getValue() != null).count();
+    }
+
+    /**
+     * Builds a table of size entries from an empty table, resizes included
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public HashTable<Object, Object> build() {
+        HashTable<Object, Object> t = table.create();
+        for (int i = 0; i < size; i++) {
+            t.insert(hits[i], hits[i]);
+        }
+        return t;
+    }
+
+    /**
+     * Builds a table of size entries from a table presized with ensureCapacity : no resize
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public HashTable<Object, Object> buildPresized() {
+        HashTable<Object, Object> t = table.createPresized(size);
+        for (int i = 0; i < size; i++) {
+            t.insert(hits[i], hits[i]);
+        }
+        return t;
+    }
+
+    /**
+     * Latency distribution of inserts into a growing table : the resizes show up
+     * in the high percentiles (p99.9, p99.99) of this benchmark.
+     * The table is replaced by a new empty one after size inserts.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Object growInsert() {
+        if (grown == size) {
+            growing = table.create();
+            grown = 0;
+        }
+        Object k = hits[grown++];
+        return growing.insert(k, k);
+    }
+}
@@ -0,0 +1,113 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.FixedWidthCodec;
+import ilsi.hash.HashAggregate;
+import ilsi.hash.HashJoin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HashJoin and HashAggregate over Long records : in memory, spilling to disk with a memory budget
+ * of a tenth of the build side (Grace hash join), and the parallel partitioned mode.
+ * Each invocation joins or aggregates the whole inputs, the time is per join.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JoinBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Long[] build;
+    private Long[] probe;
+    private Path dir;
+    private long spillBudget;
+
+    @Setup(Level.Trial)
+    public void generateRecords() throws IOException {
+        Random random = new Random(42);
+        this.build = new Long[size];
+        this.probe = new Long[2 * size];
+        for (int i = 0; i < size; i++) build[i] = (long) random.nextInt(size);
+        for (int i = 0; i < probe.length; i++) probe[i] = (long) random.nextInt(2 * size);
+        this.dir = Files.createTempDirectory("join-bench");
+        this.spillBudget = (long) size * HashJoin.DEFAULT_RECORD_SIZE / 10;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+        Files.deleteIfExists(dir);
+    }
+
+    private long join(long budget, int parallelism) throws IOException {
+        LongAdder sum = new LongAdder();
+        HashJoin<Long, Long, Long> join = HashJoin.<Long, Long, Long>builder(b -> b, p -> p)
+                .memoryBudget(budget).spillTo(dir, FixedWidthCodec.LONG, FixedWidthCodec.LONG)
+                .parallelism(parallelism).build();
+        join.join(Arrays.asList(build).iterator(), Arrays.asList(probe).iterator(), (b, p) -> sum.add(p));
+        return sum.sum();
+    }
+
+    private long aggregate(long budget, int parallelism) throws IOException {
+        LongAdder sum = new LongAdder();
+        HashAggregate<Long, Long, Long> aggregate = HashAggregate.<Long, Long, Long>builder(r -> r % size, () -> 0L, (s, r) -> s + r)
+                .memoryBudget(budget).spillTo(dir, FixedWidthCodec.LONG)
+                .parallelism(parallelism).build();
+        aggregate.aggregate(Arrays.asList(probe).iterator(), (k, s) -> sum.add(s));
+        return sum.sum();
+    }
+
+    @Benchmark
+    public long joinInMemory() throws IOException {
+        return join(Long.MAX_VALUE, 1);
+    }
+
+    @Benchmark
+    public long joinSpill() throws IOException {
+        return join(spillBudget, 1);
+    }
+
+    @Benchmark
+    public long joinParallel() throws IOException {
+        return join(spillBudget, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public long aggregateInMemory() throws IOException {
+        return aggregate(Long.MAX_VALUE, 1);
+    }
+
+    @Benchmark
+    public long aggregateSpill() throws IOException {
+        return aggregate(spillBudget, 1);
+    }
+
+    @Benchmark
+    public long aggregateParallel() throws IOException {
+        return aggregate(spillBudget, Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,92 @@
+package ilsi.hash.bench;
+
+/**
+ * The families of keys used by the benchmarks.
+ *
+ * Keys are generated from a bijective scramble of their index, so the keys of a
+ * family are all distinct, and the "hit" keys (even indices) never collide with the
+ * "miss" keys (odd indices).
+ */
+public enum KeyKind {
+
+    /**
+     * Boxed integers spread over the whole int range
+     */
+    INTEGER {
+        public Object key(int index) {
+            return scramble(index);
+        }
+    },
+
+    /**
+     * Short strings, the typical case for identifiers
+     */
+    STRING {
+        public Object key(int index) {
+            return "key-" + Integer.toHexString(scramble(index));
+        }
+    },
+
+    /**
+     * Strings crafted so that groups of 16 indices share the same hashCode().
+     * "Aa" and "BB" have the same hash code, so every string made of 4 such blocks
+     * behind a common prefix collides with the 15 others of its group. The first block
+     * is the lowest bit of the index : the hit keys (even indices) collide in groups of 8,
+     * and so do the miss keys.
+     */
+    ADVERSARIAL {
+        public Object key(int index) {
+            StringBuilder s = new StringBuilder(16);
+            s.append(Integer.toString(index >>> 4, 36));
+            for (int b = 0; b < 4; b++) {
+                s.append(((index >>> b) & 1) == 0 ? "Aa" : "BB");
+            }
+            return s.toString();
+        }
+    },
+
+    /**
+     * Strings that all share the same hashCode() (a hash-flooding attack) :
+     * the 20 low bits of the index written with "Aa" and "BB" blocks, up to 2^20 keys.
+     */
+    FLOOD {
+        public Object key(int index) {
+            StringBuilder s = new StringBuilder(40);
+            for (int b = 19; b >= 0; b--) {
+                s.append(((index >>> b) & 1) == 0 ? "Aa" : "BB");
+            }
+            return s.toString();
+        }
+    };
+
+    /**
+     * Returns the key number index of this family.
+     * Two different indices always give two different (non equal) keys.
+     * @param index the index of the key
+     * @return the key
+     */
+    public abstract Object key(int index);
+
+    /**
+     * Generates the keys of a benchmark.
+     * @param count the number of keys
+     * @param hits true for the keys stored in the table, false for keys that are never stored
+     * @return an array of count distinct keys
+     */
+    public Object[] generate(int count, boolean hits) {
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(2 * i + (hits ? 0 : 1));
+        }
+        return keys;
+    }
+
+    /**
+     * Multiplication by an odd constant is a bijection modulo 2^32,
+     * the xor-shift breaks the regularity of the low bits.
+     */
+    private static int scramble(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,109 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.FixedWidthCodec;
+import ilsi.hash.HashTable;
+import ilsi.hash.OffHeapHashTable;
+import ilsi.hash.StaticHashTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * An int -> long table on the heap (StaticHashTable) against the same table off-heap,
+ * in anonymous memory and in a memory-mapped file.
+ * Compare the time per operation and gc.alloc.rate.norm ; the off-heap tables still box the
+ * values they return, but the table itself puts no object on the heap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class OffHeapBenchmark {
+
+    /**
+     * The storages compared
+     */
+    public enum Storage {
+        HEAP, OFF_HEAP, MAPPED
+    }
+
+    @Param({"HEAP", "OFF_HEAP", "MAPPED"})
+    public Storage storage;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private int[] keys;
+    private HashTable<Integer, Long> map;
+    private Path file;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        this.keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i * 0x9E3779B9;
+        }
+        switch (storage) {
+            case OFF_HEAP:
+                this.map = new OffHeapHashTable<Integer, Long>(FixedWidthCodec.INT, FixedWidthCodec.LONG, 16);
+                break;
+            case MAPPED:
+                this.file = Files.createTempFile("offheap-bench", ".bin");
+                this.map = new OffHeapHashTable<Integer, Long>(FixedWidthCodec.INT, FixedWidthCodec.LONG, 16, file);
+                break;
+            default:
+                this.map = new StaticHashTable<Integer, Long>();
+        }
+        map.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            map.insert(keys[i], (long) i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void release() throws IOException {
+        if (map instanceof OffHeapHashTable) {
+            ((OffHeapHashTable<Integer, Long>) map).close();
+        }
+        if (file != null) Files.deleteIfExists(file);
+    }
+
+    /**
+     * Returns the index of the next key to use, cycling over all the keys
+     */
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Long searchHit() {
+        return map.search(keys[next()]);
+    }
+
+    @Benchmark
+    public Long insertExisting() {
+        int i = next();
+        return map.insert(keys[i], (long) i);
+    }
+}
@@ -0,0 +1,95 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.StaticHashTable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The parallel build (insertAllParallel) and the parallel rehash of StaticHashTable against
+ * insertAll, and against the same code forked with a single ForkJoinPool worker
+ * (-Djava.util.concurrent.ForkJoinPool.common.parallelism=1) to see how they scale with the cores.
+ * Each invocation builds or grows a whole table, the time is per table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ParallelBuildBenchmark {
+
+    @Param({"STATIC", "RANDOM"})
+    public TableKind table;
+
+    @Param({"INTEGER", "STRING"})
+    public KeyKind keyKind;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Object[] keys;
+
+    /**
+     * A full table, grown by the rehash benchmarks
+     */
+    private StaticHashTable<Object, Object> full;
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        this.keys = keyKind.generate(size, true);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillTable() {
+        this.full = (StaticHashTable<Object, Object>) table.create();
+        full.insertAll(keys, keys);
+    }
+
+    @Benchmark
+    public StaticHashTable<Object, Object> insertAll() {
+        StaticHashTable<Object, Object> t = (StaticHashTable<Object, Object>) table.create();
+        t.insertAll(keys, keys);
+        return t;
+    }
+
+    @Benchmark
+    public StaticHashTable<Object, Object> insertAllParallel() {
+        StaticHashTable<Object, Object> t = (StaticHashTable<Object, Object>) table.create();
+        t.insertAllParallel(keys, keys);
+        return t;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-Djava.util.concurrent.ForkJoinPool.common.parallelism=1"})
+    public StaticHashTable<Object, Object> insertAllParallelOneWorker() {
+        StaticHashTable<Object, Object> t = (StaticHashTable<Object, Object>) table.create();
+        t.insertAllParallel(keys, keys);
+        return t;
+    }
+
+    @Benchmark
+    public StaticHashTable<Object, Object> rehash() {
+        full.ensureCapacity(4 * size);
+        return full;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-Djava.util.concurrent.ForkJoinPool.common.parallelism=1"})
+    public StaticHashTable<Object, Object> rehashOneWorker() {
+        full.ensureCapacity(4 * size);
+        return full;
+    }
+}
@@ -0,0 +1,102 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.PerfectHashTable;
+import ilsi.hash.StaticHashTable;
+import ilsi.hash.SwissHashTable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searches in a PerfectHashTable frozen from a StaticHashTable, against the StaticHashTable itself
+ * and a SwissHashTable of the same keys. PerfectHashTable is immutable, so it has no TableKind entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerfectHashBenchmark {
+
+    @Param({"INTEGER", "STRING"})
+    public KeyKind keyKind;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private StaticHashTable<Object, Object> source;
+    private SwissHashTable<Object, Object> swiss;
+    private PerfectHashTable<Object, Object> perfect;
+    private Object[] hits;
+    private Object[] misses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        this.hits = keyKind.generate(size, true);
+        this.misses = keyKind.generate(size, false);
+        this.source = new StaticHashTable<Object, Object>();
+        this.swiss = SwissHashTable.withExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            source.insert(hits[i], i);
+            swiss.insert(hits[i], i);
+        }
+        this.perfect = PerfectHashTable.freeze(source);
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Object searchHitPerfect() {
+        return perfect.search(hits[next()]);
+    }
+
+    @Benchmark
+    public Object searchMissPerfect() {
+        return perfect.search(misses[next()]);
+    }
+
+    @Benchmark
+    public Object searchHitStatic() {
+        return source.search(hits[next()]);
+    }
+
+    @Benchmark
+    public Object searchMissStatic() {
+        return source.search(misses[next()]);
+    }
+
+    @Benchmark
+    public Object searchHitSwiss() {
+        return swiss.search(hits[next()]);
+    }
+
+    @Benchmark
+    public Object searchMissSwiss() {
+        return swiss.search(misses[next()]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PerfectHashTable<Object, Object> freeze() {
+        return PerfectHashTable.freeze(source);
+    }
+}
@@ -0,0 +1,83 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.FixedWidthCodec;
+import ilsi.hash.HashTable;
+import ilsi.hash.HashTableSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup cost of a table : rebuilding it with insert against loading a snapshot of it,
+ * and the cost of writing the snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SnapshotBenchmark {
+
+    @Param({"STATIC", "RANDOM", "OPEN_ADDRESSING", "ROBIN_HOOD"})
+    public TableKind table;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Integer[] keys;
+    private HashTable<Integer, Long> map;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        this.keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i * 0x9E3779B9;
+        }
+        this.map = this.rebuild();
+        this.file = Files.createTempFile("snapshot-bench", ".snap");
+        HashTableSnapshot.write(map, file, FixedWidthCodec.INT, FixedWidthCodec.LONG);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public HashTable<Integer, Long> rebuild() {
+        HashTable<Object, Object> t = table.create();
+        for (int i = 0; i < size; i++) {
+            t.insert(keys[i], (long) i);
+        }
+        return (HashTable<Integer, Long>) (HashTable<?, ?>) t;
+    }
+
+    @Benchmark
+    public HashTable<Integer, Long> load() throws IOException {
+        return HashTableSnapshot.load(file, FixedWidthCodec.INT, FixedWidthCodec.LONG);
+    }
+
+    @Benchmark
+    public Path write() throws IOException {
+        HashTableSnapshot.write(map, file, FixedWidthCodec.INT, FixedWidthCodec.LONG);
+        return file;
+    }
+}
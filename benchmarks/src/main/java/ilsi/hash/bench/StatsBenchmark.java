@@ -0,0 +1,68 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.HashTable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the statistics (HashTableStats) : the same lookups without the statistics
+ * (the default, the JIT removes the instrumentation) and forked with -Dilsi.hash.stats=true
+ * (probe histogram and two System.nanoTime() per operation).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsBenchmark {
+
+    @Param({"STATIC", "OPEN_ADDRESSING", "ROBIN_HOOD", "SWISS"})
+    public TableKind table;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private HashTable<Object, Object> map;
+    private Object[] hits;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        this.hits = KeyKind.INTEGER.generate(size, true);
+        this.map = table.create();
+        for (int i = 0; i < size; i++) {
+            map.insert(hits[i], i);
+        }
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Object searchHitDisabled() {
+        return map.search(hits[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dilsi.hash.stats=true")
+    public Object searchHitEnabled() {
+        return map.search(hits[next()]);
+    }
+}
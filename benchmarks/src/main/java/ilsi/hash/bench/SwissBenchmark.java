@@ -0,0 +1,81 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.SwissHashTable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The group probing of SwissHashTable with the Vector API against the scalar SWAR fallback
+ * (forked with -Dilsi.hash.vector=false). The table is filled up to its max load factor
+ * so that the probes see full groups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SwissBenchmark {
+
+    @Param({"INTEGER", "STRING"})
+    public KeyKind keyKind;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private SwissHashTable<Object, Object> map;
+    private Object[] hits;
+    private Object[] misses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        this.hits = keyKind.generate(size, true);
+        this.misses = keyKind.generate(size, false);
+        this.map = SwissHashTable.withExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            map.insert(hits[i], i);
+        }
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1 == size) ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Object searchHitVector() {
+        return map.search(hits[next()]);
+    }
+
+    @Benchmark
+    public Object searchMissVector() {
+        return map.search(misses[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dilsi.hash.vector=false")
+    public Object searchHitScalar() {
+        return map.search(hits[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dilsi.hash.vector=false")
+    public Object searchMissScalar() {
+        return map.search(misses[next()]);
+    }
+}
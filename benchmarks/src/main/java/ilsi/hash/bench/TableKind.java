@@ -0,0 +1,106 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.CompactHashTable;
+import ilsi.hash.ConcurrentStaticHashTable;
+import ilsi.hash.CuckooHashTable;
+import ilsi.hash.HashTable;
+import ilsi.hash.NonBlockingHashTable;
+import ilsi.hash.OpenAddressingHashTable;
+import ilsi.hash.RandomHashTable;
+import ilsi.hash.RobinHoodHashTable;
+import ilsi.hash.ShardedHashTable;
+import ilsi.hash.StaticHashTable;
+import ilsi.hash.SwissHashTable;
+
+/**
+ * The general-purpose HashTable implementations covered by the benchmarks.
+ * The subclasses of ilsi.hash.HashTable that cannot run an Object -> Object workload have no entry
+ * and their own benchmark : the immutable PerfectHashTable (PerfectHashBenchmark), the evicting
+ * BoundedCache (CacheBenchmark), CountingHashTable with its Long counts (CountingBenchmark) and
+ * OffHeapHashTable with its fixed-width codecs (OffHeapBenchmark).
+ */
+public enum TableKind {
+
+    STATIC {
+        public HashTable<Object, Object> create() {
+            return new StaticHashTable<Object, Object>();
+        }
+    },
+
+    STATIC_INCREMENTAL {
+        public HashTable<Object, Object> create() {
+            return new StaticHashTable<Object, Object>(16, true);
+        }
+    },
+
+    COMPACT {
+        public HashTable<Object, Object> create() {
+            return new CompactHashTable<Object, Object>();
+        }
+    },
+
+    RANDOM {
+        public HashTable<Object, Object> create() {
+            return new RandomHashTable<Object, Object>();
+        }
+    },
+
+    OPEN_ADDRESSING {
+        public HashTable<Object, Object> create() {
+            return new OpenAddressingHashTable<Object, Object>();
+        }
+    },
+
+    ROBIN_HOOD {
+        public HashTable<Object, Object> create() {
+            return new RobinHoodHashTable<Object, Object>();
+        }
+    },
+
+    CUCKOO {
+        public HashTable<Object, Object> create() {
+            return new CuckooHashTable<Object, Object>();
+        }
+    },
+
+    SWISS {
+        public HashTable<Object, Object> create() {
+            return new SwissHashTable<Object, Object>();
+        }
+    },
+
+    CONCURRENT_STATIC {
+        public HashTable<Object, Object> create() {
+            return new ConcurrentStaticHashTable<Object, Object>();
+        }
+    },
+
+    NON_BLOCKING {
+        public HashTable<Object, Object> create() {
+            return new NonBlockingHashTable<Object, Object>();
+        }
+    },
+
+    SHARDED {
+        public HashTable<Object, Object> create() {
+            return new ShardedHashTable<Object, Object>();
+        }
+    };
+
+    /**
+     * Creates a new empty table with its default capacity : the benchmarks measure its growth
+     * @return a new empty table
+     */
+    public abstract HashTable<Object, Object> create();
+
+    /**
+     * Creates a new empty table already sized for expectedSize entries (ensureCapacity)
+     * @param expectedSize the number of entries the benchmark will insert
+     * @return a new empty table
+     */
+    public HashTable<Object, Object> createPresized(int expectedSize) {
+        HashTable<Object, Object> t = create();
+        t.ensureCapacity(expectedSize);
+        return t;
+    }
+}
@@ -0,0 +1,137 @@
+package ilsi.hash.bench;
+
+import ilsi.hash.HashTable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of realistic mixes of operations on a full table.
+ * Each invocation runs a fixed sequence of BATCH operations drawn with the proportions of the mix,
+ * the reported time is the average time of one operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class WorkloadMixBenchmark {
+
+    static final int BATCH = 1024;
+
+    private static final byte SEARCH_HIT = 0;
+    private static final byte SEARCH_MISS = 1;
+    private static final byte INSERT = 2;
+    private static final byte DELETE_INSERT = 3;
+
+    /**
+     * A workload mix : the percentage of each kind of operation
+     */
+    public enum Mix {
+        READ_HEAVY(90, 0, 10, 0),
+        WRITE_HEAVY(10, 0, 70, 20),
+        MISS_HEAVY(10, 90, 0, 0),
+        CHURN(0, 0, 0, 100);
+
+        final int hit, miss, insert, deleteInsert;
+
+        Mix(int hit, int miss, int insert, int deleteInsert) {
+            this.hit = hit;
+            this.miss = miss;
+            this.insert = insert;
+            this.deleteInsert = deleteInsert;
+        }
+
+        /**
+         * Draws a sequence of operations with the proportions of this mix
+         */
+        byte[] operations(int count, long seed) {
+            Random rand = new Random(seed);
+            byte[] ops = new byte[count];
+            for (int i = 0; i < count; i++) {
+                int r = rand.nextInt(100);
+                if (r < hit) ops[i] = SEARCH_HIT;
+                else if (r < hit + miss) ops[i] = SEARCH_MISS;
+                else if (r < hit + miss + insert) ops[i] = INSERT;
+                else ops[i] = DELETE_INSERT;
+            }
+            return ops;
+        }
+    }
+
+    @Param({"STATIC", "STATIC_INCREMENTAL", "COMPACT", "RANDOM", "OPEN_ADDRESSING", "ROBIN_HOOD", "CUCKOO", "SWISS", "CONCURRENT_STATIC", "NON_BLOCKING", "SHARDED"})
+    public TableKind table;
+
+    @Param({"INTEGER", "STRING", "ADVERSARIAL"})
+    public KeyKind keyKind;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"READ_HEAVY", "WRITE_HEAVY", "MISS_HEAVY", "CHURN"})
+    public Mix mix;
+
+    private Object[] hits;
+    private Object[] misses;
+    private byte[] ops;
+
+    private HashTable<Object, Object> map;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.hits = keyKind.generate(size, true);
+        this.misses = keyKind.generate(size, false);
+        this.ops = mix.operations(BATCH, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillTable() {
+        this.map = table.create();
+        for (int i = 0; i < size; i++) {
+            map.insert(hits[i], hits[i]);
+        }
+        this.cursor = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void mixed(Blackhole bh) {
+        HashTable<Object, Object> t = this.map;
+        int c = this.cursor;
+        for (int i = 0; i < BATCH; i++) {
+            switch (ops[i]) {
+                case SEARCH_HIT:
+                    bh.consume(t.search(hits[c]));
+                    break;
+                case SEARCH_MISS:
+                    bh.consume(t.search(misses[c]));
+                    break;
+                case INSERT:
+                    bh.consume(t.insert(hits[c], misses[c]));
+                    break;
+                default:
+                    bh.consume(t.delete(hits[c]));
+                    bh.consume(t.insert(hits[c], hits[c]));
+            }
+            if (++c == size) c = 0;
+        }
+        this.cursor = c;
+    }
+}
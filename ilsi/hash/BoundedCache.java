@@ -0,0 +1,699 @@
+package ilsi.hash;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * The classe BoundedCache represent a cache : a StaticHashTable with a maximum size (or weight)
+ * that evicts entries when it is full, an optional time to live, and hit/miss counters.
+ *
+ * The eviction order is kept in the elements of the table (CacheElement has the links of
+ * an intrusive doubly linked list), so the cache needs no second map or list of nodes.
+ * Two eviction policies are provided :
+ * LRU : evicts the least recently used entry.
+ * W_TINY_LFU : a small LRU window (1% of the budget) in front of a segmented LRU (probation
+ * and protected), an entry leaving the window is admitted in the main space only if it is more
+ * frequent than the entry it would evict (frequencies from a CountMinSketch).
+ * It keeps the popular entries when a scan of new keys goes through the cache.
+ *
+ * An entry expires expireAfterWrite nanoseconds after its last insert : an expired entry is a miss,
+ * it is removed when it is searched or by cleanUp().
+ *
+ * A cache is created with a Builder :
+ *   BoundedCache<String, Page> cache = BoundedCache.<String, Page>builder()
+ *           .maximumSize(10000).policy(BoundedCache.Policy.W_TINY_LFU)
+ *           .expireAfterWrite(60, TimeUnit.SECONDS).build();
+ */
+public class BoundedCache<K, V> extends StaticHashTable<K, V> {
+
+    /**
+     * The eviction policies
+     */
+    public enum Policy { LRU, W_TINY_LFU }
+
+    /**
+     * The queues of W-TinyLFU
+     */
+    protected static final byte WINDOW = 0;
+    protected static final byte PROBATION = 1;
+    protected static final byte PROTECTED = 2;
+
+    /**
+     * The max weight of the entries (their number when there is no weigher)
+     */
+    protected final long maximumWeight;
+
+    /**
+     * The weight of an entry, null for a weight of 1
+     */
+    protected final ToIntBiFunction<? super K, ? super V> weigher;
+
+    /**
+     * The time to live of an entry after its last insert in nanoseconds, 0 for no expiry
+     */
+    protected final long expireAfterWriteNanos;
+
+    /**
+     * The clock of the expiry, System.nanoTime by default
+     */
+    protected final LongSupplier ticker;
+
+    /**
+     * The eviction policy
+     */
+    protected final Eviction eviction;
+
+    /**
+     * The sum of the weights of the entries
+     */
+    protected long weight;
+
+    protected long hitCount;
+    protected long missCount;
+    protected long evictionCount;
+    protected long expirationCount;
+
+    /**
+     * True if the last afterUpdate replaced the value of an expired entry
+     */
+    private boolean replacedExpired;
+
+    /**
+     * Constructs a new empty cache from a builder
+     */
+    protected BoundedCache(Builder<K, V> builder) {
+        super(16, false);
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.ticker = builder.ticker;
+        this.eviction = this.createEviction(builder.policy);
+        if (this.weigher == null) {
+            // the table is sized once for the maximum size
+            this.ensureCapacity((int) Math.min(this.maximumWeight, 1 << 20));
+        }
+    }
+
+    /**
+     * Returns a new builder of caches
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<K, V>();
+    }
+
+    /**
+     * Creates the eviction of a policy, a subclass can plug its own Eviction
+     */
+    protected Eviction createEviction(Policy policy) {
+        switch (policy) {
+            case LRU:
+                return new LruEviction();
+            case W_TINY_LFU:
+                return new TinyLfuEviction();
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+    }
+
+    /**
+     * Creates a CacheElement : the elements of the table are the nodes of the eviction lists
+     */
+    @Override
+    protected Element<K, V> newElement(K key, V value) {
+        return new CacheElement<K, V>(key, value);
+    }
+
+    /**
+     * The size of a CacheElement : an element with its list links, weight, expiration time and queue
+     */
+    @Override
+    protected long elementBytes() {
+        return MemoryFootprint.object(5 * MemoryFootprint.REFERENCE + 4 + 8 + 1);
+    }
+
+    /**
+     * Inserts the keys one by one : the cache never holds more than maximumWeight entries,
+     * so it is not presized for the whole batch
+     */
+    @Override
+    public void insertAll(K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values have different lengths: " + keys.length + " != " + values.length);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            this.insert(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * The eviction follows the order of the insertions : the cache inserts the keys one by one (insertAll)
+     */
+    @Override
+    public void insertAllParallel(K[] keys, V[] values) {
+        this.insertAll(keys, values);
+    }
+
+    /**
+     * Search the value associated with a specified key in this cache,
+     * null if the key is absent or expired.
+     */
+    @Override
+    public V search(K key) {
+        CacheElement<K, V> e = (CacheElement<K, V>) this.getElement(key);
+        if (e == null) {
+            this.missCount++;
+            return null;
+        }
+        if (this.isExpired(e, this.ticker.getAsLong())) {
+            this.expirationCount++;
+            this.missCount++;
+            super.delete(e.key);
+            return null;
+        }
+        this.hitCount++;
+        this.eviction.onAccess(e);
+        return e.value;
+    }
+
+    /**
+     * Searches the values of a batch of keys one by one (each search counts and may expire an entry)
+     */
+    @Override
+    public V[] searchAll(K[] keys, V[] results) {
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("results is shorter than keys: " + results.length + " < " + keys.length);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            results[i] = this.search(keys[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this cache,
+     * then evicts entries until the cache fits in its maximum weight.
+     * @return the previous value of the key, null if it was absent or expired
+     */
+    @Override
+    public V insert(K key, V value) {
+        V old = super.insert(key, value);
+        if (this.replacedExpired) {
+            this.replacedExpired = false;
+            return null;
+        }
+        return old;
+    }
+
+    /**
+     * Associates value with key only if the key has no live mapping (an expired entry is replaced).
+     * A search then an insert : the cache counts the hit or the miss and expires the entries.
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        V old = this.search(key);
+        if (old == null) this.insert(key, value);
+        return old;
+    }
+
+    /**
+     * Computes the new value of key from its live value (null if absent or expired).
+     * A search then an insert or a delete : the cache counts the hit or the miss and expires the entries.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        V old = this.search(key);
+        V value = remapping.apply(key, old);
+        if (value == null) {
+            if (old != null) this.delete(key);
+        } else {
+            this.insert(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Inserts value, or merges it with the live value of key.
+     * A search then an insert or a delete : the cache counts the hit or the miss and expires the entries.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        Objects.requireNonNull(value, "value");
+        V old = this.search(key);
+        V merged = (old == null) ? value : remapping.apply(old, value);
+        if (merged == null) {
+            this.delete(key);
+        } else {
+            this.insert(key, merged);
+        }
+        return merged;
+    }
+
+    /**
+     * Weighs and queues a new element, then evicts
+     */
+    @Override
+    protected void afterInsert(Element<K, V> elem) {
+        CacheElement<K, V> e = (CacheElement<K, V>) elem;
+        e.weight = this.weigh(e.key, e.value);
+        e.expiresAt = this.ticker.getAsLong() + this.expireAfterWriteNanos;
+        this.weight += e.weight;
+        this.eviction.onInsert(e);
+        this.evict();
+    }
+
+    /**
+     * Renews the expiry and the weight of an updated element, counts it as an access, then evicts
+     */
+    @Override
+    protected void afterUpdate(Element<K, V> elem) {
+        CacheElement<K, V> e = (CacheElement<K, V>) elem;
+        long now = this.ticker.getAsLong();
+        if (this.isExpired(e, now)) {
+            this.expirationCount++;
+            this.replacedExpired = true;
+        }
+        int w = this.weigh(e.key, e.value);
+        this.eviction.onWeightChange(e, w - e.weight);
+        this.weight += w - e.weight;
+        e.weight = w;
+        e.expiresAt = now + this.expireAfterWriteNanos;
+        this.eviction.onAccess(e);
+        this.evict();
+    }
+
+    /**
+     * Removes a deleted or evicted element from its queue
+     */
+    @Override
+    protected void afterRemove(Element<K, V> elem) {
+        CacheElement<K, V> e = (CacheElement<K, V>) elem;
+        this.weight -= e.weight;
+        this.eviction.onRemove(e);
+    }
+
+    private int weigh(K key, V value) {
+        if (this.weigher == null) return 1;
+        int w = this.weigher.applyAsInt(key, value);
+        if (w < 0) throw new IllegalArgumentException("Negative weight: " + w);
+        return w;
+    }
+
+    private boolean isExpired(CacheElement<K, V> e, long now) {
+        return this.expireAfterWriteNanos > 0 && now - e.expiresAt >= 0;
+    }
+
+    /**
+     * Removes the victims of the eviction policy while the cache is over its maximum weight
+     */
+    private void evict() {
+        while (this.weight > this.maximumWeight) {
+            CacheElement<K, V> victim = this.eviction.victim();
+            if (victim == null) return;
+            int before = this.n;
+            super.delete(victim.key);
+            if (this.n == before) return;  // the victim is not in the table : its queue is stale
+            this.evictionCount++;
+        }
+    }
+
+    /**
+     * Removes all the expired entries (a walk of all the elements)
+     */
+    public void cleanUp() {
+        if (this.expireAfterWriteNanos == 0) return;
+        long now = this.ticker.getAsLong();
+        List<K> expired = new LinkedList<K>();
+        this.eviction.forEach(e -> {
+            if (this.isExpired(e, now)) expired.add(e.key);
+        });
+        for (K key : expired) {
+            this.expirationCount++;
+            super.delete(key);
+        }
+    }
+
+    /**
+     * Removes all of the (key, value) from this cache, the counters are kept.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.weight = 0;
+        this.eviction.clear();
+    }
+
+    /**
+     * Removes all of the (key, value) from this cache, with release the table returns to its
+     * initial capacity. The counters are kept.
+     */
+    @Override
+    public void clear(boolean release) {
+        super.clear(release);
+        this.weight = 0;
+        this.eviction.clear();
+    }
+
+    /**
+     * Returns the sum of the weights of the entries (their number without weigher)
+     */
+    public long weight() {
+        return this.weight;
+    }
+
+    public long hitCount() {
+        return this.hitCount;
+    }
+
+    public long missCount() {
+        return this.missCount;
+    }
+
+    public long evictionCount() {
+        return this.evictionCount;
+    }
+
+    public long expirationCount() {
+        return this.expirationCount;
+    }
+
+    /**
+     * Returns hits / (hits + misses), 1 when there was no search
+     */
+    public double hitRate() {
+        long total = this.hitCount + this.missCount;
+        return (total == 0) ? 1.0 : (double) this.hitCount / total;
+    }
+
+    /**
+     * Sets all the counters to zero
+     */
+    public void resetStats() {
+        this.hitCount = 0;
+        this.missCount = 0;
+        this.evictionCount = 0;
+        this.expirationCount = 0;
+    }
+
+    /**
+     * An element of the cache, also the node of the list of its eviction queue
+     * (a static class, as Element : no reference to the cache)
+     */
+    protected static class CacheElement<K, V> extends Element<K, V> {
+        protected CacheElement<K, V> before;
+        protected CacheElement<K, V> after;
+        protected int weight;
+        protected long expiresAt;
+
+        /**
+         * The queue of the element for W-TinyLFU (WINDOW, PROBATION or PROTECTED)
+         */
+        protected byte queue;
+
+        public CacheElement(K key, V value) {
+            super(key, value);
+        }
+    }
+
+    /**
+     * An intrusive doubly linked list of CacheElement, from the eldest (head) to the youngest (tail)
+     */
+    protected class AccessQueue {
+        protected CacheElement<K, V> head;
+        protected CacheElement<K, V> tail;
+        protected long weight;
+
+        void addLast(CacheElement<K, V> e) {
+            e.before = this.tail;
+            e.after = null;
+            if (this.tail == null) this.head = e;
+            else this.tail.after = e;
+            this.tail = e;
+            this.weight += e.weight;
+        }
+
+        void remove(CacheElement<K, V> e) {
+            if (e.before == null) this.head = e.after;
+            else e.before.after = e.after;
+            if (e.after == null) this.tail = e.before;
+            else e.after.before = e.before;
+            e.before = null;
+            e.after = null;
+            this.weight -= e.weight;
+        }
+
+        void moveToLast(CacheElement<K, V> e) {
+            if (e != this.tail) {
+                this.remove(e);
+                this.addLast(e);
+            }
+        }
+
+        void forEach(Consumer<CacheElement<K, V>> action) {
+            for (CacheElement<K, V> e = this.head; e != null; e = e.after) action.accept(e);
+        }
+
+        void clear() {
+            this.head = null;
+            this.tail = null;
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * An eviction policy : it orders the elements in its queues and chooses the victims
+     */
+    protected abstract class Eviction {
+
+        /**
+         * A new element was inserted (its weight is set)
+         */
+        protected abstract void onInsert(CacheElement<K, V> e);
+
+        /**
+         * An element was searched or its value replaced
+         */
+        protected abstract void onAccess(CacheElement<K, V> e);
+
+        /**
+         * The weight of an element will change by delta (called before e.weight changes)
+         */
+        protected abstract void onWeightChange(CacheElement<K, V> e, int delta);
+
+        /**
+         * An element was removed from the table
+         */
+        protected abstract void onRemove(CacheElement<K, V> e);
+
+        /**
+         * Returns the next element to evict, or null if the cache is empty
+         */
+        protected abstract CacheElement<K, V> victim();
+
+        /**
+         * Performs an action for each element of the queues
+         */
+        protected abstract void forEach(Consumer<CacheElement<K, V>> action);
+
+        /**
+         * Empties the queues (the table is cleared)
+         */
+        protected abstract void clear();
+    }
+
+    /**
+     * Least recently used : a single queue, an access moves the element to the tail
+     */
+    protected class LruEviction extends Eviction {
+        protected final AccessQueue queue = new AccessQueue();
+
+        protected void onInsert(CacheElement<K, V> e) {
+            this.queue.addLast(e);
+        }
+
+        protected void onAccess(CacheElement<K, V> e) {
+            this.queue.moveToLast(e);
+        }
+
+        protected void onWeightChange(CacheElement<K, V> e, int delta) {
+            this.queue.weight += delta;
+        }
+
+        protected void onRemove(CacheElement<K, V> e) {
+            this.queue.remove(e);
+        }
+
+        protected CacheElement<K, V> victim() {
+            return this.queue.head;
+        }
+
+        protected void forEach(Consumer<CacheElement<K, V>> action) {
+            this.queue.forEach(action);
+        }
+
+        protected void clear() {
+            this.queue.clear();
+        }
+    }
+
+    /**
+     * W-TinyLFU : a window LRU, then a segmented LRU (probation, protected) guarded by
+     * a frequency filter
+     */
+    protected class TinyLfuEviction extends Eviction {
+        protected final AccessQueue window = new AccessQueue();
+        protected final AccessQueue probation = new AccessQueue();
+        protected final AccessQueue protectedQueue = new AccessQueue();
+        protected final CountMinSketch sketch = new CountMinSketch(maximumWeight);
+
+        /**
+         * The max weights of the window (1%) and of the protected queue (80% of the main space)
+         */
+        protected final long maxWindow = Math.max(1, maximumWeight / 100);
+        protected final long maxProtected = (long) (0.8 * (maximumWeight - maxWindow));
+
+        private AccessQueue queueOf(CacheElement<K, V> e) {
+            switch (e.queue) {
+                case WINDOW:
+                    return this.window;
+                case PROBATION:
+                    return this.probation;
+                default:
+                    return this.protectedQueue;
+            }
+        }
+
+        protected void onInsert(CacheElement<K, V> e) {
+            this.sketch.increment(e.key.hashCode());
+            e.queue = WINDOW;
+            this.window.addLast(e);
+        }
+
+        protected void onAccess(CacheElement<K, V> e) {
+            this.sketch.increment(e.key.hashCode());
+            if (e.queue == PROBATION) {
+                // a second access promotes the element, the eldest protected ones go back to probation
+                this.probation.remove(e);
+                e.queue = PROTECTED;
+                this.protectedQueue.addLast(e);
+                while (this.protectedQueue.weight > this.maxProtected && this.protectedQueue.head != e) {
+                    CacheElement<K, V> demoted = this.protectedQueue.head;
+                    this.protectedQueue.remove(demoted);
+                    demoted.queue = PROBATION;
+                    this.probation.addLast(demoted);
+                }
+            } else {
+                this.queueOf(e).moveToLast(e);
+            }
+        }
+
+        protected void onWeightChange(CacheElement<K, V> e, int delta) {
+            this.queueOf(e).weight += delta;
+        }
+
+        protected void onRemove(CacheElement<K, V> e) {
+            this.queueOf(e).remove(e);
+        }
+
+        /**
+         * The elements leaving the window become candidates at the tail of probation.
+         * The youngest candidate and the eldest probation element compete : the less frequent
+         * one is evicted.
+         */
+        protected CacheElement<K, V> victim() {
+            while (this.window.weight > this.maxWindow && this.window.head != null) {
+                CacheElement<K, V> e = this.window.head;
+                this.window.remove(e);
+                e.queue = PROBATION;
+                this.probation.addLast(e);
+            }
+            CacheElement<K, V> victim = this.probation.head;
+            CacheElement<K, V> candidate = this.probation.tail;
+            if (victim == null) {
+                return (this.protectedQueue.head != null) ? this.protectedQueue.head : this.window.head;
+            }
+            if (victim == candidate) return victim;
+            int candidateFrequency = this.sketch.frequency(candidate.key.hashCode());
+            int victimFrequency = this.sketch.frequency(victim.key.hashCode());
+            return (candidateFrequency > victimFrequency) ? victim : candidate;
+        }
+
+        protected void forEach(Consumer<CacheElement<K, V>> action) {
+            this.window.forEach(action);
+            this.probation.forEach(action);
+            this.protectedQueue.forEach(action);
+        }
+
+        protected void clear() {
+            this.window.clear();
+            this.probation.clear();
+            this.protectedQueue.clear();
+        }
+    }
+
+    /**
+     * The builder of a BoundedCache : a maximum size or weight is required
+     */
+    public static class Builder<K, V> {
+        private long maximumWeight = -1;
+        private ToIntBiFunction<? super K, ? super V> weigher;
+        private long expireAfterWriteNanos;
+        private LongSupplier ticker = System::nanoTime;
+        private Policy policy = Policy.W_TINY_LFU;
+
+        /**
+         * Sets the max number of entries
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize < 0) throw new IllegalArgumentException("Negative maximum size: " + maximumSize);
+            this.maximumWeight = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        /**
+         * Sets the max sum of the weights of the entries, and the weight of an entry
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+            if (maximumWeight < 0) throw new IllegalArgumentException("Negative maximum weight: " + maximumWeight);
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "weigher");
+            return this;
+        }
+
+        /**
+         * Sets the time to live of an entry after its last insert
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration <= 0) throw new IllegalArgumentException("Illegal duration: " + duration);
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the clock of the expiry (in nanoseconds), for tests
+         */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        /**
+         * Sets the eviction policy, W_TINY_LFU by default
+         */
+        public Builder<K, V> policy(Policy policy) {
+            this.policy = Objects.requireNonNull(policy, "policy");
+            return this;
+        }
+
+        public BoundedCache<K, V> build() {
+            if (this.maximumWeight < 0) throw new IllegalStateException("maximumSize or maximumWeight is required");
+            return new BoundedCache<K, V>(this);
+        }
+    }
+}
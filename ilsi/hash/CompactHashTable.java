@@ -0,0 +1,480 @@
+package ilsi.hash;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * The classe CompactHashTable represent a hash table with separate chaining, as StaticHashTable,
+ * but without any element object : the chains are links between indices of parallel arrays.
+ *
+ * The entries are stored densely in the arrays keys, vals and next, at the indices [0, n).
+ * heads[b] is the index of the first entry of bucket b (-1 for an empty bucket) and next[i] the index
+ * of the entry after i in its chain. An entry costs 3 array slots (12 bytes with compressed
+ * references) plus its share of heads, against an element of 24 bytes plus a slot of table for
+ * StaticHashTable, and a chain walk reads int arrays instead of following a pointer per element.
+ * The entry arrays grow by half their length when they are full (as an ArrayList),
+ * the buckets double at the max load factor.
+ *
+ * Deletion moves the last entry into the hole, so the entries stay dense and a scan
+ * (keys, values, forEach) walks n entries, whatever the capacity. The keys cannot be null.
+ *
+ * @param <K> the type of keys maintained by this hash table
+ * @param <V> the type of mapped values
+ */
+public class CompactHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The end of a chain
+     */
+    private static final int NIL = -1;
+
+    /**
+     * The number of bits of a bucket index : m = 2^bits buckets
+     */
+    protected int bits;
+
+    /**
+     * The first entry of each bucket, or NIL
+     */
+    protected int[] heads;
+
+    /**
+     * The entries : key, value and next entry of the chain (or NIL)
+     */
+    protected Object[] keys;
+    protected Object[] vals;
+    protected int[] next;
+
+    /**
+     * Constructs a new empty CompactHashTable with a default initial capacity (16)
+     */
+    public CompactHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty CompactHashTable with the specified initial capacity
+     * (rounded up to a power of two)
+     * @param capacity initial capacity of the hash table
+     */
+    public CompactHashTable(int capacity) {
+        this(capacity, HashStrategies.MULTIPLY_SHIFT);
+    }
+
+    /**
+     * Constructs a new empty CompactHashTable with the specified initial capacity
+     * (rounded up to a power of two) and hash function
+     * @param capacity initial capacity of the hash table
+     * @param hashStrategy the hash function of the keys
+     */
+    public CompactHashTable(int capacity, HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        this.allocate(Integer.numberOfTrailingZeros(tableSizeFor(Math.max(2, capacity))));
+        this.minCapacity = m;
+        this.initialCapacity = m;
+    }
+
+    /**
+     * Allocates 2^bits empty buckets and room for the entries up to MAX_LOAD
+     */
+    private void allocate(int bits) {
+        this.bits = bits;
+        this.m = 1 << bits;
+        this.heads = new int[m];
+        Arrays.fill(heads, NIL);
+        int entries = Math.max(1, (int) (MAX_LOAD * m));
+        this.keys = new Object[entries];
+        this.vals = new Object[entries];
+        this.next = new int[entries];
+    }
+
+    /**
+     * Resizes the entry arrays to length entries (at least n)
+     */
+    private void resizeEntries(int entries) {
+        keys = Arrays.copyOf(keys, entries);
+        vals = Arrays.copyOf(vals, entries);
+        next = Arrays.copyOf(next, entries);
+    }
+
+    /**
+     * Hashes a key to its bucket (the high bits of its hash)
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return hashStrategy.hash(key.hashCode()) >>> (32 - bits);
+    }
+
+    /**
+     * Returns the index of the entry of key in bucket b, or NIL
+     */
+    private int find(Object key, int b) {
+        for (int i = heads[b]; i != NIL; i = next[i]) {
+            if (keys[i].equals(key)) return i;
+        }
+        return NIL;
+    }
+
+    /**
+     * Appends a new entry (its key is not in the table) and links it in front of its bucket,
+     * after doubling the buckets or growing the entries if needed
+     */
+    private void add(K key, V value, int b) {
+        if (n + 1 > MAX_LOAD * m) {
+            resize(bits + 1);
+            b = hash(key);
+        }
+        if (n == keys.length) resizeEntries((int) Math.min(Integer.MAX_VALUE - 8, n + (n >> 1) + 1L));
+        int i = n++;
+        keys[i] = key;
+        vals[i] = value;
+        next[i] = heads[b];
+        heads[b] = i;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * @return the previous value associated with key, or null if there was no mapping for key.
+     */
+    @Override
+    public V insert(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        int b = hash(key);
+        int i = find(key, b);
+        if (i != NIL) {
+            V old = (V) vals[i];
+            vals[i] = value;
+            return old;
+        }
+        add(key, value, b);
+        return null;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     * @return the value associated with key if exists, or null if there was no mapping for key.
+     */
+    @Override
+    public V search(K key) {
+        int i = find(key, hash(key));
+        return (i == NIL) ? null : (V) vals[i];
+    }
+
+    /**
+     * Associates value with key only if the key has no mapping, with a single lookup.
+     * @return the current value of key, or null if value was inserted
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        int b = hash(key);
+        int i = find(key, b);
+        if (i != NIL) return (V) vals[i];
+        add(key, value, b);
+        return null;
+    }
+
+    /**
+     * Computes the new value of key from its current value (null if absent), with a single lookup.
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Objects.requireNonNull(key, "key");
+        int b = hash(key);
+        int i = find(key, b);
+        V value = remapping.apply(key, (i == NIL) ? null : (V) vals[i]);
+        if (value == null) {
+            if (i != NIL) remove(key, b);
+        } else if (i != NIL) {
+            vals[i] = value;
+        } else {
+            add(key, value, b);
+        }
+        return value;
+    }
+
+    /**
+     * Associates value with a missing key, or merges it with the current value, with a single lookup.
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int b = hash(key);
+        int i = find(key, b);
+        if (i == NIL) {
+            add(key, value, b);
+            return value;
+        }
+        V merged = remapping.apply((V) vals[i], value);
+        if (merged == null) remove(key, b);
+        else vals[i] = merged;
+        return merged;
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * @return the previous value of key, or null if the table contained no mapping for the key.
+     */
+    @Override
+    public V delete(K key) {
+        V old = remove(key, hash(key));
+        if (old != null && shouldShrink()) {
+            // halve the table when it becomes too sparse
+            resize(bits - 1);
+        }
+        return old;
+    }
+
+    /**
+     * Unlinks the entry of key from its chain, then moves the last entry into its index
+     * @return the value of the entry, or null if there was no entry
+     */
+    private V remove(Object key, int b) {
+        int prev = NIL;
+        int i = heads[b];
+        while (i != NIL && !keys[i].equals(key)) {
+            prev = i;
+            i = next[i];
+        }
+        if (i == NIL) return null;
+        V old = (V) vals[i];
+        if (prev == NIL) heads[b] = next[i];
+        else next[prev] = next[i];
+
+        int last = --n;
+        if (i != last) {
+            // the link to the last entry now points to i
+            int lb = hash((K) keys[last]);
+            if (heads[lb] == last) {
+                heads[lb] = i;
+            } else {
+                int p = heads[lb];
+                while (next[p] != last) p = next[p];
+                next[p] = i;
+            }
+            keys[i] = keys[last];
+            vals[i] = vals[last];
+            next[i] = next[last];
+        }
+        keys[last] = null;
+        vals[last] = null;
+        return old;
+    }
+
+    /**
+     * Rebuilds the buckets with 2^newBits buckets : the entries keep their indices and are relinked
+     */
+    protected void resize(int newBits) {
+        long start = HashTableStats.ENABLED ? System.nanoTime() : 0;
+        int oldCapacity = m;
+        this.bits = newBits;
+        this.m = 1 << newBits;
+        this.heads = new int[m];
+        Arrays.fill(heads, NIL);
+        for (int i = n - 1; i >= 0; i--) {
+            int b = hash((K) keys[i]);
+            next[i] = heads[b];
+            heads[b] = i;
+        }
+        if (HashTableStats.ENABLED) stats.recordResize(oldCapacity, System.nanoTime() - start);
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single resize
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        presize(expectedEntries);
+        reserveCapacity(capacityFor(expectedEntries, MAX_LOAD));
+    }
+
+    /**
+     * Makes room for expectedEntries mappings without raising minCapacity
+     */
+    @Override
+    protected void presize(int expectedEntries) {
+        int newBits = Integer.numberOfTrailingZeros(capacityFor(expectedEntries, MAX_LOAD));
+        if (newBits > bits) resize(newBits);
+        if (expectedEntries > keys.length) resizeEntries(expectedEntries);
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds its entries below MAX_LOAD (at least 2 buckets),
+     * and the entry arrays to the size
+     */
+    @Override
+    public void trimToSize() {
+        int newBits = Integer.numberOfTrailingZeros(Math.max(2, capacityFor(n, MAX_LOAD)));
+        if (newBits < bits) resize(newBits);
+        if (keys.length > Math.max(1, n)) resizeEntries(Math.max(1, n));
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        for (int i = 0; i < n; i++) list.add((K) keys[i]);
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        for (int i = 0; i < n; i++) list.add((V) vals[i]);
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, value) of this hash table, in the order of the entries.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < n; i++) action.accept((K) keys[i], (V) vals[i]);
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new EntryCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries of this hash table, it splits the entry arrays.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(0, n);
+    }
+
+    /**
+     * The operations of this table are recorded in stats
+     */
+    @Override
+    protected boolean isInstrumented() {
+        return true;
+    }
+
+    /**
+     * Returns the number of buckets of each chain length
+     */
+    @Override
+    protected long[] chainLengthHistogram() {
+        long[] histogram = new long[HashTableStats.LENGTH_BUCKETS];
+        for (int b = 0; b < m; b++) {
+            int length = 0;
+            for (int i = heads[b]; i != NIL; i = next[i]) length++;
+            histogram[Math.min(length, histogram.length - 1)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns an estimate of the memory of the bucket and entry arrays
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long arrays = MemoryFootprint.of(heads) + MemoryFootprint.of(keys) + MemoryFootprint.of(vals)
+                + MemoryFootprint.of(next);
+        return new MemoryFootprint(n, m, arrays, 0, 0);
+    }
+
+    /**
+     * A cursor walking the entries in the order of the arrays
+     */
+    private class EntryCursor implements Cursor<K, V> {
+        private int index = -1;
+
+        public boolean advance() {
+            return ++index < n;
+        }
+
+        public K key() {
+            return (K) keys[index];
+        }
+
+        public V value() {
+            return (V) vals[index];
+        }
+
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /**
+     * A spliterator over the entries [index, fence) : all of them are mappings
+     */
+    private class EntrySpliterator extends SlotSpliterator {
+
+        EntrySpliterator(int origin, int fence) {
+            super(origin, fence);
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new EntrySpliterator(origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            if (index >= fence) return false;
+            int i = index++;
+            action.accept(new AbstractMap.SimpleImmutableEntry<K, V>((K) keys[i], (V) vals[i]));
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(heads, NIL);
+        Arrays.fill(keys, 0, n, null);
+        Arrays.fill(vals, 0, n, null);
+        n = 0;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table,
+     * with release the table returns to its initial capacity.
+     */
+    @Override
+    public void clear(boolean release) {
+        if (release) minCapacity = initialCapacity;
+        if (!release || m == initialCapacity) {
+            clear();
+            return;
+        }
+        allocate(Integer.numberOfTrailingZeros(initialCapacity));
+        n = 0;
+    }
+}
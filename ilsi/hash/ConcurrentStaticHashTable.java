@@ -0,0 +1,525 @@
+package ilsi.hash;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The classe ConcurrentStaticHashTable represent a thread-safe hash table with static hashing
+ * ("multiply-shift", as StaticHashTable) and lock striping.
+ *
+ * The buckets are split into stripes, each guarded by its own lock. The stripe of a key is given
+ * by the top bits of its multiply-shift product, which are also the top bits of its bucket index :
+ * when the table doubles, bucket i splits into buckets 2i and 2i+1 of the same stripe,
+ * so a stripe lock guards the same keys before, during and after a resize.
+ *
+ * - search takes no lock : the bucket heads are read from an AtomicReferenceArray and the
+ *   chain links and values are volatile.
+ * - insert and delete lock the stripe of the key only.
+ * - the size is kept in a LongAdder, so writers of different stripes share no counter.
+ * - resizing is cooperative : the new table is filled stripe by stripe by every writer that
+ *   notices the resize, each migrated bucket is replaced by a forwarding node that sends
+ *   readers (which are never blocked) and writers to the new table.
+ *
+ * Null keys and null values are not supported.
+ */
+public class ConcurrentStaticHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The default number of lock stripes
+     */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * The largest number of bits of an index
+     */
+    private static final int MAX_BITS = 30;
+
+    /**
+     * The stripe locks, and the number of bits of a stripe number
+     */
+    private final ReentrantLock[] locks;
+    private final int stripeBits;
+
+    /**
+     * The number of elements
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The current bucket array
+     */
+    private volatile Buckets<K, V> current;
+
+    /**
+     * The resize in progress, null otherwise
+     */
+    private volatile Resize<K, V> resize;
+
+    private static final AtomicReferenceFieldUpdater<ConcurrentStaticHashTable, Buckets> CURRENT =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentStaticHashTable.class, Buckets.class, "current");
+    private static final AtomicReferenceFieldUpdater<ConcurrentStaticHashTable, Resize> RESIZE =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentStaticHashTable.class, Resize.class, "resize");
+
+    /**
+     * Constructs a new empty ConcurrentStaticHashTable with a default initial capacity (64)
+     * and number of stripes (64).
+     */
+    public ConcurrentStaticHashTable() {
+        this(DEFAULT_STRIPES, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructs a new empty ConcurrentStaticHashTable with the specified initial capacity
+     * and the default number of stripes (64).
+     * @param capacity initial capacity of the hash table
+     */
+    public ConcurrentStaticHashTable(int capacity) {
+        this(capacity, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructs a new empty ConcurrentStaticHashTable.
+     * Both numbers are rounded up to powers of two, and the capacity is at least the number of stripes.
+     * @param capacity initial capacity of the hash table
+     * @param stripes the number of locks, about the number of concurrent writers expected
+     */
+    public ConcurrentStaticHashTable(int capacity, int stripes) {
+        this(capacity, stripes, HashStrategies.MULTIPLY_SHIFT);
+    }
+
+    /**
+     * Constructs a new empty ConcurrentStaticHashTable with the specified hash function.
+     * Both numbers are rounded up to powers of two, and the capacity is at least the number of stripes.
+     * @param capacity initial capacity of the hash table
+     * @param stripes the number of locks, about the number of concurrent writers expected
+     * @param hashStrategy the hash function of the keys
+     */
+    public ConcurrentStaticHashTable(int capacity, int stripes, HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        this.stripeBits = bitsFor(stripes);
+        this.locks = new ReentrantLock[1 << stripeBits];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        int bits = Math.min(MAX_BITS, Math.max(Math.max(1, stripeBits), bitsFor(capacity)));
+        this.current = new Buckets<K, V>(bits);
+        this.m = 1 << bits;
+    }
+
+    /**
+     * Returns a new empty ConcurrentStaticHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> ConcurrentStaticHashTable<K, V> withExpectedSize(int expectedEntries) {
+        ConcurrentStaticHashTable<K, V> t = new ConcurrentStaticHashTable<K, V>();
+        t.ensureCapacity(expectedEntries);
+        return t;
+    }
+
+    /**
+     * Returns the number of bits of the smallest power of two greater than or equal to x
+     */
+    private static int bitsFor(int x) {
+        return x <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(x - 1);
+    }
+
+    /**
+     * Returns the hash of a key : by default the multiply-shift product k*a mod 2^32.
+     * All the indices are taken from its top bits.
+     */
+    private int product(Object key) {
+        return hashStrategy.hash(key.hashCode());
+    }
+
+    /**
+     * Hashes a key to its index in the current bucket array
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return current.index(product(key));
+    }
+
+    /**
+     * Returns the lock of the stripe of a product
+     */
+    private ReentrantLock lockFor(int h) {
+        return stripeBits == 0 ? locks[0] : locks[h >>> (32 - stripeBits)];
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     * Takes no lock.
+     */
+    @Override
+    public V search(K key) {
+        int h = product(key);
+        Buckets<K, V> t = current;
+        while (true) {
+            Node<K, V> p = t.slots.get(t.index(h));
+            if (p instanceof Forwarding) {
+                t = ((Forwarding<K, V>) p).target;
+                continue;
+            }
+            for (; p != null; p = p.next) {
+                if (p.h == h && p.key.equals(key)) return p.value;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * If the hash table previously contained a mapping for the key, the old value is replaced.
+     */
+    @Override
+    public V insert(K key, V value) {
+        if (value == null) throw new NullPointerException();
+        int h = product(key);
+        ReentrantLock lock = lockFor(h);
+        lock.lock();
+        try {
+            Buckets<K, V> t = current;
+            while (true) {
+                int i = t.index(h);
+                Node<K, V> head = t.slots.get(i);
+                if (head instanceof Forwarding) {
+                    t = ((Forwarding<K, V>) head).target;
+                    continue;
+                }
+                for (Node<K, V> p = head; p != null; p = p.next) {
+                    if (p.h == h && p.key.equals(key)) {
+                        V old = p.value;
+                        p.value = value;
+                        return old;
+                    }
+                }
+                t.slots.set(i, new Node<K, V>(h, key, value, head));
+                break;
+            }
+        } finally {
+            lock.unlock();
+        }
+        count.increment();
+        this.maybeResize();
+        return null;
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     */
+    @Override
+    public V delete(K key) {
+        int h = product(key);
+        V old = null;
+        ReentrantLock lock = lockFor(h);
+        lock.lock();
+        try {
+            Buckets<K, V> t = current;
+            while (true) {
+                int i = t.index(h);
+                Node<K, V> p = t.slots.get(i);
+                if (p instanceof Forwarding) {
+                    t = ((Forwarding<K, V>) p).target;
+                    continue;
+                }
+                Node<K, V> prev = null;
+                while (p != null && !(p.h == h && p.key.equals(key))) {
+                    prev = p;
+                    p = p.next;
+                }
+                if (p == null) return null;
+
+                old = p.value;
+                if (prev == null) t.slots.set(i, p.next);
+                else prev.next = p.next;
+                break;
+            }
+        } finally {
+            lock.unlock();
+        }
+        count.decrement();
+        if (resize != null) this.helpResize(resize);
+        return old;
+    }
+
+    /**
+     * Starts a resize if the load factor exceeds MAX_LOAD, and helps the resize in progress
+     */
+    private void maybeResize() {
+        Resize<K, V> r = resize;
+        if (r == null) {
+            Buckets<K, V> t = current;
+            if (t.bits >= MAX_BITS || count.sum() <= MAX_LOAD * (1 << t.bits)) return;
+
+            r = new Resize<K, V>(t, new Buckets<K, V>(t.bits + 1));
+            if (!RESIZE.compareAndSet(this, null, r)) {
+                r = resize;        // another thread started it : help
+                if (r == null) return;
+            } else if (current != t) {
+                // t was replaced by a resize that finished meanwhile : this resize is stale
+                RESIZE.compareAndSet(this, r, null);
+                return;
+            }
+        }
+        this.helpResize(r);
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single resize, straight to the final size.
+     * A resize already in progress is finished first.
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        int bits = Math.min(MAX_BITS, bitsFor(capacityFor(expectedEntries, MAX_LOAD)));
+        while (true) {
+            Resize<K, V> r = resize;
+            if (r != null) {
+                this.helpResize(r);
+                Thread.onSpinWait();  // the last stripe may still be migrated by another thread
+                continue;
+            }
+            Buckets<K, V> t = current;
+            if (t.bits >= bits) return;
+
+            r = new Resize<K, V>(t, new Buckets<K, V>(bits));
+            if (RESIZE.compareAndSet(this, null, r)) {
+                if (current != t) {
+                    RESIZE.compareAndSet(this, r, null);  // stale, see maybeResize
+                    continue;
+                }
+                this.helpResize(r);
+            }
+        }
+    }
+
+    /**
+     * Migrates stripes of the resize r until none is left, and installs the new bucket array
+     * when the last stripe is done.
+     */
+    private void helpResize(Resize<K, V> r) {
+        int stripes = locks.length;
+        int s;
+        while ((s = r.nextStripe.getAndIncrement()) < stripes) {
+            this.migrateStripe(r, s);
+            if (r.doneStripes.incrementAndGet() == stripes) {
+                if (CURRENT.compareAndSet(this, r.from, r.to)) {
+                    this.m = 1 << r.to.bits;
+                }
+                RESIZE.compareAndSet(this, r, null);
+            }
+        }
+    }
+
+    /**
+     * Copies the buckets of stripe s into the new bucket array, and replaces each of them
+     * by a forwarding node. The old chains are left intact for the readers still walking them.
+     */
+    private void migrateStripe(Resize<K, V> r, int s) {
+        Buckets<K, V> from = r.from;
+        Buckets<K, V> to = r.to;
+        int shift = from.bits - stripeBits;
+        ReentrantLock lock = locks[s];
+        lock.lock();
+        try {
+            for (int i = s << shift, end = (s + 1) << shift; i < end; i++) {
+                Node<K, V> p = from.slots.get(i);
+                if (p instanceof Forwarding) continue;
+                for (; p != null; p = p.next) {
+                    int j = to.index(p.h);
+                    to.slots.set(j, new Node<K, V>(p.h, p.key, p.value, to.slots.get(j)));
+                }
+                from.slots.set(i, r.forward);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Visits the nodes of the buckets [from, to[ of t, following the forwarding nodes
+     */
+    private void collect(Buckets<K, V> t, int from, int to, List<K> keys, List<V> values) {
+        for (int i = from; i < to; i++) {
+            Node<K, V> p = t.slots.get(i);
+            if (p instanceof Forwarding) {
+                Buckets<K, V> target = ((Forwarding<K, V>) p).target;
+                int shift = target.bits - t.bits;
+                this.collect(target, i << shift, (i + 1) << shift, keys, values);
+                continue;
+            }
+            for (; p != null; p = p.next) {
+                if (keys != null) keys.add(p.key);
+                if (values != null) values.add(p.value);
+            }
+        }
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     * The list is weakly consistent : it reflects the table at some point during the call.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> keys = new LinkedList<K>();
+        Buckets<K, V> t = current;
+        this.collect(t, 0, 1 << t.bits, keys, null);
+        return keys;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     * The list is weakly consistent : it reflects the table at some point during the call.
+     */
+    @Override
+    public List<V> values() {
+        List<V> values = new LinkedList<V>();
+        Buckets<K, V> t = current;
+        this.collect(t, 0, 1 << t.bits, null, values);
+        return values;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     * Locks every stripe, so no migration nor write runs meanwhile.
+     */
+    @Override
+    public void clear() {
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            Buckets<K, V> t = current;
+            count.add(-this.clear(t, 0, 1 << t.bits));
+        } finally {
+            for (ReentrantLock lock : locks) lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the buckets [from, to[ of t, following the forwarding nodes
+     * @return the number of removed nodes
+     */
+    private long clear(Buckets<K, V> t, int from, int to) {
+        long removed = 0;
+        for (int i = from; i < to; i++) {
+            Node<K, V> p = t.slots.get(i);
+            if (p instanceof Forwarding) {
+                Buckets<K, V> target = ((Forwarding<K, V>) p).target;
+                int shift = target.bits - t.bits;
+                removed += this.clear(target, i << shift, (i + 1) << shift);
+                continue;
+            }
+            for (; p != null; p = p.next) removed++;
+            t.slots.set(i, null);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this hash table.
+     */
+    @Override
+    public int size() {
+        long s = count.sum();
+        return s > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, s);
+    }
+
+    /**
+     * Returns true if this hash table contains no key-value mappings
+     */
+    @Override
+    public boolean isEmpty() {
+        return count.sum() <= 0;
+    }
+
+    /**
+     * Returns an estimate of the memory of the bucket arrays (both during a resize), the nodes and the locks.
+     * It reads the state without locking : with concurrent writers the result is approximate.
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        Resize<K, V> r = resize;
+        long arrays = buckets(current) + ((r == null) ? 0 : buckets(r.to)) + MemoryFootprint.array(locks.length, MemoryFootprint.REFERENCE);
+        // a lock and its synchronizer (state, head, tail and owner)
+        long lock = MemoryFootprint.object(MemoryFootprint.REFERENCE) + MemoryFootprint.object(4 + 3 * MemoryFootprint.REFERENCE);
+        long node = MemoryFootprint.object(4 + 3 * MemoryFootprint.REFERENCE);
+        return new MemoryFootprint(size(), m, arrays, size() * node + locks.length * lock, 0);
+    }
+
+    private static long buckets(Buckets<?, ?> b) {
+        return MemoryFootprint.object(4 + MemoryFootprint.REFERENCE) + MemoryFootprint.object(MemoryFootprint.REFERENCE)
+                + MemoryFootprint.array(1L << b.bits, MemoryFootprint.REFERENCE);
+    }
+
+    /**
+     * An element of a chain. key and h never change, value and next are volatile for the lock-free readers.
+     */
+    static class Node<K, V> {
+        final int h;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int h, K key, V value, Node<K, V> next) {
+            this.h = h;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Replaces a migrated bucket : its elements are in target
+     */
+    static final class Forwarding<K, V> extends Node<K, V> {
+        final Buckets<K, V> target;
+
+        Forwarding(Buckets<K, V> target) {
+            super(0, null, null, null);
+            this.target = target;
+        }
+    }
+
+    /**
+     * A bucket array of 2^bits buckets
+     */
+    static final class Buckets<K, V> {
+        final int bits;
+        final AtomicReferenceArray<Node<K, V>> slots;
+
+        Buckets(int bits) {
+            this.bits = bits;
+            this.slots = new AtomicReferenceArray<Node<K, V>>(1 << bits);
+        }
+
+        /**
+         * The index of a multiply-shift product : its top bits
+         */
+        int index(int h) {
+            return h >>> (32 - bits);
+        }
+    }
+
+    /**
+     * The state of a resize from one bucket array to the next
+     */
+    static final class Resize<K, V> {
+        final Buckets<K, V> from;
+        final Buckets<K, V> to;
+        final Forwarding<K, V> forward;
+        final AtomicInteger nextStripe = new AtomicInteger();
+        final AtomicInteger doneStripes = new AtomicInteger();
+
+        Resize(Buckets<K, V> from, Buckets<K, V> to) {
+            this.from = from;
+            this.to = to;
+            this.forward = new Forwarding<K, V>(to);
+        }
+    }
+}
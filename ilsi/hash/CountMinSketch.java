@@ -0,0 +1,93 @@
+package ilsi.hash;
+
+/**
+ * The classe CountMinSketch represent an approximate counter of the frequency of keys,
+ * used by the W-TinyLFU eviction of BoundedCache to decide which of two keys is more popular.
+ *
+ * DEPTH rows of small counters (saturating at 15) are indexed by DEPTH hashes of the key, and the
+ * frequency of a key is the minimum of its counters : a collision can only overestimate it.
+ * An increment only raises the counters equal to the minimum (conservative update).
+ * After sampleSize increments every counter is halved, so that old popularity fades out.
+ */
+final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * The odd multipliers of the DEPTH hashes
+     */
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    /**
+     * The counters of the rows, row r is counters[r * width .. (r + 1) * width - 1]
+     */
+    private final byte[] counters;
+    private final int widthBits;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Constructs a sketch for about expectedEntries distinct popular keys
+     * @param expectedEntries the number of entries of the cache
+     */
+    CountMinSketch(long expectedEntries) {
+        int width = HashTable.tableSizeFor((int) Math.max(16, Math.min(expectedEntries, 1 << 24)));
+        this.widthBits = Integer.numberOfTrailingZeros(width);
+        this.counters = new byte[DEPTH * width];
+        this.sampleSize = 10 * width;
+    }
+
+    private int index(int hash, int row) {
+        return (row << widthBits) + ((hash * SEEDS[row]) >>> (32 - widthBits));
+    }
+
+    /**
+     * Returns the estimated frequency of a key, from 0 to 15
+     * @param hash the hash code of the key
+     */
+    int frequency(int hash) {
+        hash = spread(hash);
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[index(hash, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Records one occurrence of a key
+     * @param hash the hash code of the key
+     */
+    void increment(int hash) {
+        hash = spread(hash);
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[index(hash, row)]);
+        }
+        if (min == MAX_COUNT) return;
+        for (int row = 0; row < DEPTH; row++) {
+            int i = index(hash, row);
+            if (counters[i] == min) counters[i]++;
+        }
+        if (++additions == sampleSize) reset();
+    }
+
+    /**
+     * Halves every counter (aging)
+     */
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * Breaks the regularity of the hash codes of small integers (all the rows multiply it)
+     */
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        return h * 0x45D9F3B;
+    }
+}
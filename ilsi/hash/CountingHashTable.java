@@ -0,0 +1,477 @@
+package ilsi.hash;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * The classe CountingHashTable represent a table of counters : it maps keys to long counts,
+ * for frequency counting over a stream of keys (word counts, anagrams, heavy hitters).
+ *
+ * The counts are stored in a primitive long array, parallel to the array of the keys
+ * (open addressing, linear probing), so increment(key, delta) walks the probe sequence once
+ * and updates the count in place, without boxing and without allocation
+ * (a search then an insert of a boxed count hashes twice and allocates a Long).
+ * Deletion shifts the following keys back (no tombstones). The keys cannot be null.
+ *
+ * topK(k) returns the k largest counts with a heap of k slots.
+ *
+ * @param <K> the type of the counted keys
+ */
+public class CountingHashTable<K> extends HashTable<K, Long> {
+
+    protected Object[] keys;
+
+    /**
+     * The count of the key of each slot
+     */
+    protected long[] counts;
+
+    /**
+     * The number of bits of an index : m = 2^bits
+     */
+    protected int bits;
+
+    /**
+     * Constructs a new empty CountingHashTable with a default initial capacity (16)
+     */
+    public CountingHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty CountingHashTable with the specified initial capacity
+     * (rounded up to a power of two)
+     * @param capacity initial capacity of the hash table
+     */
+    public CountingHashTable(int capacity) {
+        this(capacity, HashStrategies.FIBONACCI);
+    }
+
+    /**
+     * Constructs a new empty CountingHashTable with the specified initial capacity
+     * (rounded up to a power of two) and hash function
+     * @param capacity initial capacity of the hash table
+     * @param hashStrategy the hash function of the keys
+     */
+    public CountingHashTable(int capacity, HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        this.allocate(Integer.numberOfTrailingZeros(tableSizeFor(Math.max(2, capacity))));
+        this.minCapacity = m;
+        this.initialCapacity = m;
+    }
+
+    /**
+     * Allocates empty arrays of 2^bits slots
+     */
+    private void allocate(int bits) {
+        this.bits = bits;
+        this.m = 1 << bits;
+        this.keys = new Object[m];
+        this.counts = new long[m];
+    }
+
+    /**
+     * Hashes a key to its home slot (the high bits of its hash)
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return hashStrategy.hash(key.hashCode()) >>> (32 - bits);
+    }
+
+    /**
+     * Returns the slot containing key, or else ~slot of the empty slot that ends its probe sequence
+     */
+    private int probe(Object key) {
+        int mask = m - 1;
+        int index = hash((K) key);
+        Object k;
+        while ((k = keys[index]) != null) {
+            if (k.equals(key)) return index;
+            index = (index + 1) & mask;
+        }
+        return ~index;
+    }
+
+    /**
+     * Stores a new key (not in the table) with its count in the empty slot given by probe,
+     * after doubling the table if needed
+     */
+    private void add(int slot, K key, long count) {
+        if (n + 1 > MAX_LOAD * m) {
+            resize(bits + 1);
+            slot = ~probe(key);
+        }
+        keys[slot] = key;
+        counts[slot] = count;
+        n++;
+    }
+
+    /**
+     * Adds delta to the count of key, a missing key is added with the count delta.
+     * @return the new count of key
+     */
+    public long increment(K key, long delta) {
+        Objects.requireNonNull(key, "key");
+        int index = probe(key);
+        if (index >= 0) return counts[index] += delta;
+        add(~index, key, delta);
+        return delta;
+    }
+
+    /**
+     * Adds 1 to the count of key
+     * @return the new count of key
+     */
+    public long increment(K key) {
+        return increment(key, 1);
+    }
+
+    /**
+     * Returns the count of key, 0 if the key is not in the table
+     */
+    public long count(K key) {
+        int index = probe(key);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * Search the count of a specified key in this hash table.
+     * @return the count of key, or null if the key is not in the table
+     */
+    @Override
+    public Long search(K key) {
+        int index = probe(key);
+        return index < 0 ? null : counts[index];
+    }
+
+    /**
+     * Sets the count of a key.
+     * @return the previous count of key, or null if the key was not in the table
+     */
+    @Override
+    public Long insert(K key, Long value) {
+        Objects.requireNonNull(key, "key");
+        long count = value;
+        int index = probe(key);
+        if (index >= 0) {
+            long old = counts[index];
+            counts[index] = count;
+            return old;
+        }
+        add(~index, key, count);
+        return null;
+    }
+
+    /**
+     * Sets the count of key only if the key is not in the table, with a single probe.
+     * @return the current count of key, or null if value was inserted
+     */
+    @Override
+    public Long putIfAbsent(K key, Long value) {
+        Objects.requireNonNull(key, "key");
+        long count = value;
+        int index = probe(key);
+        if (index >= 0) return counts[index];
+        add(~index, key, count);
+        return null;
+    }
+
+    /**
+     * Computes the new count of key from its current count (null if absent), with a single probe.
+     * @return the new count of key, or null if the key was removed
+     */
+    @Override
+    public Long compute(K key, BiFunction<? super K, ? super Long, ? extends Long> remapping) {
+        Objects.requireNonNull(key, "key");
+        int index = probe(key);
+        Long value = remapping.apply(key, index >= 0 ? counts[index] : null);
+        if (value == null) {
+            if (index >= 0) removeAt(index);
+        } else if (index >= 0) {
+            counts[index] = value;
+        } else {
+            add(~index, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Sets the count of a missing key to value, or merges value with the current count, with a single probe.
+     * merge(key, 1L, Long::sum) is increment(key) with a boxed result.
+     * @return the new count of key, or null if the key was removed
+     */
+    @Override
+    public Long merge(K key, Long value, BiFunction<? super Long, ? super Long, ? extends Long> remapping) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int index = probe(key);
+        if (index < 0) {
+            add(~index, key, value);
+            return value;
+        }
+        Long merged = remapping.apply(counts[index], value);
+        if (merged == null) removeAt(index);
+        else counts[index] = merged;
+        return merged;
+    }
+
+    /**
+     * Removes a key from this hash table if it is present.
+     * @return the count of the key, or null if the key was not in the table
+     */
+    @Override
+    public Long delete(K key) {
+        int index = probe(key);
+        if (index < 0) return null;
+        long old = counts[index];
+        removeAt(index);
+        if (shouldShrink()) {
+            // halve the table when it becomes too sparse
+            resize(bits - 1);
+        }
+        return old;
+    }
+
+    /**
+     * Empties a slot and shifts back the following keys of the cluster that may move
+     * (backward shift deletion, as IntObjectHashTable)
+     */
+    private void removeAt(int index) {
+        int mask = m - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash((K) keys[next]);
+            // the key of next can fill the hole if its home is not in ]hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                counts[hole] = counts[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        counts[hole] = 0;
+        n--;
+    }
+
+    /**
+     * Rebuilds the table with 2^newBits slots
+     */
+    protected void resize(int newBits) {
+        Object[] oldKeys = keys;
+        long[] oldCounts = counts;
+        allocate(newBits);
+        int mask = m - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = hash((K) oldKeys[i]);
+                while (keys[index] != null) index = (index + 1) & mask;
+                keys[index] = oldKeys[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Makes room for expectedEntries keys with a single rehash
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        presize(expectedEntries);
+        reserveCapacity(capacityFor(expectedEntries, MAX_LOAD));
+    }
+
+    /**
+     * Makes room for expectedEntries keys without raising minCapacity
+     */
+    @Override
+    protected void presize(int expectedEntries) {
+        int newBits = Integer.numberOfTrailingZeros(capacityFor(expectedEntries, MAX_LOAD));
+        if (newBits > bits) resize(newBits);
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds its keys below MAX_LOAD (at least 2 slots)
+     */
+    @Override
+    public void trimToSize() {
+        int newBits = Integer.numberOfTrailingZeros(Math.max(2, capacityFor(n, MAX_LOAD)));
+        if (newBits < bits) resize(newBits);
+    }
+
+    /**
+     * Returns the k keys with the largest counts, by decreasing count (in any order for equal counts).
+     * The slots are walked once with a heap of the k best slots : O(m log k).
+     * @param k the number of keys to return
+     */
+    public List<Map.Entry<K, Long>> topK(int k) {
+        if (k < 0) throw new IllegalArgumentException("Negative k: " + k);
+        if (k == 0 || n == 0) return Collections.emptyList();
+        // a min-heap : its head is the smallest of the k best counts
+        PriorityQueue<Integer> heap = new PriorityQueue<Integer>(Math.min(k, n),
+                (a, b) -> Long.compare(counts[a], counts[b]));
+        for (int i = 0; i < m; i++) {
+            if (keys[i] == null) continue;
+            if (heap.size() < k) heap.add(i);
+            else if (counts[i] > counts[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        List<Map.Entry<K, Long>> top = new ArrayList<Map.Entry<K, Long>>(heap.size());
+        while (!heap.isEmpty()) {
+            int i = heap.poll();
+            top.add(new AbstractMap.SimpleImmutableEntry<K, Long>((K) keys[i], counts[i]));
+        }
+        Collections.reverse(top);
+        return top;
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != null) list.add((K) keys[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a list of the counts contained in this hash table.
+     */
+    @Override
+    public List<Long> values() {
+        List<Long> list = new LinkedList<Long>();
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != null) list.add(counts[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, count) of this hash table, in the order of the slots.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super Long> action) {
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != null) action.accept((K) keys[i], counts[i]);
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, count) of this hash table.
+     */
+    @Override
+    public Cursor<K, Long> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries of this hash table, it splits the slot arrays.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, Long>> spliterator() {
+        return new EntrySpliterator(0, m);
+    }
+
+    /**
+     * A cursor walking the slots in the order of the arrays
+     */
+    private class SlotCursor implements Cursor<K, Long> {
+        private int index = -1;
+
+        public boolean advance() {
+            while (++index < m) {
+                if (keys[index] != null) return true;
+            }
+            return false;
+        }
+
+        public K key() {
+            return (K) keys[index];
+        }
+
+        public Long value() {
+            return counts[index];
+        }
+
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /**
+     * A spliterator over the entries of the slots [index, fence)
+     */
+    private class EntrySpliterator extends SlotSpliterator {
+
+        EntrySpliterator(int origin, int fence) {
+            super(origin, fence);
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new EntrySpliterator(origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, Long>> action) {
+            while (index < fence) {
+                int i = index++;
+                if (keys[i] != null) {
+                    action.accept(new AbstractMap.SimpleImmutableEntry<K, Long>((K) keys[i], counts[i]));
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all of the (key, count) from this hash table.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(counts, 0);
+        n = 0;
+    }
+
+    /**
+     * Removes all of the (key, count) from this hash table,
+     * with release the table returns to its initial capacity.
+     */
+    @Override
+    public void clear(boolean release) {
+        if (release) minCapacity = initialCapacity;
+        if (!release || m == initialCapacity) {
+            clear();
+            return;
+        }
+        allocate(Integer.numberOfTrailingZeros(initialCapacity));
+        n = 0;
+    }
+
+    /**
+     * Returns an estimate of the memory of the keys and counts arrays
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint(n, m, MemoryFootprint.of(keys) + MemoryFootprint.of(counts), 0, 0);
+    }
+}
@@ -0,0 +1,809 @@
+package ilsi.hash;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The classe CuckooHashTable represent a hash table with bucketized cuckoo hashing.
+ *
+ * The slots are grouped in buckets of SLOTS (4) slots. Two hash functions drawn at random
+ * from the universal family of RandomHashTable (HashStrategies.Mersenne) give each key two
+ * buckets, in a stash of at most STASH_SIZE entries, or in the overflow (below).
+ * A search reads the tags of the two buckets (16 contiguous bytes each, one cache line each
+ * when the array is 16-byte aligned) and compares a key only when its tag matches : a hit
+ * also reads keys[s] and vals[s] (usually two more cache lines) and the key object for equals.
+ * A search then compares the keys of the stash, at most STASH_SIZE of them.
+ *
+ * Keys with the same hashCode have the same two buckets, and no function can separate them.
+ * A new key whose buckets already hold MAX_SAME_HASH keys of its hashCode goes to the overflow :
+ * arrays sorted by hashCode, then by compareTo for the Comparable keys of a same class, searched
+ * by a binary search when they are not empty. A search is then O(1) in the buckets and the stash,
+ * plus O(log k) for an overflow of k keys (k is 0 unless more than MAX_SAME_HASH keys share a
+ * hashCode, as in a hash-flooding attack). Keys that are not Comparable and share a hashCode are
+ * compared one by one, like in the treeified buckets of the chained tables.
+ *
+ * An insertion into two full buckets moves an entry of one of them to its other bucket,
+ * and so on for at most MAX_KICKS moves. An entry left without a slot goes to the stash,
+ * and when the stash is full the table is rehashed with two new functions (it grows after
+ * MAX_REHASHES failures, the stash never does).
+ *
+ * The keys, values and tags are stored in parallel arrays (no Element objects),
+ * and the default max load factor is 0.9.
+ */
+public class CuckooHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The number of slots of a bucket
+     */
+    public static final int SLOTS = 4;
+
+    /**
+     * The default max load factor of a cuckoo table
+     */
+    public static final double DEFAULT_MAX_LOAD = 0.9;
+
+    /**
+     * The max number of entries moved by one insertion before the last one goes to the stash
+     */
+    protected static final int MAX_KICKS = 256;
+
+    /**
+     * The number of entries of the stash
+     */
+    protected static final int STASH_SIZE = 4;
+
+    /**
+     * The max number of keys of a same hashCode in the buckets, the next ones go to the overflow
+     */
+    protected static final int MAX_SAME_HASH = 2;
+
+    /**
+     * The number of rehashes with new functions tried before the table grows
+     */
+    protected static final int MAX_REHASHES = 3;
+
+    /**
+     * The max load factor of this table
+     */
+    protected final double maxLoad;
+
+    /**
+     * The two hash functions, replaced by each rehash
+     */
+    protected HashStrategies.Mersenne f1;
+    protected HashStrategies.Mersenne f2;
+
+    /**
+     * The number of bits of a bucket index : there are 2^bits buckets and m = SLOTS * 2^bits slots
+     */
+    protected int bits;
+
+    protected Object[] keys;
+    protected Object[] vals;
+
+    /**
+     * The tag of the key of each slot (the hash of the first function with its low bit set),
+     * 0 for an empty slot
+     */
+    protected int[] tags;
+
+    /**
+     * The entries that found no slot, stashKeys[0 .. stashSize-1]
+     */
+    protected Object[] stashKeys;
+    protected Object[] stashVals;
+    protected int stashSize;
+
+    /**
+     * The keys that share their hashCode with MAX_SAME_HASH keys of the buckets,
+     * overflowKeys[0 .. overflowSize-1] sorted by their hashCodes overflowCodes (null while empty)
+     */
+    protected int[] overflowCodes;
+    protected Object[] overflowKeys;
+    protected Object[] overflowVals;
+    protected int overflowSize;
+
+    /**
+     * True while the keys of each hashCode of the overflow are Comparable instances of one class,
+     * sorted by compareTo
+     */
+    protected boolean overflowSorted = true;
+
+    /**
+     * The state of the xorshift generator choosing the entry to move
+     */
+    private int random = 0x9E3779B9;
+
+    /**
+     * The entry left without a slot by the last failed place
+     */
+    private Object homelessKey;
+    private Object homelessValue;
+
+    /**
+     * Constructs a new empty CuckooHashTable with a default initial capacity (16)
+     * and max load factor (0.9).
+     */
+    public CuckooHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty CuckooHashTable with the specified initial capacity
+     * (rounded up to a power of two, at least 2 buckets) and max load factor (0.9).
+     * @param capacity initial capacity of the hash table
+     */
+    public CuckooHashTable(int capacity) {
+        this(capacity, DEFAULT_MAX_LOAD);
+    }
+
+    /**
+     * Constructs a new empty CuckooHashTable with the specified initial capacity
+     * (rounded up to a power of two, at least 2 buckets) and max load factor.
+     * @param capacity initial capacity of the hash table
+     * @param maxLoad the max load factor, in ]0, 1[
+     */
+    public CuckooHashTable(int capacity, double maxLoad) {
+        this(capacity, maxLoad, randomFunction());
+    }
+
+    private CuckooHashTable(int capacity, double maxLoad, HashStrategies.Mersenne f1) {
+        super(0, false, f1);
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("Illegal max load factor: " + maxLoad);
+        }
+        this.maxLoad = maxLoad;
+        this.f1 = f1;
+        this.f2 = randomFunction();
+        this.stashKeys = new Object[STASH_SIZE];
+        this.stashVals = new Object[STASH_SIZE];
+        this.allocate(Integer.numberOfTrailingZeros(tableSizeFor(Math.max(2 * SLOTS, capacity) / SLOTS)));
+    }
+
+    /**
+     * Returns a new empty CuckooHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> CuckooHashTable<K, V> withExpectedSize(int expectedEntries) {
+        CuckooHashTable<K, V> t = new CuckooHashTable<K, V>(2 * SLOTS);
+        t.ensureCapacity(expectedEntries);
+        return t;
+    }
+
+    /**
+     * Returns a hash function drawn at random from the family
+     */
+    private static HashStrategies.Mersenne randomFunction() {
+        return HashStrategies.mersenne(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Allocates empty arrays of 2^bits buckets
+     */
+    private void allocate(int bits) {
+        this.bits = bits;
+        this.m = SLOTS << bits;
+        this.keys = new Object[m];
+        this.vals = new Object[m];
+        this.tags = new int[m];
+    }
+
+    /**
+     * Returns the first bucket of a key : the high bits of its first hash
+     */
+    private int bucket1(int h1) {
+        return h1 >>> (32 - bits);
+    }
+
+    /**
+     * Returns the second bucket of a key, always different from the first one
+     */
+    private int bucket2(int h2, int b1) {
+        int b2 = h2 >>> (32 - bits);
+        return (b2 == b1) ? b1 ^ 1 : b2;
+    }
+
+    /**
+     * Hashes a key to its first bucket
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return bucket1(f1.hash(key.hashCode()));
+    }
+
+    /**
+     * Returns the slot of key in the bucket b, or -1
+     */
+    private int indexIn(int b, int tag, Object key) {
+        int base = b * SLOTS;
+        for (int s = base; s < base + SLOTS; s++) {
+            if (tags[s] == tag && keys[s].equals(key)) return s;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of key, -2 - i if it is the entry i of the stash, -2 - STASH_SIZE - i
+     * if it is the entry i of the overflow, or -1 if it is not in the table
+     */
+    private int indexOf(Object key) {
+        int hc = key.hashCode();
+        int h1 = f1.hash(hc);
+        int tag = h1 | 1;
+        int b1 = bucket1(h1);
+        int index = indexIn(b1, tag, key);
+        if (index >= 0) return index;
+        index = indexIn(bucket2(f2.hash(hc), b1), tag, key);
+        if (index >= 0) return index;
+        for (int i = 0; i < stashSize; i++) {
+            if (stashKeys[i].equals(key)) return -2 - i;
+        }
+        index = overflowIndexOf(key, hc);
+        return (index < 0) ? -1 : -2 - STASH_SIZE - index;
+    }
+
+    /**
+     * Returns the index of key in the overflow, or -1 : a binary search on the hashCodes,
+     * then on compareTo among the keys of the same hashCode
+     */
+    private int overflowIndexOf(Object key, int hc) {
+        if (overflowSize == 0) return -1;
+        int from = lowerBound(hc);
+        int to = upperBound(hc);
+        if (from == to) return -1;
+        if (overflowSorted && overflowKeys[from].getClass() == key.getClass()) {
+            int i = searchRun(from, to, key);
+            // a key can compare equal to another key without being equal to it
+            return (i >= 0 && overflowKeys[i].equals(key)) ? i : -1;
+        }
+        for (int i = from; i < to; i++) {
+            if (overflowKeys[i].equals(key)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first entry of the overflow with a hashCode greater than or equal to hc
+     */
+    private int lowerBound(int hc) {
+        int lo = 0;
+        int hi = overflowSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (overflowCodes[mid] < hc) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the first entry of the overflow with a hashCode greater than hc
+     */
+    private int upperBound(int hc) {
+        int lo = 0;
+        int hi = overflowSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (overflowCodes[mid] <= hc) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Binary search of key among the Comparable keys overflowKeys[from .. to-1] of its class
+     * @return the index of a key comparing equal to key, or -1 - the insertion point
+     */
+    private int searchRun(int from, int to, Object key) {
+        Comparable<Object> k = (Comparable<Object>) key;
+        int lo = from;
+        int hi = to - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = k.compareTo(overflowKeys[mid]);
+            if (c == 0) return mid;
+            if (c < 0) hi = mid - 1;
+            else lo = mid + 1;
+        }
+        return -1 - lo;
+    }
+
+    /**
+     * Adds a new entry to the overflow, at its place in the order of the hashCodes (then of compareTo).
+     * A key that cannot be ordered with the others of its hashCode ends the order : the searches
+     * then scan the keys of a hashCode.
+     */
+    private void overflowAdd(Object key, Object value, int hc) {
+        if (overflowCodes == null) {
+            overflowCodes = new int[STASH_SIZE];
+            overflowKeys = new Object[STASH_SIZE];
+            overflowVals = new Object[STASH_SIZE];
+        } else if (overflowSize == overflowCodes.length) {
+            overflowCodes = Arrays.copyOf(overflowCodes, 2 * overflowSize);
+            overflowKeys = Arrays.copyOf(overflowKeys, 2 * overflowSize);
+            overflowVals = Arrays.copyOf(overflowVals, 2 * overflowSize);
+        }
+        int from = lowerBound(hc);
+        int i = upperBound(hc);
+        if (overflowSorted && from < i) {
+            if (key instanceof Comparable && overflowKeys[from].getClass() == key.getClass()) {
+                int at = searchRun(from, i, key);
+                if (at >= 0) overflowSorted = false;  // compareTo is not consistent with equals
+                else i = -1 - at;
+            } else {
+                overflowSorted = false;
+            }
+        }
+        System.arraycopy(overflowCodes, i, overflowCodes, i + 1, overflowSize - i);
+        System.arraycopy(overflowKeys, i, overflowKeys, i + 1, overflowSize - i);
+        System.arraycopy(overflowVals, i, overflowVals, i + 1, overflowSize - i);
+        overflowCodes[i] = hc;
+        overflowKeys[i] = key;
+        overflowVals[i] = value;
+        overflowSize++;
+    }
+
+    /**
+     * Removes the entry i of the overflow
+     */
+    private void overflowRemove(int i) {
+        int moved = --overflowSize - i;
+        System.arraycopy(overflowCodes, i + 1, overflowCodes, i, moved);
+        System.arraycopy(overflowKeys, i + 1, overflowKeys, i, moved);
+        System.arraycopy(overflowVals, i + 1, overflowVals, i, moved);
+        overflowKeys[overflowSize] = null;
+        overflowVals[overflowSize] = null;
+        if (overflowSize == 0) overflowSorted = true;
+    }
+
+    /**
+     * Returns true if the two buckets of a new key of hash code hc already hold MAX_SAME_HASH
+     * keys of that hash code
+     */
+    private boolean crowded(int hc) {
+        int h1 = f1.hash(hc);
+        int tag = h1 | 1;
+        int b1 = bucket1(h1);
+        return sameHash(b1, tag, hc) + sameHash(bucket2(f2.hash(hc), b1), tag, hc) >= MAX_SAME_HASH;
+    }
+
+    /**
+     * Returns the number of keys of hash code hc in the bucket b
+     */
+    private int sameHash(int b, int tag, int hc) {
+        int count = 0;
+        int base = b * SLOTS;
+        for (int s = base; s < base + SLOTS; s++) {
+            if (tags[s] == tag && keys[s].hashCode() == hc) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    @Override
+    public V search(K key) {
+        int index = indexOf(key);
+        if (index >= 0) return (V) vals[index];
+        if (index < -1) {
+            int i = -2 - index;
+            return (V) ((i < STASH_SIZE) ? stashVals[i] : overflowVals[i - STASH_SIZE]);
+        }
+        return null;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * If the hash table previously contained a mapping for the key, the old value is replaced.
+     */
+    @Override
+    public V insert(K key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            V old = (V) vals[index];
+            vals[index] = value;
+            return old;
+        }
+        if (index < -1) {
+            int i = -2 - index;
+            Object[] values = (i < STASH_SIZE) ? stashVals : overflowVals;
+            if (i >= STASH_SIZE) i -= STASH_SIZE;
+            V old = (V) values[i];
+            values[i] = value;
+            return old;
+        }
+
+        int hc = key.hashCode();
+        n++;
+        if (crowded(hc)) {
+            overflowAdd(key, value, hc);
+            return null;
+        }
+        if (n - overflowSize > maxLoad * m) {
+            rebuild(bits + 1);
+        }
+        if (!place(key, value) && !stash(homelessKey, homelessValue)) {
+            Object k = homelessKey;
+            Object v = homelessValue;
+            homelessKey = null;
+            homelessValue = null;
+            rebuild(bits, k, v);
+        }
+        return null;
+    }
+
+    /**
+     * Puts an entry in an empty slot of the bucket b
+     * @return true if the bucket had an empty slot
+     */
+    private boolean tryPut(int b, int tag, Object key, Object value) {
+        int base = b * SLOTS;
+        for (int s = base; s < base + SLOTS; s++) {
+            if (tags[s] == 0) {
+                tags[s] = tag;
+                keys[s] = key;
+                vals[s] = value;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Places a new entry (its key is not in the table) in one of its buckets, moving
+     * at most MAX_KICKS entries to their other bucket.
+     * @return true if every entry has a slot, false if the entry homelessKey has none
+     */
+    private boolean place(Object key, Object value) {
+        int hc = key.hashCode();
+        int h1 = f1.hash(hc);
+        int tag = h1 | 1;
+        int b1 = bucket1(h1);
+        int b2 = bucket2(f2.hash(hc), b1);
+        if (tryPut(b1, tag, key, value) || tryPut(b2, tag, key, value)) return true;
+
+        int b = ((random = xorshift(random)) & 1) == 0 ? b1 : b2;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            // swap the entry with a random entry of the bucket b, and move that one
+            random = xorshift(random);
+            int s = b * SLOTS + (random >>> 30);
+            Object k = keys[s];
+            Object v = vals[s];
+            tags[s] = tag;
+            keys[s] = key;
+            vals[s] = value;
+            key = k;
+            value = v;
+
+            hc = key.hashCode();
+            h1 = f1.hash(hc);
+            tag = h1 | 1;
+            b1 = bucket1(h1);
+            b = (b == b1) ? bucket2(f2.hash(hc), b1) : b1;  // its other bucket
+            if (tryPut(b, tag, key, value)) return true;
+        }
+        homelessKey = key;
+        homelessValue = value;
+        return false;
+    }
+
+    private static int xorshift(int x) {
+        x ^= x << 13;
+        x ^= x >>> 17;
+        return x ^ (x << 5);
+    }
+
+    /**
+     * Adds an entry to the stash
+     * @return false if the stash is full
+     */
+    private boolean stash(Object key, Object value) {
+        if (stashSize == stashKeys.length) return false;
+        stashKeys[stashSize] = key;
+        stashVals[stashSize] = value;
+        stashSize++;
+        homelessKey = null;
+        homelessValue = null;
+        return true;
+    }
+
+    /**
+     * Rehashes all the entries with two new functions into 2^newBits buckets
+     */
+    protected void rebuild(int newBits) {
+        rebuild(newBits, null, null);
+    }
+
+    /**
+     * Rehashes all the entries, and the entry (extraKey, extraValue) if extraKey is not null,
+     * with two new functions into 2^newBits buckets.
+     * After MAX_REHASHES failures the table grows. The overflow is kept as it is : its keys
+     * still share their hashCode with MAX_SAME_HASH keys of the buckets.
+     */
+    private void rebuild(int newBits, Object extraKey, Object extraValue) {
+        Object[] oldKeys = keys;
+        Object[] oldVals = vals;
+        int[] oldTags = tags;
+        Object[] oldStashKeys = stashKeys;
+        Object[] oldStashVals = stashVals;
+        int oldStashSize = stashSize;
+
+        for (int attempt = 1; ; attempt++) {
+            f1 = randomFunction();
+            f2 = randomFunction();
+            allocate(newBits);
+            stashKeys = new Object[STASH_SIZE];
+            stashVals = new Object[STASH_SIZE];
+            stashSize = 0;
+
+            boolean ok = extraKey == null || reinsert(extraKey, extraValue);
+            for (int i = 0; ok && i < oldKeys.length; i++) {
+                if (oldTags[i] != 0) ok = reinsert(oldKeys[i], oldVals[i]);
+            }
+            for (int i = 0; ok && i < oldStashSize; i++) {
+                ok = reinsert(oldStashKeys[i], oldStashVals[i]);
+            }
+            if (ok) return;
+
+            homelessKey = null;
+            homelessValue = null;
+            if (attempt % MAX_REHASHES == 0) newBits++;
+        }
+    }
+
+    private boolean reinsert(Object key, Object value) {
+        return place(key, value) || stash(homelessKey, homelessValue);
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        int newBits = Integer.numberOfTrailingZeros(Math.max(2, capacityFor(expectedEntries, maxLoad) / SLOTS));
+        if (newBits > bits) rebuild(newBits);
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * An entry of the stash that belongs to the freed bucket takes the slot.
+     */
+    @Override
+    public V delete(K key) {
+        int index = indexOf(key);
+        if (index == -1) return null;
+        n--;
+
+        if (index < -1) {
+            int i = -2 - index;
+            if (i >= STASH_SIZE) {
+                V old = (V) overflowVals[i - STASH_SIZE];
+                overflowRemove(i - STASH_SIZE);
+                return old;
+            }
+            V old = (V) stashVals[i];
+            unstash(i);
+            return old;
+        }
+
+        V old = (V) vals[index];
+        tags[index] = 0;
+        keys[index] = null;
+        vals[index] = null;
+
+        int b = index / SLOTS;
+        for (int i = 0; i < stashSize; i++) {
+            Object k = stashKeys[i];
+            int hc = k.hashCode();
+            int h1 = f1.hash(hc);
+            int b1 = bucket1(h1);
+            if (b == b1 || b == bucket2(f2.hash(hc), b1)) {
+                tags[index] = h1 | 1;
+                keys[index] = k;
+                vals[index] = stashVals[i];
+                unstash(i);
+                break;
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Removes the entry i of the stash, the last entry takes its place
+     */
+    private void unstash(int i) {
+        int last = --stashSize;
+        stashKeys[i] = stashKeys[last];
+        stashVals[i] = stashVals[last];
+        stashKeys[last] = null;
+        stashVals[last] = null;
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        for (int i = 0; i < m; i++) {
+            if (tags[i] != 0) list.add((K) keys[i]);
+        }
+        for (int i = 0; i < stashSize; i++) {
+            list.add((K) stashKeys[i]);
+        }
+        for (int i = 0; i < overflowSize; i++) {
+            list.add((K) overflowKeys[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        for (int i = 0; i < m; i++) {
+            if (tags[i] != 0) list.add((V) vals[i]);
+        }
+        for (int i = 0; i < stashSize; i++) {
+            list.add((V) stashVals[i]);
+        }
+        for (int i = 0; i < overflowSize; i++) {
+            list.add((V) overflowVals[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, value) of this hash table,
+     * in the order of the slots, of the stash, then of the overflow.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < m; i++) {
+            if (tags[i] != 0) action.accept((K) keys[i], (V) vals[i]);
+        }
+        for (int i = 0; i < stashSize; i++) {
+            action.accept((K) stashKeys[i], (V) stashVals[i]);
+        }
+        for (int i = 0; i < overflowSize; i++) {
+            action.accept((K) overflowKeys[i], (V) overflowVals[i]);
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries of this hash table, it splits the slots
+     * (the stash and the overflow are after the last slot). The entries are immutable copies.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(0, m + STASH_SIZE + overflowSize);
+    }
+
+    /**
+     * Returns true if the position i (a slot, m + an index of the stash, or m + STASH_SIZE
+     * + an index of the overflow) holds an entry
+     */
+    private boolean used(int i) {
+        if (i < m) return tags[i] != 0;
+        i -= m;
+        return (i < STASH_SIZE) ? i < stashSize : i - STASH_SIZE < overflowSize;
+    }
+
+    private K keyAt(int i) {
+        if (i < m) return (K) keys[i];
+        i -= m;
+        return (K) ((i < STASH_SIZE) ? stashKeys[i] : overflowKeys[i - STASH_SIZE]);
+    }
+
+    private V valueAt(int i) {
+        if (i < m) return (V) vals[i];
+        i -= m;
+        return (V) ((i < STASH_SIZE) ? stashVals[i] : overflowVals[i - STASH_SIZE]);
+    }
+
+    /**
+     * A cursor walking the slots in the order of the arrays, then the stash
+     */
+    private class SlotCursor implements Cursor<K, V> {
+        private int index = -1;
+
+        public boolean advance() {
+            while (++index < m + STASH_SIZE + overflowSize) {
+                if (used(index)) return true;
+            }
+            return false;
+        }
+
+        public K key() {
+            return keyAt(index);
+        }
+
+        public V value() {
+            return valueAt(index);
+        }
+
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /**
+     * A spliterator over the entries of the positions [index, fence)
+     */
+    private class EntrySpliterator extends SlotSpliterator {
+
+        EntrySpliterator(int origin, int fence) {
+            super(origin, fence);
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new EntrySpliterator(origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            while (index < fence) {
+                int i = index++;
+                if (used(i)) {
+                    action.accept(new AbstractMap.SimpleImmutableEntry<K, V>(keyAt(i), valueAt(i)));
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < m; i++) {
+            keys[i] = null;
+            vals[i] = null;
+            tags[i] = 0;
+        }
+        for (int i = 0; i < stashSize; i++) {
+            stashKeys[i] = null;
+            stashVals[i] = null;
+        }
+        stashSize = 0;
+        overflowCodes = null;
+        overflowKeys = null;
+        overflowVals = null;
+        overflowSize = 0;
+        overflowSorted = true;
+        n = 0;
+    }
+
+    /**
+     * Returns an estimate of the memory of the slot arrays, the stash and the overflow
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long arrays = MemoryFootprint.of(keys) + MemoryFootprint.of(vals) + MemoryFootprint.of(tags)
+                + MemoryFootprint.of(stashKeys) + MemoryFootprint.of(stashVals)
+                + MemoryFootprint.of(overflowCodes) + MemoryFootprint.of(overflowKeys) + MemoryFootprint.of(overflowVals);
+        return new MemoryFootprint(n, m, arrays, 0, 0);
+    }
+}
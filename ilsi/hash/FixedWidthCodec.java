@@ -0,0 +1,145 @@
+package ilsi.hash;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The interface FixedWidthCodec represent the encoding of keys or values of an off-heap table
+ * (see OffHeapHashTable) : every value is stored in the same number of bytes.
+ *
+ * @param <T> the type of the encoded values
+ */
+public interface FixedWidthCodec<T> {
+
+    /**
+     * Returns the number of bytes of an encoded value
+     */
+    int width();
+
+    /**
+     * Writes value in the width() bytes of segment starting at offset
+     */
+    void write(MemorySegment segment, long offset, T value);
+
+    /**
+     * Reads the value stored in the width() bytes of segment starting at offset
+     */
+    T read(MemorySegment segment, long offset);
+
+    /**
+     * Returns true if the value stored at offset is equal to value.
+     * Codecs should override it to compare the bytes without decoding them.
+     */
+    default boolean matches(MemorySegment segment, long offset, T value) {
+        return value.equals(this.read(segment, offset));
+    }
+
+    /**
+     * Integers, in 4 bytes
+     */
+    FixedWidthCodec<Integer> INT = new FixedWidthCodec<Integer>() {
+        public int width() {
+            return 4;
+        }
+
+        public void write(MemorySegment segment, long offset, Integer value) {
+            segment.set(ValueLayout.JAVA_INT_UNALIGNED, offset, value);
+        }
+
+        public Integer read(MemorySegment segment, long offset) {
+            return segment.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+        }
+
+        public boolean matches(MemorySegment segment, long offset, Integer value) {
+            return segment.get(ValueLayout.JAVA_INT_UNALIGNED, offset) == value.intValue();
+        }
+    };
+
+    /**
+     * Longs, in 8 bytes
+     */
+    FixedWidthCodec<Long> LONG = new FixedWidthCodec<Long>() {
+        public int width() {
+            return 8;
+        }
+
+        public void write(MemorySegment segment, long offset, Long value) {
+            segment.set(ValueLayout.JAVA_LONG_UNALIGNED, offset, value);
+        }
+
+        public Long read(MemorySegment segment, long offset) {
+            return segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset);
+        }
+
+        public boolean matches(MemorySegment segment, long offset, Long value) {
+            return segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset) == value.longValue();
+        }
+    };
+
+    /**
+     * Doubles, in 8 bytes. Two doubles match if they have the same bits (as Double.equals).
+     */
+    FixedWidthCodec<Double> DOUBLE = new FixedWidthCodec<Double>() {
+        public int width() {
+            return 8;
+        }
+
+        public void write(MemorySegment segment, long offset, Double value) {
+            segment.set(ValueLayout.JAVA_LONG_UNALIGNED, offset, Double.doubleToLongBits(value));
+        }
+
+        public Double read(MemorySegment segment, long offset) {
+            return Double.longBitsToDouble(segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset));
+        }
+
+        public boolean matches(MemorySegment segment, long offset, Double value) {
+            return segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset) == Double.doubleToLongBits(value);
+        }
+    };
+
+    /**
+     * Returns a codec of strings of at most maxBytes bytes in UTF-8.
+     * A string is stored as its length (2 bytes) followed by its bytes, padded to maxBytes.
+     * @param maxBytes the largest encoded length, in [1, 65535]
+     */
+    static FixedWidthCodec<String> string(final int maxBytes) {
+        if (maxBytes < 1 || maxBytes > 0xFFFF) {
+            throw new IllegalArgumentException("Illegal string width: " + maxBytes);
+        }
+        return new FixedWidthCodec<String>() {
+            public int width() {
+                return 2 + maxBytes;
+            }
+
+            public void write(MemorySegment segment, long offset, String value) {
+                byte[] bytes = encode(value);
+                segment.set(ValueLayout.JAVA_SHORT_UNALIGNED, offset, (short) bytes.length);
+                MemorySegment.copy(bytes, 0, segment, ValueLayout.JAVA_BYTE, offset + 2, bytes.length);
+            }
+
+            public String read(MemorySegment segment, long offset) {
+                int length = segment.get(ValueLayout.JAVA_SHORT_UNALIGNED, offset) & 0xFFFF;
+                byte[] bytes = new byte[length];
+                MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset + 2, bytes, 0, length);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            public boolean matches(MemorySegment segment, long offset, String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                int length = segment.get(ValueLayout.JAVA_SHORT_UNALIGNED, offset) & 0xFFFF;
+                return length == bytes.length
+                        && MemorySegment.mismatch(segment, offset + 2, offset + 2 + length,
+                                MemorySegment.ofArray(bytes), 0, length) == -1;
+            }
+
+            private byte[] encode(String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > maxBytes) {
+                    throw new IllegalArgumentException("String of " + bytes.length + " bytes, the codec holds " + maxBytes);
+                }
+                return bytes;
+            }
+        };
+    }
+}
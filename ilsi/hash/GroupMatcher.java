@@ -0,0 +1,60 @@
+package ilsi.hash;
+
+/**
+ * Compares a group of GROUP control bytes of a SwissHashTable at once.
+ * A control byte is EMPTY, DELETED, or the 7-bit fingerprint (0 to 127) of a full slot.
+ *
+ * INSTANCE is the Vector API implementation (VectorGroupMatcher) when the module
+ * jdk.incubator.vector is present (java --add-modules jdk.incubator.vector), and a scalar
+ * SWAR implementation (SwarGroupMatcher) otherwise, or when the system property
+ * ilsi.hash.vector is false.
+ *
+ * VectorGroupMatcher lives in the source root vector/ (compiled with --add-modules jdk.incubator.vector),
+ * so that ilsi/hash builds without the incubator module.
+ */
+abstract class GroupMatcher {
+
+    /**
+     * The number of control bytes of a group
+     */
+    static final int GROUP = 16;
+
+    /**
+     * The control byte of an empty slot
+     */
+    static final byte EMPTY = (byte) 0x80;
+
+    /**
+     * The control byte of a deleted slot (a tombstone)
+     */
+    static final byte DELETED = (byte) 0xFE;
+
+    /**
+     * The matcher used by the tables
+     */
+    static final GroupMatcher INSTANCE = select();
+
+    /**
+     * Compares the group ctrl[base .. base + GROUP - 1] with a fingerprint.
+     * @return a mask with the bit i set if the byte i is h2, and the bit GROUP + i set if it is EMPTY
+     */
+    abstract long probe(byte[] ctrl, int base, byte h2);
+
+    /**
+     * @return a mask with the bit i set if the byte base + i is EMPTY or DELETED
+     */
+    abstract long matchFree(byte[] ctrl, int base);
+
+    private static GroupMatcher select() {
+        if (!Boolean.parseBoolean(System.getProperty("ilsi.hash.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new SwarGroupMatcher();
+        }
+        try {
+            // loaded by name : this class must not link against the incubator module
+            return (GroupMatcher) Class.forName("ilsi.hash.VectorGroupMatcher").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            return new SwarGroupMatcher();
+        }
+    }
+}
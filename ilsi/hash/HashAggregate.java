@@ -0,0 +1,221 @@
+package ilsi.hash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The classe HashAggregate represent a streaming group-by : each record of the input is added
+ * to the accumulator of its key, kept in a StaticHashTable, and every (key, accumulator) group is
+ * given to the output at the end of the input.
+ *
+ * When the number of groups exceeds the memory budget, the aggregation becomes a hybrid hash
+ * aggregation : the groups already in memory keep receiving their records, and the records of
+ * new keys are spilled to local disk in partitions (SpillPartitions, with the FixedWidthCodec of
+ * the records), each aggregated in turn, recursively if a partition has still too many groups.
+ * With a parallelism above 1, the input is partitioned first and the partitions are aggregated
+ * concurrently, each with its share of the budget : the output must then be thread-safe.
+ *
+ * The memory is estimated from the number of groups (groupSize bytes each). The records with a
+ * null key are ignored. The order of the groups is unspecified.
+ *
+ * Example :
+ *      HashAggregate<Sale, String, Long> sum = HashAggregate.builder(Sale::product, () -> 0L,
+ *                                                   (total, sale) -> total + sale.amount())
+ *           .memoryBudget(256 << 20).spillTo(tmp, saleCodec).build();
+ *      sum.aggregate(sales.iterator(), (product, total) -> ...);
+ *
+ * @param <R> the type of the records
+ * @param <K> the type of the group keys
+ * @param <A> the type of the accumulators
+ */
+public final class HashAggregate<R, K, A> {
+
+    /**
+     * The default estimated size of a group in memory, with its table entry
+     */
+    public static final int DEFAULT_GROUP_SIZE = 128;
+
+    private final Function<? super R, ? extends K> key;
+    private final Supplier<? extends A> initial;
+    private final BiFunction<? super A, ? super R, ? extends A> accumulator;
+    private final long memoryBudget;
+    private final int groupSize;
+    private final Path spillDirectory;
+    private final FixedWidthCodec<R> codec;
+    private final int parallelism;
+
+    private HashAggregate(Builder<R, K, A> builder) {
+        this.key = builder.key;
+        this.initial = builder.initial;
+        this.accumulator = builder.accumulator;
+        this.memoryBudget = builder.memoryBudget;
+        this.groupSize = builder.groupSize;
+        this.spillDirectory = builder.spillDirectory;
+        this.codec = builder.codec;
+        this.parallelism = builder.parallelism;
+    }
+
+    /**
+     * Returns a new builder of aggregations
+     * @param key the group key of a record
+     * @param initial the accumulator of a new group
+     * @param accumulator adds a record to an accumulator, and returns the new accumulator (not null)
+     */
+    public static <R, K, A> Builder<R, K, A> builder(Function<? super R, ? extends K> key,
+                                                     Supplier<? extends A> initial,
+                                                     BiFunction<? super A, ? super R, ? extends A> accumulator) {
+        return new Builder<R, K, A>(key, initial, accumulator);
+    }
+
+    /**
+     * Aggregates the records of input by key : output receives each group once, with its accumulator.
+     * The input is read once.
+     * @param input the records
+     * @param output the consumer of the groups, called concurrently with a parallelism above 1
+     * @return the number of groups
+     * @throws IOException if a spill file cannot be written or read
+     */
+    public long aggregate(Iterator<? extends R> input, BiConsumer<? super K, ? super A> output) throws IOException {
+        try {
+            if (this.parallelism > 1) {
+                try (SpillPartitions<R> partitions = new SpillPartitions<R>(this.spillDirectory, this.codec)) {
+                    while (input.hasNext()) {
+                        R record = input.next();
+                        K k = this.key.apply(record);
+                        if (k != null) partitions.add(SpillPartitions.partitionOf(k, 0), record);
+                    }
+                    return this.aggregatePartitions(partitions, output, 0, this.memoryBudget / this.parallelism, this.parallelism);
+                }
+            }
+            return this.aggregate(input, output, 0, this.memoryBudget);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();  // from the iterator of a spill file
+        }
+    }
+
+    /**
+     * Aggregates the records of one partition at a level of partitioning, in at most budget bytes
+     */
+    private long aggregate(Iterator<? extends R> input, BiConsumer<? super K, ? super A> output,
+                           int level, long budget) throws IOException {
+        StaticHashTable<K, A> table = new StaticHashTable<K, A>();
+        long maxGroups = Math.max(1, budget / this.groupSize);
+        SpillPartitions<R> partitions = null;
+        try {
+            while (input.hasNext()) {
+                R record = input.next();
+                K k = this.key.apply(record);
+                if (k == null) continue;
+                if (partitions == null) {
+                    if (table.size() < maxGroups || level == SpillPartitions.MAX_LEVELS) {
+                        table.compute(k, (kk, a) -> this.accumulator.apply((a == null) ? this.initial.get() : a, record));
+                        continue;
+                    }
+                    if (this.spillDirectory == null) {
+                        throw new IllegalStateException("The groups exceed the memory budget of "
+                                + this.memoryBudget + " bytes, and no spill directory is set");
+                    }
+                    partitions = new SpillPartitions<R>(this.spillDirectory, this.codec);
+                }
+                // full : only the groups in memory are updated, the other records are spilled
+                if (table.compute(k, (kk, a) -> (a == null) ? null : this.accumulator.apply(a, record)) == null) {
+                    partitions.add(SpillPartitions.partitionOf(k, level), record);
+                }
+            }
+            long groups = table.size();
+            table.forEach(output);
+            table.clear(true);
+            if (partitions != null) groups += this.aggregatePartitions(partitions, output, level, budget, 1);
+            return groups;
+        } finally {
+            if (partitions != null) partitions.close();
+        }
+    }
+
+    /**
+     * Aggregates each spilled partition at the next level, with parallelism workers
+     */
+    private long aggregatePartitions(SpillPartitions<R> partitions, BiConsumer<? super K, ? super A> output,
+                                     int level, long budget, int parallelism) throws IOException {
+        return SpillPartitions.sum(parallelism, p -> {
+            long groups = 0;
+            if (partitions.count(p) > 0) {
+                groups = this.aggregate(partitions.read(p), output, level + 1, budget);
+            }
+            partitions.delete(p);
+            return groups;
+        });
+    }
+
+    /**
+     * The builder of a HashAggregate
+     */
+    public static final class Builder<R, K, A> {
+        private final Function<? super R, ? extends K> key;
+        private final Supplier<? extends A> initial;
+        private final BiFunction<? super A, ? super R, ? extends A> accumulator;
+        private long memoryBudget = Long.MAX_VALUE;
+        private int groupSize = DEFAULT_GROUP_SIZE;
+        private Path spillDirectory;
+        private FixedWidthCodec<R> codec;
+        private int parallelism = 1;
+
+        private Builder(Function<? super R, ? extends K> key, Supplier<? extends A> initial,
+                        BiFunction<? super A, ? super R, ? extends A> accumulator) {
+            this.key = Objects.requireNonNull(key, "key");
+            this.initial = Objects.requireNonNull(initial, "initial");
+            this.accumulator = Objects.requireNonNull(accumulator, "accumulator");
+        }
+
+        /**
+         * Sets the memory of the groups in bytes, unlimited by default
+         */
+        public Builder<R, K, A> memoryBudget(long bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("Illegal memory budget: " + bytes);
+            this.memoryBudget = bytes;
+            return this;
+        }
+
+        /**
+         * Sets the estimated size in memory of a group with its table entry, DEFAULT_GROUP_SIZE by default
+         */
+        public Builder<R, K, A> groupSize(int bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("Illegal group size: " + bytes);
+            this.groupSize = bytes;
+            return this;
+        }
+
+        /**
+         * Allows the aggregation to spill records to files of directory, encoded with codec.
+         * Without it, more groups than the memory budget is an IllegalStateException.
+         */
+        public Builder<R, K, A> spillTo(Path directory, FixedWidthCodec<R> codec) {
+            this.spillDirectory = Objects.requireNonNull(directory, "directory");
+            this.codec = Objects.requireNonNull(codec, "codec");
+            return this;
+        }
+
+        /**
+         * Sets the number of partitions aggregated concurrently, 1 by default (needs spillTo above 1)
+         */
+        public Builder<R, K, A> parallelism(int parallelism) {
+            if (parallelism < 1) throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public HashAggregate<R, K, A> build() {
+            if (this.parallelism > 1 && this.spillDirectory == null) {
+                throw new IllegalStateException("The parallel mode partitions the input to disk, spillTo is required");
+            }
+            return new HashAggregate<R, K, A>(this);
+        }
+    }
+}
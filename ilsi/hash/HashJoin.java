@@ -0,0 +1,308 @@
+package ilsi.hash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The classe HashJoin represent a streaming equi-join of two inputs of records (the pattern of
+ * Main.twoSum at scale) : the build input is loaded in a StaticHashTable from the join key to its
+ * records, then the probe input is streamed through it by batches of BATCH keys (searchAll) and
+ * each matching (build record, probe record) pair is given to the output.
+ *
+ * When the build input exceeds the memory budget, the join becomes a Grace hash join : both inputs
+ * are partitioned to local disk by a hash of the key (SpillPartitions, with the FixedWidthCodec of
+ * each side), and each pair of partitions is joined in turn, recursively if a partition is still
+ * too large. Each record is then written once and read once per level. With a parallelism above 1,
+ * both inputs are partitioned first and the partitions are joined concurrently,
+ * each with its share of the budget : the output must then be thread-safe.
+ *
+ * The memory of the build side is estimated from the number of build records (recordSize bytes each).
+ * The records with a null key never match. The order of the output is unspecified.
+ *
+ * Example :
+ *      HashJoin<Integer, Order, Customer> join = HashJoin.builder(Order::customerId, Customer::id)
+ *           .memoryBudget(256 << 20).spillTo(tmp, orderCodec, customerCodec).build();
+ *      long pairs = join.join(orders.iterator(), customers.iterator(), (o, c) -> ...);
+ *
+ * @param <K> the type of the join key
+ * @param <B> the type of the build records
+ * @param <P> the type of the probe records
+ */
+public final class HashJoin<K, B, P> {
+
+    /**
+     * The number of probe keys searched together (see HashTable.searchAll)
+     */
+    public static final int BATCH = 256;
+
+    /**
+     * The default estimated size of a build record in memory, with its table entry
+     */
+    public static final int DEFAULT_RECORD_SIZE = 128;
+
+    private final Function<? super B, ? extends K> buildKey;
+    private final Function<? super P, ? extends K> probeKey;
+    private final long memoryBudget;
+    private final int recordSize;
+    private final Path spillDirectory;
+    private final FixedWidthCodec<B> buildCodec;
+    private final FixedWidthCodec<P> probeCodec;
+    private final int parallelism;
+
+    /**
+     * The build records of a key, in a linked list
+     */
+    private static final class Node<B> {
+        final B record;
+        Node<B> next;
+
+        Node(B record) {
+            this.record = record;
+        }
+    }
+
+    /**
+     * Links a new node in front of the nodes of its key (merge of the table)
+     */
+    private static final BiFunction<Node<Object>, Node<Object>, Node<Object>> PUSH = (head, node) -> {
+        node.next = head;
+        return node;
+    };
+
+    private HashJoin(Builder<K, B, P> builder) {
+        this.buildKey = builder.buildKey;
+        this.probeKey = builder.probeKey;
+        this.memoryBudget = builder.memoryBudget;
+        this.recordSize = builder.recordSize;
+        this.spillDirectory = builder.spillDirectory;
+        this.buildCodec = builder.buildCodec;
+        this.probeCodec = builder.probeCodec;
+        this.parallelism = builder.parallelism;
+    }
+
+    /**
+     * Returns a new builder of joins
+     * @param buildKey the join key of a build record
+     * @param probeKey the join key of a probe record
+     */
+    public static <K, B, P> Builder<K, B, P> builder(Function<? super B, ? extends K> buildKey,
+                                                     Function<? super P, ? extends K> probeKey) {
+        return new Builder<K, B, P>(buildKey, probeKey);
+    }
+
+    /**
+     * Joins the build input with the probe input : output receives every pair of records with equal keys.
+     * Each input is read once.
+     * @param build the records of the build side (the smaller input)
+     * @param probe the records of the probe side
+     * @param output the consumer of the matching pairs, called concurrently with a parallelism above 1
+     * @return the number of matching pairs
+     * @throws IOException if a spill file cannot be written or read
+     */
+    public long join(Iterator<? extends B> build, Iterator<? extends P> probe,
+                     BiConsumer<? super B, ? super P> output) throws IOException {
+        try {
+            if (this.parallelism > 1) {
+                try (SpillPartitions<B> builds = new SpillPartitions<B>(this.spillDirectory, this.buildCodec);
+                     SpillPartitions<P> probes = new SpillPartitions<P>(this.spillDirectory, this.probeCodec)) {
+                    this.partitionBuild(builds, build, 0);
+                    this.partitionProbe(probes, probe, 0);
+                    return this.joinPartitions(builds, probes, output, 0, this.memoryBudget / this.parallelism, this.parallelism);
+                }
+            }
+            return this.join(build, probe, output, 0, this.memoryBudget);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();  // from the iterator of a spill file
+        }
+    }
+
+    /**
+     * Joins two inputs of the same partition at a level of partitioning, in at most budget bytes
+     */
+    private long join(Iterator<? extends B> build, Iterator<? extends P> probe,
+                      BiConsumer<? super B, ? super P> output, int level, long budget) throws IOException {
+        StaticHashTable<K, Node<B>> table = new StaticHashTable<K, Node<B>>();
+        long maxRecords = Math.max(1, budget / this.recordSize);
+        long records = 0;
+        BiFunction<Node<B>, Node<B>, Node<B>> push = (BiFunction) PUSH;
+
+        while (build.hasNext()) {
+            B record = build.next();
+            K key = this.buildKey.apply(record);
+            if (key == null) continue;
+            if (records == maxRecords && level < SpillPartitions.MAX_LEVELS) {
+                if (this.spillDirectory == null) {
+                    throw new IllegalStateException("The build input exceeds the memory budget of "
+                            + this.memoryBudget + " bytes, and no spill directory is set");
+                }
+                // too large : the records of the table and the rest of the input go to disk
+                try (SpillPartitions<B> builds = new SpillPartitions<B>(this.spillDirectory, this.buildCodec);
+                     SpillPartitions<P> probes = new SpillPartitions<P>(this.spillDirectory, this.probeCodec)) {
+                    IOException[] failure = new IOException[1];
+                    table.forEach((k, head) -> {
+                        int partition = SpillPartitions.partitionOf(k, level);
+                        for (Node<B> node = head; node != null && failure[0] == null; node = node.next) {
+                            try {
+                                builds.add(partition, node.record);
+                            } catch (IOException e) {
+                                failure[0] = e;
+                            }
+                        }
+                    });
+                    if (failure[0] != null) throw failure[0];
+                    table.clear(true);
+                    builds.add(SpillPartitions.partitionOf(key, level), record);
+                    this.partitionBuild(builds, build, level);
+                    this.partitionProbe(probes, probe, level);
+                    return this.joinPartitions(builds, probes, output, level, budget, 1);
+                }
+            }
+            table.merge(key, new Node<B>(record), push);
+            records++;
+        }
+        return this.probe(table, probe, output);
+    }
+
+    /**
+     * Streams the probe input through the table by batches of BATCH keys
+     */
+    private long probe(StaticHashTable<K, Node<B>> table, Iterator<? extends P> probe,
+                       BiConsumer<? super B, ? super P> output) {
+        if (table.isEmpty()) return 0;
+        K[] keys = (K[]) new Object[BATCH];
+        P[] records = (P[]) new Object[BATCH];
+        Node<B>[] matches = (Node<B>[]) new Node[BATCH];
+        long pairs = 0;
+        int count = 0;
+        while (probe.hasNext()) {
+            P record = probe.next();
+            K key = this.probeKey.apply(record);
+            if (key == null) continue;
+            keys[count] = key;
+            records[count] = record;
+            if (++count == BATCH) {
+                pairs += this.emit(table.searchAll(keys, matches), records, count, output);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            pairs += this.emit(table.searchAll(Arrays.copyOf(keys, count), matches), records, count, output);
+        }
+        return pairs;
+    }
+
+    private long emit(Node<B>[] matches, P[] records, int count, BiConsumer<? super B, ? super P> output) {
+        long pairs = 0;
+        for (int i = 0; i < count; i++) {
+            for (Node<B> node = matches[i]; node != null; node = node.next) {
+                output.accept(node.record, records[i]);
+                pairs++;
+            }
+        }
+        return pairs;
+    }
+
+    private void partitionBuild(SpillPartitions<B> builds, Iterator<? extends B> build, int level) throws IOException {
+        while (build.hasNext()) {
+            B record = build.next();
+            K key = this.buildKey.apply(record);
+            if (key != null) builds.add(SpillPartitions.partitionOf(key, level), record);
+        }
+    }
+
+    private void partitionProbe(SpillPartitions<P> probes, Iterator<? extends P> probe, int level) throws IOException {
+        while (probe.hasNext()) {
+            P record = probe.next();
+            K key = this.probeKey.apply(record);
+            if (key != null) probes.add(SpillPartitions.partitionOf(key, level), record);
+        }
+    }
+
+    /**
+     * Joins each pair of spilled partitions at the next level, with parallelism workers
+     */
+    private long joinPartitions(SpillPartitions<B> builds, SpillPartitions<P> probes,
+                                BiConsumer<? super B, ? super P> output, int level, long budget,
+                                int parallelism) throws IOException {
+        return SpillPartitions.sum(parallelism, p -> {
+            long pairs = 0;
+            if (builds.count(p) > 0 && probes.count(p) > 0) {
+                pairs = this.join(builds.read(p), probes.read(p), output, level + 1, budget);
+            }
+            builds.delete(p);
+            probes.delete(p);
+            return pairs;
+        });
+    }
+
+    /**
+     * The builder of a HashJoin
+     */
+    public static final class Builder<K, B, P> {
+        private final Function<? super B, ? extends K> buildKey;
+        private final Function<? super P, ? extends K> probeKey;
+        private long memoryBudget = Long.MAX_VALUE;
+        private int recordSize = DEFAULT_RECORD_SIZE;
+        private Path spillDirectory;
+        private FixedWidthCodec<B> buildCodec;
+        private FixedWidthCodec<P> probeCodec;
+        private int parallelism = 1;
+
+        private Builder(Function<? super B, ? extends K> buildKey, Function<? super P, ? extends K> probeKey) {
+            this.buildKey = Objects.requireNonNull(buildKey, "buildKey");
+            this.probeKey = Objects.requireNonNull(probeKey, "probeKey");
+        }
+
+        /**
+         * Sets the memory of the build side in bytes, unlimited by default
+         */
+        public Builder<K, B, P> memoryBudget(long bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("Illegal memory budget: " + bytes);
+            this.memoryBudget = bytes;
+            return this;
+        }
+
+        /**
+         * Sets the estimated size in memory of a build record with its table entry, DEFAULT_RECORD_SIZE by default
+         */
+        public Builder<K, B, P> recordSize(int bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("Illegal record size: " + bytes);
+            this.recordSize = bytes;
+            return this;
+        }
+
+        /**
+         * Allows the join to spill partitions to files of directory, encoded with the codecs.
+         * Without it, a build input larger than the memory budget is an IllegalStateException.
+         */
+        public Builder<K, B, P> spillTo(Path directory, FixedWidthCodec<B> buildCodec, FixedWidthCodec<P> probeCodec) {
+            this.spillDirectory = Objects.requireNonNull(directory, "directory");
+            this.buildCodec = Objects.requireNonNull(buildCodec, "buildCodec");
+            this.probeCodec = Objects.requireNonNull(probeCodec, "probeCodec");
+            return this;
+        }
+
+        /**
+         * Sets the number of partitions joined concurrently, 1 by default (needs spillTo above 1)
+         */
+        public Builder<K, B, P> parallelism(int parallelism) {
+            if (parallelism < 1) throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public HashJoin<K, B, P> build() {
+            if (this.parallelism > 1 && this.spillDirectory == null) {
+                throw new IllegalStateException("The parallel mode partitions the inputs to disk, spillTo is required");
+            }
+            return new HashJoin<K, B, P>(this);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ilsi.hash;
+
+import java.util.SplittableRandom;
+
+/**
+ * The classe HashStrategies gathers the implementations of HashStrategy.
+ * None of them uses a division or a modulo.
+ *
+ * 1 - multiply-shift on 32 bits : (a*k mod 2^32), the default of the tables (MULTIPLY_SHIFT, FIBONACCI)
+ * 2 - multiply-add-shift on 64 bits : (a*k + b mod 2^64), universal for random a and b
+ * 3 - Mersenne prime universal hashing : (a*k + b) mod (2^61 - 1), the mod is a shift and an add
+ * 4 - mixers in the style of wyhash and xxHash : fast, and every bit of the key affects every bit of the hash
+ * 5 - simple tabulation : 4 lookups in tables of random numbers, 3-independent
+ */
+public final class HashStrategies {
+
+    /**
+     * The Mersenne prime 2^61 - 1
+     */
+    public static final long MERSENNE_61 = (1L << 61) - 1;
+
+    /**
+     * Multiply-shift with the constant a = 6180339887 of StaticHashTable
+     */
+    public static final HashStrategy MULTIPLY_SHIFT = multiplyShift((int) 6180339887L);
+
+    /**
+     * Multiply-shift with 2^32 / golden ratio (Fibonacci hashing)
+     */
+    public static final HashStrategy FIBONACCI = multiplyShift(0x9E3779B9);
+
+    private HashStrategies() {
+    }
+
+    /**
+     * Returns the multiply-shift hash function k*a mod 2^32 (the tables take its top bits)
+     * @param a the multiplier, should be odd
+     */
+    public static HashStrategy multiplyShift(final int a) {
+        return new HashStrategy() {
+            public int hash(int h) {
+                return h * a;
+            }
+        };
+    }
+
+    /**
+     * Returns a multiply-add-shift hash function on 64 bits words with random a and b :
+     * the top 32 bits of a*k + b mod 2^64. The family is universal for 32 bits keys.
+     * @param seed the seed of the random parameters
+     */
+    public static HashStrategy multiplyShift64(long seed) {
+        SplittableRandom rand = new SplittableRandom(seed);
+        final long a = rand.nextLong();
+        final long b = rand.nextLong();
+        return new HashStrategy() {
+            public int hash(int h) {
+                return (int) ((a * (h & 0xFFFFFFFFL) + b) >>> 32);
+            }
+        };
+    }
+
+    /**
+     * Returns a Mersenne prime universal hash function with random a in [1, p-1] and b in [0, p-1]
+     * @param seed the seed of the random parameters
+     */
+    public static Mersenne mersenne(long seed) {
+        SplittableRandom rand = new SplittableRandom(seed);
+        return new Mersenne(1 + rand.nextLong(MERSENNE_61 - 1), rand.nextLong(MERSENNE_61));
+    }
+
+    /**
+     * Returns a mixer in the style of wyhash : two rounds of 64 x 64 -> 128 bits multiplication,
+     * folding the high half of the product onto the low half
+     * @param seed the seed of the hash function
+     */
+    public static HashStrategy wyMix(final long seed) {
+        return new HashStrategy() {
+            public int hash(int h) {
+                long x = mum((h & 0xFFFFFFFFL) ^ seed ^ 0xa0761d6478bd642fL, seed ^ 0xe7037ed1a0b428dbL);
+                x = mum(x ^ 0x8ebc6af09c88c6e3L, 0x589965cc75374cc3L);
+                return (int) (x >>> 32);
+            }
+        };
+    }
+
+    /**
+     * Returns the low half xor the high half of the 128 bits product a*b
+     */
+    private static long mum(long a, long b) {
+        return (a * b) ^ Math.unsignedMultiplyHigh(a, b);
+    }
+
+    /**
+     * Returns xxHash32 of the 4 bytes of the hash code
+     * @param seed the seed of the hash function
+     */
+    public static HashStrategy xxHash32(final int seed) {
+        return new HashStrategy() {
+            public int hash(int h) {
+                int x = seed + 0x165667B1 + 4;            // seed + PRIME32_5 + length
+                x += h * 0xC2B2AE3D;                      // PRIME32_3
+                x = Integer.rotateLeft(x, 17) * 0x27D4EB2F; // PRIME32_4
+                x ^= x >>> 15;
+                x *= 0x85EBCA77;                          // PRIME32_2
+                x ^= x >>> 13;
+                x *= 0xC2B2AE3D;
+                x ^= x >>> 16;
+                return x;
+            }
+        };
+    }
+
+    /**
+     * Returns a simple tabulation hash function : the xor of 4 random words, one per byte of the key.
+     * The 4 tables take 4 KB and stay in the L1 cache.
+     * @param seed the seed of the random tables
+     */
+    public static HashStrategy tabulation(long seed) {
+        SplittableRandom rand = new SplittableRandom(seed);
+        final int[] t = new int[4 * 256];
+        for (int i = 0; i < t.length; i++) t[i] = rand.nextInt();
+        return new HashStrategy() {
+            public int hash(int h) {
+                return t[h & 0xFF]
+                        ^ t[256 + ((h >>> 8) & 0xFF)]
+                        ^ t[512 + ((h >>> 16) & 0xFF)]
+                        ^ t[768 + (h >>> 24)];
+            }
+        };
+    }
+
+    /**
+     * The Mersenne prime universal hash function (a*k + b) mod (2^61 - 1), for a in [1, p-1] and b in [0, p-1].
+     * The key is taken as an unsigned 32 bits number, and the hash is the top 32 bits of the 61 bits result.
+     * Since 2^61 = 1 mod p, the reduction is a shift and an addition instead of a division.
+     */
+    public static final class Mersenne implements HashStrategy {
+        public final long a;
+        public final long b;
+
+        public Mersenne(long a, long b) {
+            if (a < 1 || a >= MERSENNE_61 || b < 0 || b >= MERSENNE_61) {
+                throw new IllegalArgumentException("Illegal parameters: a=" + a + ", b=" + b);
+            }
+            this.a = a;
+            this.b = b;
+        }
+
+        public int hash(int h) {
+            long k = h & 0xFFFFFFFFL;
+            long lo = a * k;
+            long hi = Math.multiplyHigh(a, k);               // a*k < 2^93 : hi < 2^29
+            long r = (lo & MERSENNE_61) + (lo >>> 61) + (hi << 3) + b;
+            r = (r & MERSENNE_61) + (r >>> 61);
+            if (r >= MERSENNE_61) r -= MERSENNE_61;
+            return (int) (r >>> 29);
+        }
+    }
+}
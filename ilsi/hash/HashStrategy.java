@@ -0,0 +1,19 @@
+package ilsi.hash;
+
+/**
+ * The interface HashStrategy represent the hash function of a table : it maps the hashCode()
+ * of a key to 32 bits whose high bits are well distributed.
+ *
+ * The tables take the index of a key from the high bits of its hash (the top l bits for a
+ * table of 2^l slots), so no division is needed. See HashStrategies for the implementations.
+ */
+@FunctionalInterface
+public interface HashStrategy {
+
+    /**
+     * Hashes the hash code of a key
+     * @param h the hash code of the key
+     * @return int - the hash value, the tables use its high bits
+     */
+    int hash(int h);
+}
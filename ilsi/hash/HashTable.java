@@ -1,7 +1,18 @@
 package ilsi.hash;
 
+import java.util.AbstractMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -32,6 +43,38 @@ public abstract class HashTable <K,V> {
      */
     protected final double MAX_LOAD = 0.75;
 
+    /**
+     * This is a constant, the min load factor : below it a delete halves the table. We fix it to 0.2
+     * (far from MAX_LOAD, so that a table never shrinks and grows back for a few operations)
+     */
+    protected final double MIN_LOAD = 0.2;
+
+    /**
+     * The capacity below which a delete never shrinks the table : the initial capacity,
+     * raised by ensureCapacity
+     */
+    protected int minCapacity;
+
+    /**
+     * The initial capacity of the hash table, the capacity clear(true) returns to
+     */
+    protected int initialCapacity;
+
+    /**
+     * The hash function of the keys, the index of a key is taken from the high bits of its hash
+     */
+    protected final HashStrategy hashStrategy;
+
+    /**
+     * The statistics of this table, null unless HashTableStats.ENABLED (-Dilsi.hash.stats=true)
+     */
+    protected final HashTableStats stats;
+
+    /**
+     * The largest capacity of a table : the largest power of two that is an int
+     */
+    protected static final int MAXIMUM_CAPACITY = 1 << 30;
+
     /**
      * An array of elements in the forme (key, value)
      */
@@ -46,10 +89,7 @@ public abstract class HashTable <K,V> {
      * @param capacity initial capacity of the hash table
      */
     public HashTable (int capacity){
-        this.m = capacity;
-        this.n = 0;
-        this.table = (Element<K,V>[]) new Element[capacity];
-        for (int i=0; i<m; i++) table[i] = null;
+        this(capacity, true, HashStrategies.MULTIPLY_SHIFT);
     }
 
 
@@ -62,6 +102,66 @@ public abstract class HashTable <K,V> {
     }
 
 
+    /**
+     * Constructor of new empty hashtable with the specified initial capacity and hash function
+     * @param capacity initial capacity of the hash table
+     * @param hashStrategy the hash function of the keys
+     */
+    protected HashTable (int capacity, HashStrategy hashStrategy){
+        this(capacity, true, hashStrategy);
+    }
+
+
+    /**
+     * Constructor for the subclasses that do not store their elements in the array table
+     * (for example tables with parallel arrays of keys and values).
+     * table is left null and the subclass allocates its own storage.
+     * @param capacity initial capacity of the hash table
+     * @param allocateTable false to leave table null
+     */
+    protected HashTable (int capacity, boolean allocateTable){
+        this(capacity, allocateTable, HashStrategies.MULTIPLY_SHIFT);
+    }
+
+
+    /**
+     * Constructor of new empty hashtable
+     * @param capacity initial capacity of the hash table
+     * @param allocateTable false to leave table null
+     * @param hashStrategy the hash function of the keys
+     */
+    protected HashTable (int capacity, boolean allocateTable, HashStrategy hashStrategy){
+        this.m = capacity;
+        this.n = 0;
+        this.minCapacity = capacity;
+        this.initialCapacity = capacity;
+        if (allocateTable) this.table = (Element<K,V>[]) new Element[capacity];
+        this.hashStrategy = Objects.requireNonNull(hashStrategy, "hashStrategy");
+        this.stats = (HashTableStats.ENABLED && this.isInstrumented()) ? new HashTableStats(this) : null;
+    }
+
+
+    /**
+     * Returns the smallest power of two greater than or equal to capacity
+     * (at least 1, at most MAXIMUM_CAPACITY)
+     */
+    protected static int tableSizeFor (int capacity){
+        if (capacity <= 1) return 1;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+    }
+
+
+    /**
+     * Returns the smallest power of two capacity that holds expectedEntries
+     * without exceeding the load factor maxLoad
+     */
+    protected static int capacityFor (int expectedEntries, double maxLoad){
+        long needed = (long) Math.ceil(expectedEntries / maxLoad);
+        return tableSizeFor((int) Math.min(needed, MAXIMUM_CAPACITY));
+    }
+
+
     /**
      * Hashes a key to a corresponding index
      * 
@@ -140,7 +240,320 @@ public abstract class HashTable <K,V> {
      */
     public abstract void clear ();
 
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     * With release, the storage is also given back : the table returns to its initial capacity
+     * and forgets the capacity reserved by ensureCapacity, otherwise it keeps its current capacity (as clear()).
+     * 
+     * Subclasses that resize should override it, the default calls clear().
+     * 
+     * @param release true to release the storage
+     */
+    public void clear (boolean release){
+        this.clear();
+    }
+
+
+    /**
+     * Shrinks the capacity of this hash table to the smallest capacity that holds its mappings,
+     * so that a full scan (keys, values, forEach) costs O(size) again after a burst of deletes.
+     * 
+     * Subclasses that resize should override it, the default does nothing.
+     */
+    public void trimToSize (){
+    }
+
+
+    /**
+     * Returns true if the load factor is below MIN_LOAD and the capacity above its initial capacity :
+     * a delete then halves the table
+     */
+    protected boolean shouldShrink (){
+        return this.m > this.minCapacity && this.n < MIN_LOAD * this.m;
+    }
+
+
+    /**
+     * Raises the capacity below which the table never shrinks,
+     * so that the first deletes do not undo ensureCapacity
+     * @param capacity the capacity reserved by ensureCapacity
+     */
+    protected void reserveCapacity (int capacity){
+        if (capacity > this.minCapacity) this.minCapacity = capacity;
+    }
+
     
+    /**
+     * Makes room for expectedEntries mappings, so that they can be inserted without any resize.
+     * The table is resized at most once, directly to its final capacity.
+     * 
+     * Subclasses that resize should override it, the default does nothing.
+     * 
+     * @param expectedEntries the total number of mappings the table will hold
+     */
+    public void ensureCapacity (int expectedEntries){
+    }
+
+
+    /**
+     * Makes room for expectedEntries mappings like ensureCapacity, without raising minCapacity :
+     * insertAll presizes the table with it, so the deletes that follow a batch can still shrink it.
+     * 
+     * Subclasses that reserve their capacity in ensureCapacity should override it, the default calls ensureCapacity.
+     * 
+     * @param expectedEntries the total number of mappings the table will hold
+     */
+    protected void presize (int expectedEntries){
+        this.ensureCapacity(expectedEntries);
+    }
+
+
+    /**
+     * Associates each keys[i] with values[i] in this hash table.
+     * The table is resized at most once, before the first insertion.
+     * 
+     * Subclasses may override it with a faster batched implementation.
+     * 
+     * @param keys the keys to insert
+     * @param values the values, values[i] is associated with keys[i]
+     */
+    public void insertAll (K[] keys, V[] values){
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values have different lengths: " + keys.length + " != " + values.length);
+        }
+        this.presize((int) Math.min(Integer.MAX_VALUE, (long) this.size() + keys.length));
+        for (int i = 0; i < keys.length; i++) {
+            this.insert(keys[i], values[i]);
+        }
+    }
+
+
+    /**
+     * Searches the values associated with a batch of keys.
+     * 
+     * Subclasses may override it with a faster batched implementation.
+     * 
+     * @param keys the keys to search
+     * @param results an array of at least keys.length values, results[i] receives the value of keys[i] (or null)
+     * @return results
+     */
+    public V[] searchAll (K[] keys, V[] results){
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("results is shorter than keys: " + results.length + " < " + keys.length);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            results[i] = this.search(keys[i]);
+        }
+        return results;
+    }
+
+
+    /**
+     * Removes the mappings of a batch of keys.
+     * 
+     * @param keys the keys to remove
+     * @return the number of mappings removed
+     */
+    public int deleteAll (K[] keys){
+        int removed = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (this.delete(keys[i]) != null) removed++;
+        }
+        return removed;
+    }
+
+
+    /**
+     * Associates value with key only if the key has no mapping.
+     * 
+     * The default searches then inserts, subclasses should override it with a single probe.
+     * 
+     * @return the current value of key, or null if value was inserted
+     */
+    public V putIfAbsent (K key, V value){
+        V old = this.search(key);
+        if (old == null) this.insert(key, value);
+        return old;
+    }
+
+
+    /**
+     * Computes the new value of key from its current value (null if absent), as Map.compute :
+     * the new value replaces the old one, and a null new value removes the mapping.
+     * The remapping function must not modify this table.
+     * 
+     * The default searches then inserts or deletes, subclasses should override it with a single probe.
+     * 
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    public V compute (K key, BiFunction<? super K, ? super V, ? extends V> remapping){
+        V old = this.search(key);
+        V value = remapping.apply(key, old);
+        if (value == null) {
+            if (old != null) this.delete(key);
+        } else {
+            this.insert(key, value);
+        }
+        return value;
+    }
+
+
+    /**
+     * Associates value (not null) with key if the key has no mapping, otherwise replaces the current value
+     * by remapping(current, value) (as Map.merge), a null result removes the mapping.
+     * For example merge(key, 1, Integer::sum) counts the occurrences of key.
+     * The remapping function must not modify this table.
+     * 
+     * The default searches then inserts or deletes, subclasses should override it with a single probe.
+     * 
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    public V merge (K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping){
+        Objects.requireNonNull(value, "value");
+        V old = this.search(key);
+        V merged = (old == null) ? value : remapping.apply(old, value);
+        if (merged == null) {
+            this.delete(key);
+        } else {
+            this.insert(key, merged);
+        }
+        return merged;
+    }
+
+
+    /**
+     * Performs the given action for each (key, value) of this hash table.
+     * 
+     * The table must not be modified by the action.
+     * Subclasses should override it with a direct walk of their storage,
+     * that creates no list and no entry object.
+     * 
+     * @param action the action to be performed for each mapping
+     */
+    public void forEach (BiConsumer<? super K, ? super V> action){
+        Cursor<K,V> c = this.cursor();
+        while (c.advance()) {
+            action.accept(c.key(), c.value());
+        }
+    }
+
+
+    /**
+     * Returns a cursor over the (key, value) of this hash table.
+     * The table must not be modified while the cursor is used.
+     * 
+     * The default cursor walks the list of keys() and searches each key,
+     * subclasses should override it with an allocation free cursor.
+     */
+    public Cursor<K,V> cursor (){
+        return new KeyListCursor();
+    }
+
+
+    /**
+     * Returns a spliterator over the entries of this hash table.
+     * 
+     * The default spliterator wraps the cursor, subclasses should override it
+     * with a spliterator that splits the slots of the table for parallel streams.
+     */
+    public Spliterator<Map.Entry<K,V>> spliterator (){
+        final Cursor<K,V> c = this.cursor();
+        Iterator<Map.Entry<K,V>> it = new Iterator<Map.Entry<K,V>>() {
+            private boolean ready;
+            private boolean more;
+
+            public boolean hasNext() {
+                if (!ready) {
+                    more = c.advance();
+                    ready = true;
+                }
+                return more;
+            }
+
+            public Map.Entry<K,V> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return new AbstractMap.SimpleImmutableEntry<K,V>(c.key(), c.value());
+            }
+        };
+        return Spliterators.spliterator(it, this.size(), Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+
+    /**
+     * Returns a sequential stream of the entries of this hash table.
+     */
+    public Stream<Map.Entry<K,V>> stream (){
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+
+    /**
+     * Returns a parallel stream of the entries of this hash table.
+     */
+    public Stream<Map.Entry<K,V>> parallelStream (){
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+
+    /**
+     * Returns the statistics of this hash table (see HashTableStats),
+     * or null if the statistics are not enabled or the table is not instrumented
+     */
+    public HashTableStats stats (){
+        return this.stats;
+    }
+
+
+    /**
+     * Returns true if the table records its operations in stats.
+     * Called by the constructor : the instrumented subclasses return a constant true.
+     */
+    protected boolean isInstrumented (){
+        return false;
+    }
+
+
+    /**
+     * Returns the number of deleted slots kept as tombstones, 0 for the tables without tombstones.
+     * Used by the statistics.
+     */
+    protected int tombstoneCount (){
+        return 0;
+    }
+
+
+    /**
+     * Returns the number of buckets of each chain length (the last entry counts the longer chains),
+     * or null for the tables without chains. Used by the statistics.
+     */
+    protected long[] chainLengthHistogram (){
+        return null;
+    }
+
+
+    /**
+     * Returns an estimate of the memory used by this hash table (see MemoryFootprint) :
+     * its arrays and entry objects, without the keys and the values.
+     *
+     * The default counts the array table and one element per mapping,
+     * subclasses with another storage should override it.
+     */
+    public MemoryFootprint memoryFootprint (){
+        return new MemoryFootprint(this.n, this.m, MemoryFootprint.of(this.table),
+                                   (long) this.n * this.elementBytes(), 0);
+    }
+
+
+    /**
+     * Returns the size of one element of this table, for memoryFootprint
+     */
+    protected long elementBytes (){
+        return MemoryFootprint.ELEMENT;
+    }
+
+
     /**
      * Returns the number of key-value mappings in this hash table.
      */
@@ -157,15 +570,127 @@ public abstract class HashTable <K,V> {
 
 
 
+    /**
+     * A cursor over the (key, value) of a hash table.
+     * The same cursor can be used for several walks with reset(), so a scan allocates nothing.
+     * 
+     * Usage : while (c.advance()) { use c.key() and c.value() }
+     */
+    public interface Cursor <K, V> {
+
+        /**
+         * Moves to the next mapping
+         * @return false when there is no more mapping
+         */
+        boolean advance ();
+
+        /**
+         * Returns the key of the current mapping
+         */
+        K key ();
+
+        /**
+         * Returns the value of the current mapping
+         */
+        V value ();
+
+        /**
+         * Moves the cursor back before the first mapping
+         */
+        void reset ();
+    }
+
+
+    /**
+     * The default cursor : walks the list of keys and searches the value of each key.
+     * A key removed meanwhile (by another thread) is skipped.
+     */
+    private class KeyListCursor implements Cursor<K,V> {
+        private List<K> keys;
+        private Iterator<K> it;
+        private K key;
+        private V value;
+
+        public boolean advance (){
+            if (it == null) {
+                keys = HashTable.this.keys();
+                it = keys.iterator();
+            }
+            while (it.hasNext()) {
+                key = it.next();
+                value = HashTable.this.search(key);
+                if (value != null) return true;
+            }
+            key = null;
+            value = null;
+            return false;
+        }
+
+        public K key (){
+            return key;
+        }
+
+        public V value (){
+            return value;
+        }
+
+        public void reset (){
+            it = null;
+        }
+    }
+
+
+    /**
+     * A skeletal spliterator over a range [index, fence) of the slots of a table.
+     * trySplit gives away the first half of the range, so the parallel tasks
+     * walk contiguous parts of the slot array.
+     */
+    protected abstract class SlotSpliterator implements Spliterator<Map.Entry<K,V>> {
+        protected int index;
+        protected final int fence;
+
+        protected SlotSpliterator (int origin, int fence){
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        /**
+         * Returns a spliterator over the slots [origin, fence) of the same table
+         */
+        protected abstract SlotSpliterator split (int origin, int fence);
+
+        public Spliterator<Map.Entry<K,V>> trySplit (){
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) return null;
+            SlotSpliterator prefix = this.split(index, mid);
+            this.index = mid;
+            return prefix;
+        }
+
+        /**
+         * Estimated from the load factor of the whole table
+         */
+        public long estimateSize (){
+            return m == 0 ? 0 : (long) n * (fence - index) / m;
+        }
+
+        public int characteristics (){
+            return Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+
+
     
     /**
      * This class represent an element to be stored in a hash table
-     * each element is a mapping between a key and a value
+     * each element is a mapping between a key and a value.
+     * It is a static class : an element holds no reference to its table (12 bytes of header,
+     * key, value and next, 24 bytes with compressed references).
      */
-    protected class Element <K, V> {
+    protected static class Element <K, V> implements Map.Entry<K,V> {
         protected K key;
         protected V value;
-        protected Element next;
+        protected Element<K,V> next;
         
         public Element (K key, V value){
             this.key = key;
@@ -181,8 +706,27 @@ public abstract class HashTable <K,V> {
             return this.value;
         }
 
-        public void setValue (V value){
+        public V setValue (V value){
+            V old = this.value;
             this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals (Object o){
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode (){
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString (){
+            return key + "=" + value;
         }
     }
 
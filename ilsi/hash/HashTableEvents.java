@@ -0,0 +1,58 @@
+package ilsi.hash;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR events of the hash tables, committed by HashTableStats when the statistics are enabled.
+ * They are visible in a recording (java -XX:StartFlightRecording ...) under the category "Hash Tables".
+ */
+final class HashTableEvents {
+
+    private HashTableEvents() {
+    }
+
+    @Name("ilsi.hash.Resize")
+    @Label("Hash Table Resize")
+    @Category("Hash Tables")
+    @Description("A rehash of all the elements of a table into a new array")
+    static final class Resize extends Event {
+        @Label("Table Class")
+        String tableClass;
+
+        @Label("Old Capacity")
+        int oldCapacity;
+
+        @Label("New Capacity")
+        int newCapacity;
+
+        @Label("Size")
+        int size;
+
+        @Label("Resize Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long resizeTime;
+    }
+
+    @Name("ilsi.hash.LongProbe")
+    @Label("Hash Table Long Probe")
+    @Category("Hash Tables")
+    @Description("A lookup that compared at least HashTableStats.LONG_PROBE slots or elements")
+    static final class LongProbe extends Event {
+        @Label("Table Class")
+        String tableClass;
+
+        @Label("Probe Length")
+        int length;
+
+        @Label("Size")
+        int size;
+
+        @Label("Capacity")
+        int capacity;
+    }
+}
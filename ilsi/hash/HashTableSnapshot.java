@@ -0,0 +1,385 @@
+package ilsi.hash;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The classe HashTableSnapshot writes a hash table to a binary file and loads it back,
+ * without rehashing : the file holds the layout of the table (the slot of every entry)
+ * and its hash parameters, so every entry goes back to the slot it had.
+ *
+ * Supported tables : StaticHashTable, RandomHashTable (with randomA, randomB and p),
+ * OpenAddressingHashTable (with its tombstones) and RobinHoodHashTable (with the probe distances),
+ * with their default hash function.
+ * The keys and values are encoded with FixedWidthCodec, and their hashCode() must be the same
+ * in every JVM (as for Integer, Long, Double and String).
+ *
+ * Format (native byte order) : a header, then one record per entry in the order of the slots.
+ *   header : magic, kind, key width, value width, bits (m = 2^bits), n, then the parameters of the kind
+ *   record : slot index, [hash code and distance for Robin Hood], key, value
+ *   a tombstone of an open addressing table is a record ~slot index with no key and no value
+ */
+public final class HashTableSnapshot {
+
+    private static final int MAGIC = 0x48545332;  // "HTS2"
+
+    private static final byte STATIC = 1;
+    private static final byte RANDOM = 2;
+    private static final byte OPEN_ADDRESSING = 3;
+    private static final byte ROBIN_HOOD = 4;
+
+    /**
+     * magic, kind, key width, value width, bits, n
+     */
+    private static final int HEADER = 4 + 1 + 4 + 4 + 4 + 4;
+
+    private HashTableSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of table to file. The snapshot is written to a temporary file next to file,
+     * then moved over it, so file always holds a complete snapshot.
+     * A pending incremental rehash is completed first.
+     * @param table the table to write, its class must be one of the supported tables
+     * @param file the snapshot file
+     * @param keyCodec the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @throws IOException if the file cannot be written
+     */
+    public static <K, V> void write(HashTable<K, V> table, Path file,
+                                    FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec) throws IOException {
+        byte kind = kindOf(table);
+        if (table instanceof StaticHashTable && ((StaticHashTable<K, V>) table).isRehashing()) {
+            ((StaticHashTable<K, V>) table).completeRehash();
+        }
+
+        int entry = keyCodec.width() + valueCodec.width();
+        long size = HEADER;
+        switch (kind) {
+            case STATIC:
+                size += 4 + 1 + (long) table.n * (4 + entry);
+                break;
+            case RANDOM:
+                size += 4 + 1 + 3 * 8 + (long) table.n * (4 + entry);
+                break;
+            case OPEN_ADDRESSING:
+                int tombstones = ((OpenAddressingHashTable<K, V>) table).tombstones;
+                size += 4 + (long) table.n * (4 + entry) + 4L * tombstones;
+                break;
+            default:
+                size += 8 + (long) table.n * (12 + entry);
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena));
+            out.putInt(MAGIC);
+            out.putByte(kind);
+            out.putInt(keyCodec.width());
+            out.putInt(valueCodec.width());
+            out.putInt(Integer.numberOfTrailingZeros(table.m));
+            out.putInt(table.n);
+            switch (kind) {
+                case STATIC:
+                case RANDOM:
+                    writeChained((StaticHashTable<K, V>) table, kind, out, keyCodec, valueCodec);
+                    break;
+                case OPEN_ADDRESSING:
+                    writeOpenAddressing((OpenAddressingHashTable<K, V>) table, out, keyCodec, valueCodec);
+                    break;
+                default:
+                    writeRobinHood((RobinHoodHashTable<K, V>) table, out, keyCodec, valueCodec);
+            }
+            if (out.pos != size) throw new IllegalStateException("The table changed during the snapshot");
+            out.segment.force();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a table from a snapshot written by write. The file is mapped in memory,
+     * and the entries are put back in their slots without computing any hash.
+     * @param file the snapshot file
+     * @param keyCodec the encoding of the keys, the one used to write the snapshot
+     * @param valueCodec the encoding of the values, the one used to write the snapshot
+     * @return a table of the class of the table written
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static <K, V> HashTable<K, V> load(Path file, FixedWidthCodec<K> keyCodec,
+                                              FixedWidthCodec<V> valueCodec) throws IOException {
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER) throw new IOException("Not a hash table snapshot: " + file);
+            Input in = new Input(channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena));
+            if (in.getInt() != MAGIC) throw new IOException("Not a hash table snapshot: " + file);
+            byte kind = in.getByte();
+            int keyWidth = in.getInt();
+            int valueWidth = in.getInt();
+            if (keyWidth != keyCodec.width() || valueWidth != valueCodec.width()) {
+                throw new IOException("The snapshot stores keys of " + keyWidth + " bytes and values of "
+                        + valueWidth + " bytes, the codecs " + keyCodec.width() + " and " + valueCodec.width());
+            }
+            int bits = in.getInt();
+            int n = in.getInt();
+            if (bits < 1 || bits > 30 || n < 0) throw new IOException("Corrupted snapshot: " + file);
+
+            HashTable<K, V> table;
+            switch (kind) {
+                case STATIC:
+                case RANDOM:
+                    table = loadChained(kind, bits, n, in, keyCodec, valueCodec);
+                    break;
+                case OPEN_ADDRESSING:
+                    table = loadOpenAddressing(bits, n, in, keyCodec, valueCodec);
+                    break;
+                case ROBIN_HOOD:
+                    table = loadRobinHood(bits, n, in, keyCodec, valueCodec);
+                    break;
+                default:
+                    throw new IOException("Unknown table kind " + kind + " in " + file);
+            }
+            if (in.pos != size) throw new IOException("Corrupted snapshot: " + file);
+            return table;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Returns the kind of a table, only the exact supported classes have one
+     * (a subclass may have state the format does not know).
+     * The table must use its default hash function : a custom HashStrategy cannot be written.
+     */
+    private static byte kindOf(HashTable<?, ?> table) {
+        Class<?> c = table.getClass();
+        byte kind;
+        HashStrategy expected;
+        if (c == StaticHashTable.class) {
+            kind = STATIC;
+            expected = HashStrategies.MULTIPLY_SHIFT;
+        } else if (c == RandomHashTable.class) {
+            return RANDOM;  // its hash function is randomA, randomB and p
+        } else if (c == OpenAddressingHashTable.class) {
+            kind = OPEN_ADDRESSING;
+            expected = HashStrategies.MULTIPLY_SHIFT;
+        } else if (c == RobinHoodHashTable.class) {
+            kind = ROBIN_HOOD;
+            expected = HashStrategies.FIBONACCI;
+        } else {
+            throw new IllegalArgumentException("No snapshot format for " + c.getName());
+        }
+        if (table.hashStrategy != expected) {
+            throw new IllegalArgumentException("A table with a custom hash strategy cannot be written");
+        }
+        return kind;
+    }
+
+    private static <K, V> void writeChained(StaticHashTable<K, V> t, byte kind, Output out,
+                                            FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec) {
+        out.putInt(t.w);
+        out.putByte((byte) (t.incremental ? 1 : 0));
+        if (kind == RANDOM) {
+            RandomHashTable<K, V> r = (RandomHashTable<K, V>) t;
+            out.putLong(r.p);
+            out.putLong(r.randomA);
+            out.putLong(r.randomB);
+        }
+        for (int i = 0; i < t.m; i++) {
+            for (HashTable.Element<K, V> p = t.table[i]; p != null; p = p.next) {
+                out.putInt(i);
+                out.put(keyCodec, p.key);
+                out.put(valueCodec, p.value);
+            }
+        }
+    }
+
+    private static <K, V> HashTable<K, V> loadChained(byte kind, int bits, int n, Input in,
+                                                      FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec)
+            throws IOException {
+        int w = in.getInt();
+        boolean incremental = in.getByte() != 0;
+        StaticHashTable<K, V> t;
+        if (kind == RANDOM) {
+            long p = in.getLong();
+            long randomA = in.getLong();
+            long randomB = in.getLong();
+            if (p != HashStrategies.MERSENNE_61) throw new IOException("Unsupported prime " + p);
+            t = new RandomHashTable<K, V>(1 << bits, new HashStrategies.Mersenne(randomA, randomB));
+        } else {
+            t = new StaticHashTable<K, V>(1 << bits);
+        }
+        t.w = w;
+        t.incremental = incremental;
+        // the records are sorted by bucket : each one is appended to the chain of the previous one
+        int last = -1;
+        HashTable.Element<K, V> tail = null;
+        for (int j = 0; j < n; j++) {
+            int i = in.getInt();
+            if (i < last || i >= t.m) throw new IOException("Corrupted snapshot: bucket " + i);
+            HashTable.Element<K, V> e = new HashTable.Element<K, V>(in.get(keyCodec), in.get(valueCodec));
+            if (i != last) t.table[i] = e;
+            else tail.next = e;
+            tail = e;
+            last = i;
+        }
+        t.n = n;
+        return t;
+    }
+
+    private static <K, V> void writeOpenAddressing(OpenAddressingHashTable<K, V> t, Output out,
+                                                   FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec) {
+        out.putInt(t.tombstones);
+        for (int i = 0; i < t.m; i++) {
+            HashTable.Element<K, V> e = t.table[i];
+            if (e == null) continue;
+            if (e == t.TOMBSTONE) {
+                out.putInt(~i);
+            } else {
+                out.putInt(i);
+                out.put(keyCodec, e.key);
+                out.put(valueCodec, e.value);
+            }
+        }
+    }
+
+    private static <K, V> HashTable<K, V> loadOpenAddressing(int bits, int n, Input in,
+                                                             FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec)
+            throws IOException {
+        OpenAddressingHashTable<K, V> t = new OpenAddressingHashTable<K, V>(1 << bits);
+        int tombstones = in.getInt();
+        for (int j = 0; j < n + tombstones; j++) {
+            int i = in.getInt();
+            if (i < 0) {
+                if (~i >= t.m) throw new IOException("Corrupted snapshot: slot " + ~i);
+                t.table[~i] = t.TOMBSTONE;
+            } else {
+                if (i >= t.m) throw new IOException("Corrupted snapshot: slot " + i);
+                t.table[i] = new HashTable.Element<K, V>(in.get(keyCodec), in.get(valueCodec));
+            }
+        }
+        t.tombstones = tombstones;
+        t.n = n;
+        return t;
+    }
+
+    private static <K, V> void writeRobinHood(RobinHoodHashTable<K, V> t, Output out,
+                                              FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec) {
+        out.putDouble(t.maxLoad);
+        for (int i = 0; i < t.m; i++) {
+            if (t.dists[i] == 0) continue;
+            out.putInt(i);
+            out.putInt(t.hashes[i]);
+            out.putInt(t.dists[i]);
+            out.put(keyCodec, (K) t.keys[i]);
+            out.put(valueCodec, (V) t.vals[i]);
+        }
+    }
+
+    private static <K, V> HashTable<K, V> loadRobinHood(int bits, int n, Input in,
+                                                        FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec)
+            throws IOException {
+        RobinHoodHashTable<K, V> t = new RobinHoodHashTable<K, V>(1 << bits, in.getDouble());
+        for (int j = 0; j < n; j++) {
+            int i = in.getInt();
+            if (i < 0 || i >= t.m) throw new IOException("Corrupted snapshot: slot " + i);
+            t.hashes[i] = in.getInt();
+            t.dists[i] = in.getInt();
+            t.keys[i] = in.get(keyCodec);
+            t.vals[i] = in.get(valueCodec);
+        }
+        t.n = n;
+        return t;
+    }
+
+    /**
+     * Sequential writes into a mapped segment
+     */
+    private static final class Output {
+        final MemorySegment segment;
+        long pos;
+
+        Output(MemorySegment segment) {
+            this.segment = segment;
+        }
+
+        void putByte(byte v) {
+            segment.set(ValueLayout.JAVA_BYTE, pos, v);
+            pos += 1;
+        }
+
+        void putInt(int v) {
+            segment.set(ValueLayout.JAVA_INT_UNALIGNED, pos, v);
+            pos += 4;
+        }
+
+        void putLong(long v) {
+            segment.set(ValueLayout.JAVA_LONG_UNALIGNED, pos, v);
+            pos += 8;
+        }
+
+        void putDouble(double v) {
+            segment.set(ValueLayout.JAVA_DOUBLE_UNALIGNED, pos, v);
+            pos += 8;
+        }
+
+        <T> void put(FixedWidthCodec<T> codec, T v) {
+            codec.write(segment, pos, v);
+            pos += codec.width();
+        }
+    }
+
+    /**
+     * Sequential reads from a mapped segment
+     */
+    private static final class Input {
+        final MemorySegment segment;
+        long pos;
+
+        Input(MemorySegment segment) {
+            this.segment = segment;
+        }
+
+        byte getByte() {
+            byte v = segment.get(ValueLayout.JAVA_BYTE, pos);
+            pos += 1;
+            return v;
+        }
+
+        int getInt() {
+            int v = segment.get(ValueLayout.JAVA_INT_UNALIGNED, pos);
+            pos += 4;
+            return v;
+        }
+
+        long getLong() {
+            long v = segment.get(ValueLayout.JAVA_LONG_UNALIGNED, pos);
+            pos += 8;
+            return v;
+        }
+
+        double getDouble() {
+            double v = segment.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, pos);
+            pos += 8;
+            return v;
+        }
+
+        <T> T get(FixedWidthCodec<T> codec) {
+            T v = codec.read(segment, pos);
+            pos += codec.width();
+            return v;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package ilsi.hash;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The classe HashTableStats represent the statistics of one hash table : probe lengths,
+ * chain lengths, load factor, tombstones, resizes and the latency of each operation.
+ *
+ * The statistics are collected only when the JVM runs with -Dilsi.hash.stats=true.
+ * ENABLED is a static final constant : when it is false the JIT removes every
+ * "if (HashTableStats.ENABLED)" block of the tables, and the disabled path costs nothing.
+ * The tables then have no HashTableStats (HashTable.stats() returns null).
+ *
+ * The counters are plain fields, updated without synchronization : they are exact for
+ * the tables used by one thread at a time. StaticHashTable (and its subclasses RandomHashTable
+ * and BoundedCache), OpenAddressingHashTable, RobinHoodHashTable, SwissHashTable and
+ * CompactHashTable are instrumented. The other tables (CuckooHashTable, CountingHashTable,
+ * ShardedHashTable, the concurrent and off-heap tables, PerfectHashTable) have no HashTableStats :
+ * their stats() returns null even with -Dilsi.hash.stats=true.
+ *
+ * A HashTableStats can be published as a JMX MXBean (register), and the resizes and the long
+ * probes are also JFR events (HashTableEvents).
+ */
+public final class HashTableStats implements HashTableStatsMXBean {
+
+    /**
+     * True if the statistics are collected (system property ilsi.hash.stats)
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("ilsi.hash.stats");
+
+    /**
+     * The number of entries of the probe and chain length histograms
+     */
+    public static final int LENGTH_BUCKETS = 33;
+
+    /**
+     * The number of entries of the latency histograms (2^39 ns is about 9 minutes)
+     */
+    public static final int LATENCY_BUCKETS = 40;
+
+    /**
+     * A lookup comparing at least LONG_PROBE slots or elements commits a JFR event
+     */
+    public static final int LONG_PROBE = LENGTH_BUCKETS - 1;
+
+    private final HashTable<?, ?> table;
+    private ObjectName name;
+
+    private final long[] probes = new long[LENGTH_BUCKETS];
+    private long resizeCount;
+    private long resizeTotalNanos;
+    private long resizeMaxNanos;
+
+    private final Latency inserts = new Latency();
+    private final Latency searches = new Latency();
+    private final Latency deletes = new Latency();
+
+    HashTableStats(HashTable<?, ?> table) {
+        this.table = table;
+    }
+
+    /**
+     * The count, total time and histogram of the latencies of one operation
+     */
+    private static final class Latency {
+        long count;
+        long totalNanos;
+        final long[] histogram = new long[LATENCY_BUCKETS];
+
+        void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            histogram[Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, nanos)))]++;
+        }
+
+        double mean() {
+            return (count == 0) ? 0 : (double) totalNanos / count;
+        }
+
+        void reset() {
+            count = 0;
+            totalNanos = 0;
+            Arrays.fill(histogram, 0);
+        }
+    }
+
+    /**
+     * Records a lookup that compared length elements (chains), slots (open addressing) or groups (SwissHashTable)
+     */
+    void recordProbe(int length) {
+        probes[Math.min(length, LENGTH_BUCKETS - 1)]++;
+        if (length >= LONG_PROBE) {
+            HashTableEvents.LongProbe event = new HashTableEvents.LongProbe();
+            if (event.shouldCommit()) {
+                event.tableClass = table.getClass().getName();
+                event.length = length;
+                event.size = table.n;
+                event.capacity = table.m;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Records a resize from oldCapacity to the current capacity that took nanos nanoseconds
+     */
+    void recordResize(int oldCapacity, long nanos) {
+        resizeCount++;
+        resizeTotalNanos += nanos;
+        resizeMaxNanos = Math.max(resizeMaxNanos, nanos);
+        HashTableEvents.Resize event = new HashTableEvents.Resize();
+        if (event.shouldCommit()) {
+            event.tableClass = table.getClass().getName();
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = table.m;
+            event.size = table.n;
+            event.resizeTime = nanos;
+            event.commit();
+        }
+    }
+
+    void recordInsert(long nanos) {
+        inserts.record(nanos);
+    }
+
+    void recordSearch(long nanos) {
+        searches.record(nanos);
+    }
+
+    void recordDelete(long nanos) {
+        deletes.record(nanos);
+    }
+
+    /**
+     * Publishes these statistics in the platform MBean server as ilsi.hash:type=HashTable,name=name
+     * @param name the name of the table in JMX
+     * @throws IllegalStateException if the name is invalid or already registered
+     */
+    public void register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("ilsi.hash:type=HashTable,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the statistics of " + name, e);
+        }
+    }
+
+    /**
+     * Removes these statistics from the platform MBean server, if they were registered
+     */
+    public void unregister() {
+        if (this.name == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(this.name)) server.unregisterMBean(this.name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + this.name, e);
+        }
+        this.name = null;
+    }
+
+    public String getTableClass() {
+        return table.getClass().getName();
+    }
+
+    public int getSize() {
+        return table.n;
+    }
+
+    public int getCapacity() {
+        return table.m;
+    }
+
+    public double getLoadFactor() {
+        return (table.m == 0) ? 0 : (double) table.n / table.m;
+    }
+
+    public int getTombstones() {
+        return table.tombstoneCount();
+    }
+
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    public long getResizeTotalNanos() {
+        return resizeTotalNanos;
+    }
+
+    public long getResizeMaxNanos() {
+        return resizeMaxNanos;
+    }
+
+    public long[] getProbeHistogram() {
+        return probes.clone();
+    }
+
+    /**
+     * Computed from the table when it is called (a walk of all the buckets)
+     */
+    public long[] getChainLengthHistogram() {
+        long[] histogram = table.chainLengthHistogram();
+        return (histogram == null) ? new long[0] : histogram;
+    }
+
+    public long getInsertCount() {
+        return inserts.count;
+    }
+
+    public long getSearchCount() {
+        return searches.count;
+    }
+
+    public long getDeleteCount() {
+        return deletes.count;
+    }
+
+    public double getInsertMeanNanos() {
+        return inserts.mean();
+    }
+
+    public double getSearchMeanNanos() {
+        return searches.mean();
+    }
+
+    public double getDeleteMeanNanos() {
+        return deletes.mean();
+    }
+
+    public long[] getInsertLatencyHistogram() {
+        return inserts.histogram.clone();
+    }
+
+    public long[] getSearchLatencyHistogram() {
+        return searches.histogram.clone();
+    }
+
+    public long[] getDeleteLatencyHistogram() {
+        return deletes.histogram.clone();
+    }
+
+    public void reset() {
+        Arrays.fill(probes, 0);
+        resizeCount = 0;
+        resizeTotalNanos = 0;
+        resizeMaxNanos = 0;
+        inserts.reset();
+        searches.reset();
+        deletes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return getTableClass() + "{size=" + getSize() + ", capacity=" + getCapacity()
+                + ", resizes=" + resizeCount + ", inserts=" + inserts.count + ", searches=" + searches.count
+                + ", deletes=" + deletes.count + "}";
+    }
+}
@@ -0,0 +1,59 @@
+package ilsi.hash;
+
+/**
+ * The JMX view of the statistics of a hash table (see HashTableStats.register).
+ * The histograms are arrays of counts : the index i counts the lengths i, the last index
+ * counts the lengths greater or equal to it. The latency histograms count the operations
+ * of 2^i to 2^(i+1) - 1 nanoseconds.
+ */
+public interface HashTableStatsMXBean {
+
+    String getTableClass();
+
+    int getSize();
+
+    int getCapacity();
+
+    double getLoadFactor();
+
+    int getTombstones();
+
+    long getResizeCount();
+
+    long getResizeTotalNanos();
+
+    long getResizeMaxNanos();
+
+    /**
+     * The number of slots or elements compared by each lookup
+     */
+    long[] getProbeHistogram();
+
+    /**
+     * The number of buckets of each chain length, empty for a table without chains
+     */
+    long[] getChainLengthHistogram();
+
+    long getInsertCount();
+
+    long getSearchCount();
+
+    long getDeleteCount();
+
+    double getInsertMeanNanos();
+
+    double getSearchMeanNanos();
+
+    double getDeleteMeanNanos();
+
+    long[] getInsertLatencyHistogram();
+
+    long[] getSearchLatencyHistogram();
+
+    long[] getDeleteLatencyHistogram();
+
+    /**
+     * Sets all the counters to zero
+     */
+    void reset();
+}
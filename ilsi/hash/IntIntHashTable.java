@@ -0,0 +1,287 @@
+package ilsi.hash;
+
+/**
+ * The classe IntIntHashTable represent a hash table from int keys to int values, without boxing.
+ *
+ * Keys and values are stored in two parallel int arrays (open addressing, linear probing).
+ * The key 0 marks an empty slot, so the mapping of the key 0 itself is stored apart.
+ * Deletion shifts the following keys back (no tombstones).
+ *
+ * Since values are primitive, search returns 0 for a missing key :
+ * use containsKey or getOrDefault to tell a missing key from a key mapped to 0.
+ */
+public class IntIntHashTable {
+
+    /**
+     * The key of the empty slots
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * The max load factor allowed. We fix it to 0.75
+     */
+    protected final double MAX_LOAD = 0.75;
+
+    protected int[] keys;
+    protected int[] vals;
+
+    /**
+     * The number of slots (a power of two) and its number of bits
+     */
+    protected int m;
+    protected int bits;
+
+    /**
+     * The number of stored mappings, the mapping of the key 0 included
+     */
+    protected int n;
+
+    /**
+     * The mapping of the key 0, which cannot be stored in the arrays
+     */
+    protected boolean hasZeroKey;
+    protected int zeroValue;
+
+    /**
+     * Constructs a new empty IntIntHashTable with a default initial capacity (16)
+     */
+    public IntIntHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty IntIntHashTable with the specified initial capacity
+     * (rounded up to a power of two)
+     * @param capacity initial capacity of the hash table
+     */
+    public IntIntHashTable(int capacity) {
+        this.allocate(Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(2, capacity) - 1)));
+    }
+
+    /**
+     * Allocates empty arrays of 2^bits slots
+     */
+    private void allocate(int bits) {
+        this.bits = bits;
+        this.m = 1 << bits;
+        this.keys = new int[m];
+        this.vals = new int[m];
+    }
+
+    /**
+     * Hashes a key to its home slot (Fibonacci hashing : the high bits of key * 2^32/phi)
+     */
+    protected int hash(int key) {
+        return (key * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    /**
+     * Returns the slot of key, or -1 if key is not in the arrays
+     */
+    private int indexOf(int key) {
+        int mask = m - 1;
+        int index = hash(key);
+        int k;
+        while ((k = keys[index]) != EMPTY) {
+            if (k == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if this hash table contains a mapping for key
+     */
+    public boolean containsKey(int key) {
+        if (key == EMPTY) return hasZeroKey;
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     * @return the value associated with key, or 0 if there is no mapping for key
+     */
+    public int search(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * Returns the value associated with key, or defaultValue if there is no mapping for key
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == EMPTY) return hasZeroKey ? zeroValue : defaultValue;
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : vals[index];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * @return the previous value associated with key, or 0 if there was no mapping for key
+     */
+    public int insert(int key, int value) {
+        if (key == EMPTY) {
+            int old = hasZeroKey ? zeroValue : 0;
+            if (!hasZeroKey) n++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        int index = slotFor(key);
+        int old = vals[index];
+        vals[index] = value;
+        return old;
+    }
+
+    /**
+     * Adds increment to the value associated with key (a missing key counts as 0).
+     * This is the counting operation : one probe, no allocation.
+     * @return the new value associated with key
+     */
+    public int addTo(int key, int increment) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                n++;
+                hasZeroKey = true;
+                zeroValue = 0;
+            }
+            return zeroValue += increment;
+        }
+        int index = slotFor(key);
+        return vals[index] += increment;
+    }
+
+    /**
+     * Returns the slot of key, after adding key with the value 0 if it was missing
+     */
+    private int slotFor(int key) {
+        int mask = m - 1;
+        int index = hash(key);
+        int k;
+        while ((k = keys[index]) != EMPTY) {
+            if (k == key) return index;
+            index = (index + 1) & mask;
+        }
+        if (n + 1 > MAX_LOAD * m) {
+            resize(bits + 1);
+            return slotFor(key);
+        }
+        keys[index] = key;
+        vals[index] = 0;
+        n++;
+        return index;
+    }
+
+    /**
+     * Rebuilds the table with 2^newBits slots
+     */
+    private void resize(int newBits) {
+        int[] oldKeys = keys;
+        int[] oldVals = vals;
+        allocate(newBits);
+        int mask = m - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int k = oldKeys[i];
+            if (k == EMPTY) continue;
+            int index = hash(k);
+            while (keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = k;
+            vals[index] = oldVals[i];
+        }
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * @return the value previously associated with key, or 0 if there was no mapping for key
+     */
+    public int delete(int key) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) return 0;
+            hasZeroKey = false;
+            n--;
+            return zeroValue;
+        }
+        int index = indexOf(key);
+        if (index < 0) return 0;
+        int old = vals[index];
+        shiftKeys(index);
+        n--;
+        return old;
+    }
+
+    /**
+     * Empties the slot pos, moving back the following keys of its cluster
+     * that would not be reachable any more from their home slot.
+     */
+    private void shiftKeys(int pos) {
+        int mask = m - 1;
+        int last, home, k;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            while (true) {
+                if ((k = keys[pos]) == EMPTY) {
+                    keys[last] = EMPTY;
+                    return;
+                }
+                home = hash(k);
+                // the key at pos may move to last only if its home is not in ]last, pos]
+                if (last <= pos ? last >= home || home > pos : last >= home && home > pos) break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            vals[last] = vals[pos];
+        }
+    }
+
+    /**
+     * Returns the keys contained in this hash table
+     */
+    public int[] keys() {
+        int[] result = new int[n];
+        int j = 0;
+        if (hasZeroKey) result[j++] = EMPTY;
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != EMPTY) result[j++] = keys[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values contained in this hash table, in the order of keys()
+     */
+    public int[] values() {
+        int[] result = new int[n];
+        int j = 0;
+        if (hasZeroKey) result[j++] = zeroValue;
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != EMPTY) result[j++] = vals[i];
+        }
+        return result;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     */
+    public void clear() {
+        for (int i = 0; i < m; i++) {
+            keys[i] = EMPTY;
+        }
+        hasZeroKey = false;
+        n = 0;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this hash table.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns true if this hash table contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+}
@@ -0,0 +1,274 @@
+package ilsi.hash;
+
+/**
+ * The classe IntObjectHashTable represent a hash table from int keys to object values,
+ * without boxing the keys.
+ *
+ * Keys and values are stored in two parallel arrays (open addressing, linear probing).
+ * The key 0 marks an empty slot, so the mapping of the key 0 itself is stored apart.
+ * Deletion shifts the following keys back (no tombstones).
+ *
+ * @param <V> the type of mapped values
+ */
+public class IntObjectHashTable<V> {
+
+    /**
+     * The key of the empty slots
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * The max load factor allowed. We fix it to 0.75
+     */
+    protected final double MAX_LOAD = 0.75;
+
+    protected int[] keys;
+    protected Object[] vals;
+
+    /**
+     * The number of slots (a power of two) and its number of bits
+     */
+    protected int m;
+    protected int bits;
+
+    /**
+     * The number of stored mappings, the mapping of the key 0 included
+     */
+    protected int n;
+
+    /**
+     * The mapping of the key 0, which cannot be stored in the arrays
+     */
+    protected boolean hasZeroKey;
+    protected V zeroValue;
+
+    /**
+     * Constructs a new empty IntObjectHashTable with a default initial capacity (16)
+     */
+    public IntObjectHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty IntObjectHashTable with the specified initial capacity
+     * (rounded up to a power of two)
+     * @param capacity initial capacity of the hash table
+     */
+    public IntObjectHashTable(int capacity) {
+        this.allocate(Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(2, capacity) - 1)));
+    }
+
+    /**
+     * Allocates empty arrays of 2^bits slots
+     */
+    private void allocate(int bits) {
+        this.bits = bits;
+        this.m = 1 << bits;
+        this.keys = new int[m];
+        this.vals = new Object[m];
+    }
+
+    /**
+     * Hashes a key to its home slot (Fibonacci hashing : the high bits of key * 2^32/phi)
+     */
+    protected int hash(int key) {
+        return (key * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    /**
+     * Returns the slot of key, or -1 if key is not in the arrays
+     */
+    private int indexOf(int key) {
+        int mask = m - 1;
+        int index = hash(key);
+        int k;
+        while ((k = keys[index]) != EMPTY) {
+            if (k == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if this hash table contains a mapping for key
+     */
+    public boolean containsKey(int key) {
+        if (key == EMPTY) return hasZeroKey;
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     * @return the value associated with key, or null if there is no mapping for key
+     */
+    public V search(int key) {
+        return getOrDefault(key, null);
+    }
+
+    /**
+     * Returns the value associated with key, or defaultValue if there is no mapping for key
+     */
+    public V getOrDefault(int key, V defaultValue) {
+        if (key == EMPTY) return hasZeroKey ? zeroValue : defaultValue;
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : (V) vals[index];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * @return the previous value associated with key, or null if there was no mapping for key
+     */
+    public V insert(int key, V value) {
+        if (key == EMPTY) {
+            V old = hasZeroKey ? zeroValue : null;
+            if (!hasZeroKey) n++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        int index = slotFor(key);
+        V old = (V) vals[index];
+        vals[index] = value;
+        return old;
+    }
+
+    /**
+     * Returns the slot of key, after adding key with a null value if it was missing
+     */
+    private int slotFor(int key) {
+        int mask = m - 1;
+        int index = hash(key);
+        int k;
+        while ((k = keys[index]) != EMPTY) {
+            if (k == key) return index;
+            index = (index + 1) & mask;
+        }
+        if (n + 1 > MAX_LOAD * m) {
+            resize(bits + 1);
+            return slotFor(key);
+        }
+        keys[index] = key;
+        vals[index] = null;
+        n++;
+        return index;
+    }
+
+    /**
+     * Rebuilds the table with 2^newBits slots
+     */
+    private void resize(int newBits) {
+        int[] oldKeys = keys;
+        Object[] oldVals = vals;
+        allocate(newBits);
+        int mask = m - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int k = oldKeys[i];
+            if (k == EMPTY) continue;
+            int index = hash(k);
+            while (keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = k;
+            vals[index] = oldVals[i];
+        }
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * @return the value previously associated with key, or null if there was no mapping for key
+     */
+    public V delete(int key) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) return null;
+            V old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            n--;
+            return old;
+        }
+        int index = indexOf(key);
+        if (index < 0) return null;
+        V old = (V) vals[index];
+        shiftKeys(index);
+        n--;
+        return old;
+    }
+
+    /**
+     * Empties the slot pos, moving back the following keys of its cluster
+     * that would not be reachable any more from their home slot.
+     */
+    private void shiftKeys(int pos) {
+        int mask = m - 1;
+        int last, home, k;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            while (true) {
+                if ((k = keys[pos]) == EMPTY) {
+                    keys[last] = EMPTY;
+                    vals[last] = null;
+                    return;
+                }
+                home = hash(k);
+                // the key at pos may move to last only if its home is not in ]last, pos]
+                if (last <= pos ? last >= home || home > pos : last >= home && home > pos) break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            vals[last] = vals[pos];
+        }
+    }
+
+    /**
+     * Returns the keys contained in this hash table
+     */
+    public int[] keys() {
+        int[] result = new int[n];
+        int j = 0;
+        if (hasZeroKey) result[j++] = EMPTY;
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != EMPTY) result[j++] = keys[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values contained in this hash table, in the order of keys()
+     */
+    public Object[] values() {
+        Object[] result = new Object[n];
+        int j = 0;
+        if (hasZeroKey) result[j++] = zeroValue;
+        for (int i = 0; i < m; i++) {
+            if (keys[i] != EMPTY) result[j++] = vals[i];
+        }
+        return result;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     */
+    public void clear() {
+        for (int i = 0; i < m; i++) {
+            keys[i] = EMPTY;
+            vals[i] = null;
+        }
+        hasZeroKey = false;
+        zeroValue = null;
+        n = 0;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this hash table.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns true if this hash table contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+}
@@ -0,0 +1,148 @@
+package ilsi.hash;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * The classe MemoryFootprint represent an estimate of the memory used by the structure of a
+ * hash table (see HashTable.memoryFootprint) : its arrays, its entry objects and its off-heap
+ * memory. The keys and the values themselves are not counted (they belong to the caller and are
+ * often shared), nor the tree indexes of the long chains of StaticHashTable.
+ *
+ * The sizes are computed from the HotSpot layout of a 64-bit JVM : 12 bytes of object header,
+ * 16 bytes of array header, objects aligned on 8 bytes, and references of 4 bytes with compressed
+ * references (the default below 32 GB of heap) or 8 bytes without.
+ *
+ * Example : table.memoryFootprint().bytesPerEntry() gives the cost of one more mapping, for capacity planning.
+ */
+public final class MemoryFootprint {
+
+    /**
+     * The size of a reference : 4 bytes with compressed references, 8 otherwise
+     */
+    public static final int REFERENCE = compressedReferences() ? 4 : 8;
+
+    public static final int OBJECT_HEADER = 12;
+
+    public static final int ARRAY_HEADER = 16;
+
+    /**
+     * The size of a HashTable.Element : key, value and next
+     */
+    public static final long ELEMENT = object(3 * REFERENCE);
+
+    private final int size;
+    private final int capacity;
+    private final long arrayBytes;
+    private final long entryBytes;
+    private final long offHeapBytes;
+
+    /**
+     * @param size the number of mappings
+     * @param capacity the number of slots or buckets
+     * @param arrayBytes the bytes of the arrays of the table
+     * @param entryBytes the bytes of the entry objects (elements, nodes)
+     * @param offHeapBytes the bytes of memory outside the heap
+     */
+    public MemoryFootprint(int size, int capacity, long arrayBytes, long entryBytes, long offHeapBytes) {
+        this.size = size;
+        this.capacity = capacity;
+        this.arrayBytes = arrayBytes;
+        this.entryBytes = entryBytes;
+        this.offHeapBytes = offHeapBytes;
+    }
+
+    private static boolean compressedReferences() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return Boolean.parseBoolean(hotspot.getVMOption("UseCompressedOops").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return true;  // not HotSpot : assume the default
+        }
+    }
+
+    /**
+     * Rounds a size up to the alignment of the objects (8 bytes)
+     */
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the size of an object with fieldBytes bytes of fields
+     */
+    public static long object(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Returns the size of an array of length elements of elementBytes bytes (0 for a null array)
+     */
+    public static long array(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    /**
+     * Returns the size of an array of references, 0 if it is null
+     */
+    public static long of(Object[] array) {
+        return (array == null) ? 0 : array(array.length, REFERENCE);
+    }
+
+    public static long of(int[] array) {
+        return (array == null) ? 0 : array(array.length, 4);
+    }
+
+    public static long of(long[] array) {
+        return (array == null) ? 0 : array(array.length, 8);
+    }
+
+    public static long of(byte[] array) {
+        return (array == null) ? 0 : array(array.length, 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long arrayBytes() {
+        return arrayBytes;
+    }
+
+    public long entryBytes() {
+        return entryBytes;
+    }
+
+    public long offHeapBytes() {
+        return offHeapBytes;
+    }
+
+    /**
+     * The bytes of the table in the heap : arrays and entries
+     */
+    public long heapBytes() {
+        return arrayBytes + entryBytes;
+    }
+
+    public long totalBytes() {
+        return arrayBytes + entryBytes + offHeapBytes;
+    }
+
+    /**
+     * The total bytes divided by the number of mappings (0 for an empty table)
+     */
+    public double bytesPerEntry() {
+        return (size == 0) ? 0 : (double) totalBytes() / size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryFootprint{size=%d, capacity=%d, arrays=%d, entries=%d, offHeap=%d, total=%d, perEntry=%.1f}",
+                size, capacity, arrayBytes, entryBytes, offHeapBytes, totalBytes(), bytesPerEntry());
+    }
+}
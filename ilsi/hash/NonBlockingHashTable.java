@@ -0,0 +1,582 @@
+package ilsi.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The classe NonBlockingHashTable represent a thread-safe hash table with Open Addressing and
+ * no locks at all, in the style of Cliff Click's NonBlockingHashMap.
+ *
+ * Keys and values are stored side by side in one array (key of slot i at 2i, value at 2i+1),
+ * the probing method is linear probing. Every change of a slot is a compare-and-set through a VarHandle :
+ * - a key slot goes once from null to a key (it is never cleared), or to TOMBSTONE when the slot is
+ *   killed during a copy.
+ * - a value slot goes between null, values and TOMBSTONE (deleted) ; during a resize it is boxed
+ *   in a Prime (being copied) and finally set to TOMBPRIME (copied, the new table is authoritative).
+ *
+ * Any thread that meets a resize helps to copy a chunk of slots to the new table, so a resize never
+ * waits for one particular thread. insert and delete are lock-free and linearizable (the linearization
+ * point is the successful CAS of the value slot), search never writes except to finish the copy of
+ * the one slot it needs, so it does a bounded amount of work per table.
+ *
+ * The table grows when a probe sequence becomes too long or when more than half of the key slots
+ * are claimed (MAX_LOAD is not used). Null keys and null values are not supported.
+ */
+public class NonBlockingHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The smallest number of slots
+     */
+    private static final int MIN_SIZE = 8;
+
+    /**
+     * Every probe sequence may go this far before a resize is considered
+     */
+    private static final int REPROBE_LIMIT = 10;
+
+    /**
+     * A deleted value, or a dead key slot
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    /**
+     * A value slot whose content has been copied to the new table
+     */
+    private static final Prime TOMBPRIME = new Prime(TOMBSTONE);
+
+    /**
+     * expVal of an unconditional put
+     */
+    private static final Object NO_MATCH_OLD = new Object();
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle TOP;
+    private static final VarHandle NEW_TABLE;
+    private static final VarHandle COPY_IDX;
+    private static final VarHandle COPY_DONE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TOP = lookup.findVarHandle(NonBlockingHashTable.class, "top", Table.class);
+            NEW_TABLE = lookup.findVarHandle(Table.class, "newTable", Table.class);
+            COPY_IDX = lookup.findVarHandle(Table.class, "copyIdx", long.class);
+            COPY_DONE = lookup.findVarHandle(Table.class, "copyDone", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The current (top level) table
+     */
+    private volatile Table top;
+
+    /**
+     * The last time (System.nanoTime) a resize was started, to double instead of copying
+     * at the same size when resizes follow each other
+     */
+    private volatile long lastResizeNanos;
+
+    /**
+     * Constructs a new empty NonBlockingHashTable with a default initial capacity (16)
+     */
+    public NonBlockingHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty NonBlockingHashTable with room for about capacity elements
+     * @param capacity initial capacity of the hash table
+     */
+    public NonBlockingHashTable(int capacity) {
+        this(capacity, HashStrategies.FIBONACCI);
+    }
+
+    /**
+     * Constructs a new empty NonBlockingHashTable with room for about capacity elements
+     * and the specified hash function
+     * @param capacity initial capacity of the hash table
+     * @param hashStrategy the hash function of the keys
+     */
+    public NonBlockingHashTable(int capacity, HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        int len = MIN_SIZE;
+        while (len < capacity * 2L && len < (1 << 29)) len <<= 1;
+        this.top = new Table(len, new LongAdder());
+        this.m = len;
+    }
+
+    /**
+     * Returns a new empty NonBlockingHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> NonBlockingHashTable<K, V> withExpectedSize(int expectedEntries) {
+        NonBlockingHashTable<K, V> t = new NonBlockingHashTable<K, V>();
+        t.ensureCapacity(expectedEntries);
+        return t;
+    }
+
+    /**
+     * Spreads the hash code of a key with the hash strategy (Fibonacci hashing by default)
+     */
+    private int spread(Object key) {
+        return hashStrategy.hash(key.hashCode());
+    }
+
+    /**
+     * Returns the home slot of a full hash in a table of len slots : its high bits
+     */
+    private static int home(int fullhash, int len) {
+        return fullhash >>> Integer.numberOfLeadingZeros(len - 1);
+    }
+
+    /**
+     * Hashes a key to its home slot in the current table
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return home(spread(key), top.len);
+    }
+
+    private static int reprobeLimit(int len) {
+        return REPROBE_LIMIT + (len >> 4);
+    }
+
+    private static Object key(Object[] kvs, int i) {
+        return SLOTS.getVolatile(kvs, i << 1);
+    }
+
+    private static Object val(Object[] kvs, int i) {
+        return SLOTS.getVolatile(kvs, (i << 1) + 1);
+    }
+
+    private static boolean casKey(Object[] kvs, int i, Object old, Object key) {
+        return SLOTS.compareAndSet(kvs, i << 1, old, key);
+    }
+
+    private static boolean casVal(Object[] kvs, int i, Object old, Object val) {
+        return SLOTS.compareAndSet(kvs, (i << 1) + 1, old, val);
+    }
+
+    private static boolean keyEq(Object k, Object key) {
+        return k == key || (k != TOMBSTONE && k.equals(key));
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    @Override
+    public V search(K key) {
+        Object v = this.get(top, key, spread(key));
+        return (V) v;
+    }
+
+    /**
+     * Returns the value of key in table t or in its newer tables, null if there is none
+     */
+    private Object get(Table t, Object key, int fullhash) {
+        Object[] kvs = t.kvs;
+        int len = t.len;
+        int idx = home(fullhash, len);
+        int reprobes = 0;
+        while (true) {
+            Object k = key(kvs, idx);
+            Object v = val(kvs, idx);
+            if (k == null) return null;
+            // read after k and v : if a copy started before them, nt is not null
+            Table nt = t.newTable;
+            if (keyEq(k, key)) {
+                if (!(v instanceof Prime)) return v == TOMBSTONE ? null : v;
+                // the slot is being copied : finish its copy, the new table is authoritative
+                return this.get(t.copySlotAndCheck(this, idx, false), key, fullhash);
+            }
+            if (++reprobes >= reprobeLimit(len) || k == TOMBSTONE) {
+                return nt == null ? null : this.get(nt, key, fullhash);
+            }
+            idx = (idx + 1) & (len - 1);
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * If the hash table previously contained a mapping for the key, the old value is replaced.
+     */
+    @Override
+    public V insert(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException();
+        Object old = this.putIfMatch(top, key, value, NO_MATCH_OLD);
+        return old == TOMBSTONE ? null : (V) old;
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     */
+    @Override
+    public V delete(K key) {
+        if (key == null) throw new NullPointerException();
+        Object old = this.putIfMatch(top, key, TOMBSTONE, NO_MATCH_OLD);
+        return old == TOMBSTONE ? null : (V) old;
+    }
+
+    /**
+     * Puts putval (TOMBSTONE to delete) for key in table t if the current value matches expVal.
+     * expVal is NO_MATCH_OLD for an unconditional put, and null for the copy of a slot into
+     * a new table (put only if there is no value yet).
+     * @return the previous value : null or TOMBSTONE if there was none
+     */
+    private Object putIfMatch(Table t, Object key, Object putval, Object expVal) {
+        Object[] kvs = t.kvs;
+        int fullhash = spread(key);
+        int len = t.len;
+        int idx = home(fullhash, len);
+        int reprobes = 0;
+        Object k, v;
+        Table nt = null;
+
+        // find or claim the key slot
+        while (true) {
+            v = val(kvs, idx);
+            k = key(kvs, idx);
+            if (k == null) {
+                if (putval == TOMBSTONE) return null;  // deleting a missing key
+                if (casKey(kvs, idx, null, key)) {
+                    t.slots.increment();
+                    break;
+                }
+                k = key(kvs, idx);  // another key won the slot
+            }
+            nt = t.newTable;
+            if (keyEq(k, key)) break;
+            if (++reprobes >= reprobeLimit(len) || k == TOMBSTONE) {
+                // no room in this table : go to the new one (and help the copy, unless we are copying)
+                nt = t.resize(this, 0);
+                if (expVal != null) this.helpCopy();
+                return this.putIfMatch(nt, key, putval, expVal);
+            }
+            idx = (idx + 1) & (len - 1);
+        }
+
+        if (putval == v) return v;
+
+        if (nt == null && ((v == null && t.tableFull(reprobes, len)) || v instanceof Prime)) {
+            nt = t.resize(this, 0);
+        }
+        if (nt != null) {
+            return this.putIfMatch(t.copySlotAndCheck(this, idx, expVal != null), key, putval, expVal);
+        }
+
+        // update the value slot
+        while (true) {
+            if (expVal != NO_MATCH_OLD && v != expVal && !(v == null && expVal == TOMBSTONE)
+                    && (expVal == null || !expVal.equals(v))) {
+                return v;
+            }
+            if (casVal(kvs, idx, v, putval)) {
+                if (expVal != null) {  // a copy does not change the size
+                    if ((v == null || v == TOMBSTONE) && putval != TOMBSTONE) t.count.increment();
+                    if (!(v == null || v == TOMBSTONE) && putval == TOMBSTONE) t.count.decrement();
+                }
+                return (v == null && expVal != null) ? TOMBSTONE : v;
+            }
+            v = val(kvs, idx);
+            if (v instanceof Prime) {
+                return this.putIfMatch(t.copySlotAndCheck(this, idx, expVal != null), key, putval, expVal);
+            }
+        }
+    }
+
+    /**
+     * Helps the copy of the top level table, if one is in progress
+     */
+    private void helpCopy() {
+        Table t = top;
+        if (t.newTable != null) t.helpCopyImpl(this, false);
+    }
+
+    /**
+     * Makes room for expectedEntries mappings : copies the table once, straight to its final length.
+     * A copy already in progress is finished first.
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        // a copy starts once about half of the key slots are claimed : keep twice that margin
+        long len = 4L * expectedEntries;
+        while (true) {
+            Table t = this.quiescentTop();
+            if (t.len >= len || t.len >= (1 << 29)) return;
+            t.resize(this, len);
+            t.helpCopyImpl(this, true);
+        }
+    }
+
+    /**
+     * Returns the current table after finishing any copy in progress
+     */
+    private Table quiescentTop() {
+        while (true) {
+            Table t = top;
+            if (t.newTable == null) return t;
+            t.helpCopyImpl(this, true);
+        }
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     * The list is weakly consistent : it reflects the table at some point during the call.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> keys = new LinkedList<K>();
+        Table t = this.quiescentTop();
+        for (int i = 0; i < t.len; i++) {
+            Object k = key(t.kvs, i);
+            if (k == null || k == TOMBSTONE) continue;
+            Object v = val(t.kvs, i);
+            if (v instanceof Prime) v = this.search((K) k);  // a new copy started meanwhile
+            if (v != null && v != TOMBSTONE) keys.add((K) k);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     * The list is weakly consistent : it reflects the table at some point during the call.
+     */
+    @Override
+    public List<V> values() {
+        List<V> values = new LinkedList<V>();
+        Table t = this.quiescentTop();
+        for (int i = 0; i < t.len; i++) {
+            Object k = key(t.kvs, i);
+            if (k == null || k == TOMBSTONE) continue;
+            Object v = val(t.kvs, i);
+            if (v instanceof Prime) v = this.search((K) k);
+            if (v != null && v != TOMBSTONE) values.add((V) v);
+        }
+        return values;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table by installing a new empty table
+     * with its own count. Writes that run concurrently with clear may be lost or kept,
+     * the count follows them.
+     */
+    @Override
+    public void clear() {
+        Table fresh = new Table(MIN_SIZE, new LongAdder());
+        Table t;
+        do {
+            t = top;
+        } while (!TOP.compareAndSet(this, t, fresh));
+        this.m = MIN_SIZE;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this hash table.
+     */
+    @Override
+    public int size() {
+        long s = top.count.sum();
+        return s > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, s);
+    }
+
+    /**
+     * Returns true if this hash table contains no key-value mappings
+     */
+    @Override
+    public boolean isEmpty() {
+        return top.count.sum() <= 0;
+    }
+
+    /**
+     * Returns an estimate of the memory of the key-value array of the table, and of the next table during a copy.
+     * It reads the state without locking : with concurrent writers the result is approximate.
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long arrays = 0;
+        for (Table t = top; t != null; t = t.newTable) {
+            arrays += MemoryFootprint.of(t.kvs);
+        }
+        return new MemoryFootprint(size(), m, arrays, 0, 0);
+    }
+
+    /**
+     * A value being copied to the new table
+     */
+    static final class Prime {
+        final Object v;
+
+        Prime(Object v) {
+            this.v = v;
+        }
+    }
+
+    /**
+     * One generation of the table, with the state of its copy to the next generation
+     */
+    static final class Table {
+        final int len;
+        final Object[] kvs;
+
+        /**
+         * The number of elements, shared by the generations of a table (a copy does not change it)
+         * and replaced by clear
+         */
+        final LongAdder count;
+
+        /**
+         * The number of claimed key slots (they are never released)
+         */
+        final LongAdder slots = new LongAdder();
+
+        /**
+         * The next generation, null until a resize starts
+         */
+        volatile Table newTable;
+
+        /**
+         * The next chunk of slots to copy, and the number of slots copied
+         */
+        volatile long copyIdx;
+        volatile long copyDone;
+
+        Table(int len, LongAdder count) {
+            this.len = len;
+            this.kvs = new Object[len << 1];
+            this.count = count;
+        }
+
+        /**
+         * Returns true if a put that probed reprobes slots should rather resize the table
+         */
+        boolean tableFull(int reprobes, int len) {
+            return reprobes >= REPROBE_LIMIT
+                    && (reprobes >= reprobeLimit(len) || slots.sum() >= (len >> 1));
+        }
+
+        /**
+         * Starts a resize (or returns the one already started)
+         * @param minLen the minimum length of the new table, 0 to size it from the current count
+         */
+        Table resize(NonBlockingHashTable<?, ?> top, long minLen) {
+            Table nt = newTable;
+            if (nt != null) return nt;
+
+            long sz = count.sum();
+            long newsz = sz;
+            if (sz >= (len >> 2)) {
+                newsz = len << 1;
+                if (sz >= (len >> 1)) newsz = len << 2;
+            }
+            long now = System.nanoTime();
+            // a copy at the same size purges the dead keys, but not twice in a row
+            if (newsz <= len && now - top.lastResizeNanos < 1_000_000_000L) newsz = len << 1;
+            if (newsz < len) newsz = len;
+            if (newsz < minLen) newsz = minLen;
+
+            int newLen = MIN_SIZE;
+            while (newLen < newsz && newLen < (1 << 29)) newLen <<= 1;
+
+            nt = newTable;  // check again before allocating
+            if (nt != null) return nt;
+            nt = new Table(newLen, count);
+            if (NEW_TABLE.compareAndSet(this, null, nt)) {
+                top.lastResizeNanos = now;
+                top.m = newLen;
+                return nt;
+            }
+            return newTable;
+        }
+
+        /**
+         * Copies slot idx to the new table, then optionally helps the whole copy
+         * @return the new table
+         */
+        Table copySlotAndCheck(NonBlockingHashTable<?, ?> top, int idx, boolean help) {
+            Table nt = newTable;
+            if (this.copySlot(top, idx, nt)) this.copyCheckAndPromote(top, 1);
+            if (help) top.helpCopy();
+            return nt;
+        }
+
+        /**
+         * Copies chunks of slots, until the whole table is copied if copyAll is true,
+         * otherwise just one chunk
+         */
+        void helpCopyImpl(NonBlockingHashTable<?, ?> top, boolean copyAll) {
+            Table nt = newTable;
+            int work = Math.min(len, 1024);
+            boolean panic = false;
+            int copyidx = -1;
+            while (copyDone < len) {
+                if (!panic) {
+                    // claim the next chunk ; after two rounds over the table, copy everything ourselves
+                    long c;
+                    do {
+                        c = copyIdx;
+                    } while (!COPY_IDX.compareAndSet(this, c, c + work));
+                    copyidx = (int) c;
+                    if (c >= (len << 1)) panic = true;
+                }
+                int workdone = 0;
+                for (int i = 0; i < work; i++) {
+                    if (this.copySlot(top, (copyidx + i) & (len - 1), nt)) workdone++;
+                }
+                if (workdone > 0) this.copyCheckAndPromote(top, workdone);
+                copyidx += work;
+                if (!copyAll && !panic) return;
+            }
+            this.copyCheckAndPromote(top, 0);
+        }
+
+        /**
+         * Adds workdone copied slots, and makes the new table the top level table once
+         * every slot is copied
+         */
+        void copyCheckAndPromote(NonBlockingHashTable<?, ?> top, int workdone) {
+            long done = copyDone;
+            if (workdone > 0) {
+                while (!COPY_DONE.compareAndSet(this, done, done + workdone)) done = copyDone;
+            }
+            if (done + workdone == len && top.top == this) {
+                TOP.compareAndSet(top, this, newTable);
+            }
+        }
+
+        /**
+         * Copies slot idx into the new table nt : kills an empty key slot, boxes the value in a
+         * Prime, puts it in nt if nt has no value for the key yet, then marks the slot TOMBPRIME.
+         * @return true if this call completed the copy of the slot
+         */
+        boolean copySlot(NonBlockingHashTable<?, ?> top, int idx, Table nt) {
+            Object key;
+            while ((key = key(kvs, idx)) == null) casKey(kvs, idx, null, TOMBSTONE);
+
+            Object oldval = val(kvs, idx);
+            while (!(oldval instanceof Prime)) {
+                Prime box = (oldval == null || oldval == TOMBSTONE) ? TOMBPRIME : new Prime(oldval);
+                if (casVal(kvs, idx, oldval, box)) {
+                    if (box == TOMBPRIME) return true;  // nothing to copy
+                    oldval = box;
+                    break;
+                }
+                oldval = val(kvs, idx);
+            }
+            if (oldval == TOMBPRIME) return false;  // copied by someone else
+
+            Object unboxed = ((Prime) oldval).v;
+            boolean copied = top.putIfMatch(nt, key, unboxed, null) == null;
+
+            while (oldval != TOMBPRIME && !casVal(kvs, idx, oldval, TOMBPRIME)) oldval = val(kvs, idx);
+            return copied;
+        }
+    }
+}
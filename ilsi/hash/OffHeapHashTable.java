@@ -0,0 +1,427 @@
+package ilsi.hash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * The classe OffHeapHashTable represent a hash table stored outside of the Java heap,
+ * in a MemorySegment, for keys and values of fixed width (see FixedWidthCodec).
+ *
+ * There is no object per entry : a slot is a 4 bytes header (the spread hash code of the key,
+ * 0 for an empty slot) followed by the bytes of the key and the bytes of the value.
+ * The garbage collector never sees the entries, and an entry costs its payload plus 4 bytes
+ * (divided by the load factor).
+ *
+ * The collisions are resolved by linear probing, and a delete shifts back the following entries
+ * of the cluster (no tombstones). Keys and values are decoded on each access, so search returns
+ * a new object.
+ *
+ * The memory is either anonymous, or a file mapped in memory. In both cases it is released by close(),
+ * the table must not be used after that.
+ */
+public class OffHeapHashTable<K, V> extends HashTable<K, V> implements AutoCloseable {
+
+    /**
+     * The number of bytes of the header of a slot
+     */
+    private static final int HEADER = 4;
+
+    private final FixedWidthCodec<K> keyCodec;
+    private final FixedWidthCodec<V> valueCodec;
+
+    /**
+     * The number of bytes of a slot : header, key and value
+     */
+    private final long slotSize;
+
+    /**
+     * The offset of the value in a slot
+     */
+    private final long valueOffset;
+
+    /**
+     * The file mapped in memory, or null for anonymous memory
+     */
+    private final Path file;
+
+    /**
+     * The number of bits of an index : m = 2^bits
+     */
+    protected int bits;
+
+    /**
+     * The arena owning the current slots, closed when the table is resized or closed
+     */
+    private Arena arena;
+    private MemorySegment slots;
+
+    /**
+     * Constructs a new empty OffHeapHashTable in anonymous memory, with a default initial capacity (16)
+     * @param keyCodec the encoding of the keys
+     * @param valueCodec the encoding of the values
+     */
+    public OffHeapHashTable(FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec) {
+        this(keyCodec, valueCodec, 16, null);
+    }
+
+    /**
+     * Constructs a new empty OffHeapHashTable in anonymous memory, with the specified initial capacity
+     * (rounded up to a power of two)
+     * @param keyCodec the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @param capacity initial capacity of the hash table
+     */
+    public OffHeapHashTable(FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec, int capacity) {
+        this(keyCodec, valueCodec, capacity, null);
+    }
+
+    /**
+     * Constructs a new empty OffHeapHashTable with the specified initial capacity (rounded up to a power of two).
+     * With a file, the slots are stored in this file mapped in memory : the file is truncated and
+     * then grows with the table. A resize maps a new file next to it, and moves it over the file.
+     * @param keyCodec the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @param capacity initial capacity of the hash table
+     * @param file the file to map, or null for anonymous memory
+     */
+    public OffHeapHashTable(FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec, int capacity, Path file) {
+        this(keyCodec, valueCodec, capacity, file, HashStrategies.FIBONACCI);
+    }
+
+    /**
+     * Constructs a new empty OffHeapHashTable with the specified initial capacity (rounded up to a power of two)
+     * and hash function (see the constructor without hash function for the file).
+     * @param keyCodec the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @param capacity initial capacity of the hash table
+     * @param file the file to map, or null for anonymous memory
+     * @param hashStrategy the hash function of the keys
+     */
+    public OffHeapHashTable(FixedWidthCodec<K> keyCodec, FixedWidthCodec<V> valueCodec, int capacity, Path file,
+                            HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.valueOffset = HEADER + keyCodec.width();
+        this.slotSize = valueOffset + valueCodec.width();
+        this.file = file == null ? null : file.toAbsolutePath();
+        this.allocate(Integer.numberOfTrailingZeros(tableSizeFor(Math.max(2, capacity))), this.file);
+    }
+
+    /**
+     * Allocates zeroed (empty) slots for 2^bits entries in a new arena
+     * @param bits the number of bits of an index
+     * @param backing the file to map, or null for anonymous memory
+     */
+    private void allocate(int bits, Path backing) {
+        Arena a = Arena.ofShared();
+        long bytes = (1L << bits) * slotSize;
+        if (backing == null) {
+            this.slots = a.allocate(bytes, 8);
+        } else {
+            try (FileChannel channel = FileChannel.open(backing, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+                this.slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes, a);
+            } catch (IOException e) {
+                a.close();
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.arena = a;
+        this.bits = bits;
+        this.m = 1 << bits;
+    }
+
+    /**
+     * Spreads the hash code of a key with the hash strategy (Fibonacci hashing by default).
+     * The lowest bit is set, so that a used slot never has a 0 header,
+     * it does not change the home slot (the high bits).
+     */
+    private int spread(Object key) {
+        return hashStrategy.hash(key.hashCode()) | 1;
+    }
+
+    /**
+     * Returns the home slot of a spread hash code : its high bits
+     */
+    private int home(int h) {
+        return h >>> (32 - bits);
+    }
+
+    /**
+     * Hashes a key to its home slot
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return home(spread(key));
+    }
+
+    /**
+     * Returns the header of slot index : the spread hash code of its key, or 0 if it is empty
+     */
+    private int header(int index) {
+        return slots.get(ValueLayout.JAVA_INT_UNALIGNED, index * slotSize);
+    }
+
+    /**
+     * Returns the slot containing key, or -1 if the key is not in the table
+     */
+    private int indexOf(Object key, int h) {
+        int mask = m - 1;
+        int index = home(h);
+        while (true) {
+            int header = header(index);
+            if (header == 0) return -1;
+            if (header == h && keyCodec.matches(slots, index * slotSize + HEADER, (K) key)) return index;
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the first empty slot of the probe sequence of h
+     */
+    private int freeSlot(int h) {
+        int mask = m - 1;
+        int index = home(h);
+        while (header(index) != 0) index = (index + 1) & mask;
+        return index;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    @Override
+    public V search(K key) {
+        int index = indexOf(key, spread(key));
+        return index < 0 ? null : valueCodec.read(slots, index * slotSize + valueOffset);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * If the hash table previously contained a mapping for the key, the old value is replaced.
+     * Neither the key nor the value can be null.
+     */
+    @Override
+    public V insert(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int h = spread(key);
+        int index = indexOf(key, h);
+        if (index >= 0) {
+            long off = index * slotSize + valueOffset;
+            V old = valueCodec.read(slots, off);
+            try {
+                valueCodec.write(slots, off, value);
+            } catch (RuntimeException e) {
+                valueCodec.write(slots, off, old);  // a codec can fail after a partial write
+                throw e;
+            }
+            return old;
+        }
+
+        if (n + 1 > MAX_LOAD * m) {
+            resize(bits + 1);
+        }
+        long off = freeSlot(h) * slotSize;
+        // the header is written last : if a codec fails, the slot stays empty
+        keyCodec.write(slots, off + HEADER, key);
+        valueCodec.write(slots, off + valueOffset, value);
+        slots.set(ValueLayout.JAVA_INT_UNALIGNED, off, h);
+        n++;
+        return null;
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * The following entries of the cluster that can move closer to their home slot are shifted back.
+     */
+    @Override
+    public V delete(K key) {
+        int index = indexOf(key, spread(key));
+        if (index < 0) return null;
+
+        V old = valueCodec.read(slots, index * slotSize + valueOffset);
+        int mask = m - 1;
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            int h = header(next);
+            if (h == 0) break;
+            int home = home(h);
+            // the entry stays if its home is in ]index, next] (cyclically)
+            boolean stays = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+            if (!stays) {
+                MemorySegment.copy(slots, next * slotSize, slots, index * slotSize, slotSize);
+                index = next;
+            }
+        }
+        slots.set(ValueLayout.JAVA_INT_UNALIGNED, index * slotSize, 0);
+        n--;
+        return old;
+    }
+
+    /**
+     * Moves the slots to a new segment of 2^newBits slots. The entries are copied as raw bytes,
+     * without decoding them, then the old segment is released.
+     */
+    protected void resize(int newBits) {
+        Arena oldArena = this.arena;
+        MemorySegment old = this.slots;
+        int oldM = this.m;
+
+        Path next = null;
+        if (file != null) {
+            try {
+                next = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".resize");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.allocate(newBits, next);
+
+        for (int i = 0; i < oldM; i++) {
+            long off = i * slotSize;
+            int h = old.get(ValueLayout.JAVA_INT_UNALIGNED, off);
+            if (h != 0) {
+                MemorySegment.copy(old, off, slots, freeSlot(h) * slotSize, slotSize);
+            }
+        }
+        oldArena.close();
+
+        if (next != null) {
+            try {
+                // the mapping stays valid when its file is renamed
+                Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single resize
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        int newBits = Integer.numberOfTrailingZeros(capacityFor(expectedEntries, MAX_LOAD));
+        if (newBits > bits) resize(newBits);
+    }
+
+    /**
+     * Performs the given action for each (key, value) of this hash table, in the order of the slots.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < m; i++) {
+            if (header(i) != 0) {
+                long off = i * slotSize;
+                action.accept(keyCodec.read(slots, off + HEADER), valueCodec.read(slots, off + valueOffset));
+            }
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     * key() and value() decode the current slot.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new Cursor<K, V>() {
+            private int index = -1;
+
+            public boolean advance() {
+                while (++index < m) {
+                    if (header(index) != 0) return true;
+                }
+                return false;
+            }
+
+            public K key() {
+                return keyCodec.read(slots, index * slotSize + HEADER);
+            }
+
+            public V value() {
+                return valueCodec.read(slots, index * slotSize + valueOffset);
+            }
+
+            public void reset() {
+                index = -1;
+            }
+        };
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        for (int i = 0; i < m; i++) {
+            if (header(i) != 0) list.add(keyCodec.read(slots, i * slotSize + HEADER));
+        }
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        for (int i = 0; i < m; i++) {
+            if (header(i) != 0) list.add(valueCodec.read(slots, i * slotSize + valueOffset));
+        }
+        return list;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table. The memory is kept.
+     */
+    @Override
+    public void clear() {
+        slots.fill((byte) 0);
+        n = 0;
+    }
+
+    /**
+     * Returns the number of bytes of memory used by the slots
+     */
+    public long byteSize() {
+        return slots.byteSize();
+    }
+
+    /**
+     * Returns the off-heap memory of the slots (the pages of a mapped file are counted too)
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint(n, m, 0, 0, (slots == null) ? 0 : slots.byteSize());
+    }
+
+    /**
+     * Releases the memory (and unmaps the file) of this table. The file itself is kept.
+     */
+    @Override
+    public void close() {
+        if (arena != null) {
+            arena.close();
+            arena = null;
+            slots = null;
+        }
+    }
+}
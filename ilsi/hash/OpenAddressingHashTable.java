@@ -2,12 +2,34 @@ package ilsi.hash;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * The classe OpenAddressingHashTable represent a hash table with Open Addressing to handle collisions.
  * The probing method is double hashing.
+ *
+ * Deleted slots are marked with a tombstone so that probe sequences going through them are not broken.
+ * The table is rehashed when the occupied slots (elements and tombstones) exceed MAX_LOAD :
+ * it doubles if the elements alone need it, otherwise it is rebuilt at the same capacity,
+ * which purges the tombstones.
+ * The capacity is always a power of two, and the probe step is odd, so a probe sequence visits every slot.
  */
 public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * Marks a deleted slot : a search continues after it, an insert may reuse it
+     */
+    protected final Element<K, V> TOMBSTONE = new Element<K, V>(null, null);
+
+    /**
+     * The number of tombstones in the table
+     */
+    protected int tombstones;
     
     /**
      * Constructs a new empty OpenAddressingHashTable with a default initial capacity (16)
@@ -18,26 +40,49 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
     
     /**
      * Constructs a new empty OpenAddressingHashTable with specified capacity
+     * (rounded up to a power of two)
      */
     public OpenAddressingHashTable(int capacity) {
-        super(capacity);
+        this(capacity, HashStrategies.MULTIPLY_SHIFT);
+    }
+
+    /**
+     * Constructs a new empty OpenAddressingHashTable with specified capacity
+     * (rounded up to a power of two) and hash function
+     * @param capacity initial capacity of the hash table
+     * @param hashStrategy the hash function of the keys
+     */
+    public OpenAddressingHashTable(int capacity, HashStrategy hashStrategy) {
+        super(tableSizeFor(Math.max(2, capacity)), hashStrategy);
+    }
+
+    /**
+     * Returns a new empty OpenAddressingHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> OpenAddressingHashTable<K, V> withExpectedSize(int expectedEntries) {
+        OpenAddressingHashTable<K, V> t = new OpenAddressingHashTable<K, V>(2);
+        t.ensureCapacity(expectedEntries);
+        return t;
     }
     
     /**
-     * First hash function
+     * First hash function : the top bits of the hash of the key
+     * @param h the hash of the key (hashStrategy applied to its hash code)
      */
-    private int h1(int key) {
-        int k = Math.abs(key);
-        return k % m;
+    private int h1(int h) {
+        return h >>> Integer.numberOfLeadingZeros(m - 1);
     }
 
     /**
-     * Second hash function for double hashing
+     * Second hash function for double hashing : the next bits of the hash of the key.
+     * The step is odd, so it is coprime with m (a power of two)
+     * @param h the hash of the key (hashStrategy applied to its hash code)
      */
-    private int h2(int key) {
-        int k = Math.abs(key);
-        int mprime = m - 1;
-        return 1 + (k % mprime);
+    private int h2(int h) {
+        int bits = Integer.numberOfTrailingZeros(m);
+        return ((h << bits) >>> (32 - bits)) | 1;
     }
 
     /**
@@ -48,8 +93,8 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
      * @return int - the hash value
      */
     protected int hash(K key, int i) {
-        int kInt = key.hashCode();
-        return (h1(kInt) + i * h2(kInt)) % m;
+        int h = hashStrategy.hash(key.hashCode());
+        return (int) ((h1(h) + (long) i * h2(h)) & (m - 1));
     }
     
     /**
@@ -60,74 +105,318 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
         return hash(key, 0);
     }
 
+    /**
+     * Returns the index of the slot containing key, or -1 if the key is not in the table
+     */
+    private int indexOf(K key) {
+        int k = hashStrategy.hash(key.hashCode());
+        int index = h1(k);
+        int step = h2(k);
+        for (int i = 0; i < m; i++) {
+            Element<K, V> e = table[index];
+
+            if (e == null) {
+                if (HashTableStats.ENABLED) stats.recordProbe(i + 1);
+                return -1;
+            }
+
+            if (e != TOMBSTONE && e.key.equals(key)) {
+                if (HashTableStats.ENABLED) stats.recordProbe(i + 1);
+                return index;
+            }
+            index = (index + step) & (m - 1);
+        }
+        if (HashTableStats.ENABLED) stats.recordProbe(m);
+        return -1;
+    }
+
+    /**
+     * The operations of this table are recorded in stats
+     */
+    @Override
+    protected boolean isInstrumented() {
+        return true;
+    }
+
+    /**
+     * Returns the number of tombstones
+     */
+    @Override
+    protected int tombstoneCount() {
+        return tombstones;
+    }
+
     /**
      * Associates the specified value with the specified key in this hash table.
      * If the hash table previously contained a mapping for the key, the old value is replaced.
      */
     @Override
     public V insert(K key, V value) {
-        for (int i = 0; i < m; i++) {
-            int index = this.hash(key, i);
+        if (!HashTableStats.ENABLED) return put(key, value);
+        long start = System.nanoTime();
+        V old = put(key, value);
+        stats.recordInsert(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The insertion itself, insert adds the latency statistics
+     */
+    private V put(K key, V value) {
+        int index = probe(key);
+        if (index >= 0) {
+            V old = table[index].value;
+            table[index].value = value;
+            return old;
+        }
+        add(~index, key, value);
+        return null;
+    }
+
+    /**
+     * Walks the probe sequence of key once.
+     * @return the slot containing key, or else ~slot of the slot where key would be inserted
+     * (the first tombstone of the sequence, or the empty slot that ends it), or ~m if the
+     * sequence has no free slot
+     */
+    private int probe(K key) {
+        int k = hashStrategy.hash(key.hashCode());
+        int index = h1(k);
+        int step = h2(k);
+        int free = -1; // the first tombstone of the probe sequence
+
+        int i = 0;
+        for (; i < m; i++) {
             Element<K, V> e = table[index];
 
             if (e == null) {
-                table[index] = new Element<>(key, value);
-                n++;
-                return null;
+                break;
             }
 
-            if (e.key.equals(key)) {
-                V old = e.value;
-                e.value = value;
-                return old;
+            if (e == TOMBSTONE) {
+                if (free < 0) free = index;
+            } else if (e.key.equals(key)) {
+                if (HashTableStats.ENABLED) stats.recordProbe(i + 1);
+                return index;
             }
+            index = (index + step) & (m - 1);
+        }
+        if (HashTableStats.ENABLED) stats.recordProbe(Math.min(i + 1, m));
+
+        if (free >= 0) return ~free;          // reuse a tombstone
+        return (table[index] == null) ? ~index : ~m;
+    }
+
+    /**
+     * Adds (key, value) in the free slot given by probe, the key is not in the table
+     */
+    private void add(int slot, K key, V value) {
+        if (slot == m) {  // no free slot found (cannot happen below MAX_LOAD)
+            rehash(2 * m);
+            slot = ~probe(key);
         }
+        if (table[slot] == TOMBSTONE) tombstones--;
 
-        System.out.println("Hash table is full - insertion failed");
+        table[slot] = new Element<>(key, value);
+        n++;
+        if (n + tombstones > MAX_LOAD * m) {
+            // double only if the elements need it, otherwise just purge the tombstones
+            rehash(n > MAX_LOAD / 2 * m ? 2 * m : m);
+        }
+    }
+
+    /**
+     * Associates value with key only if the key has no mapping, with a single probe.
+     * @return the current value of key, or null if value was inserted
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int index = probe(key);
+        if (index >= 0) return table[index].value;
+        add(~index, key, value);
         return null;
     }
 
     /**
-     * Search the value associated with a specified key in this hash table.
+     * Computes the new value of key from its current value (null if absent), with a single probe :
+     * the element is updated in place, or the new one goes to the free slot found by the probe.
+     * @return the new value of key, or null if there is no mapping anymore
      */
     @Override
-    public V search(K key) {
-        for (int i = 0; i < m; i++) {
-            int index = this.hash(key, i);
-            Element<K, V> e = table[index];
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        int index = probe(key);
+        V value = remapping.apply(key, index >= 0 ? table[index].value : null);
+        if (value == null) {
+            if (index >= 0) removeAt(index);
+        } else if (index >= 0) {
+            table[index].value = value;
+        } else {
+            add(~index, key, value);
+        }
+        return value;
+    }
 
-            if (e == null) {
-                return null;
+    /**
+     * Inserts value, or merges it with the current value of key, with a single probe.
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        Objects.requireNonNull(value, "value");
+        int index = probe(key);
+        if (index < 0) {
+            add(~index, key, value);
+            return value;
+        }
+        V merged = remapping.apply(table[index].value, value);
+        if (merged == null) removeAt(index);
+        else table[index].value = merged;
+        return merged;
+    }
+
+    /**
+     * Rebuilds the table with the specified capacity.
+     * The elements are moved (not copied) and the tombstones are dropped.
+     * @param capacity the new capacity, a power of two
+     */
+    protected void rehash(int capacity) {
+        long start = HashTableStats.ENABLED ? System.nanoTime() : 0L;
+        Element<K, V>[] old = table;
+        this.m = capacity;
+        this.table = (Element<K, V>[]) new Element[capacity];
+        this.tombstones = 0;
+
+        for (int j = 0; j < old.length; j++) {
+            Element<K, V> e = old[j];
+            if (e == null || e == TOMBSTONE) continue;
+
+            int k = hashStrategy.hash(e.key.hashCode());
+            int index = h1(k);
+            int step = h2(k);
+            while (table[index] != null) {
+                index = (index + step) & (m - 1);
             }
+            table[index] = e;
+        }
+        if (HashTableStats.ENABLED) stats.recordResize(old.length, System.nanoTime() - start);
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        presize(expectedEntries);
+        reserveCapacity(capacityFor(expectedEntries, MAX_LOAD));
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash, without raising minCapacity
+     */
+    @Override
+    protected void presize(int expectedEntries) {
+        int capacity = capacityFor(expectedEntries + tombstones, MAX_LOAD);
+        if (capacity > m) rehash(capacity);
+    }
 
-            if (e.key.equals(key)) {
-                return e.value;
+    /**
+     * The number of keys of a batch in searchAll
+     */
+    protected static final int BATCH = 16;
+
+    /**
+     * Searches the values associated with a batch of keys.
+     * Each group of BATCH keys is processed in passes : hash all the keys, then load all the
+     * first probed slots (independent memory loads the CPU can overlap), then finish the probes.
+     */
+    @Override
+    public V[] searchAll(K[] keys, V[] results) {
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("results is shorter than keys: " + results.length + " < " + keys.length);
+        }
+        int[] hashes = new int[BATCH];
+        Element<K, V>[] first = (Element<K, V>[]) new Element[BATCH];
+        for (int start = 0; start < keys.length; start += BATCH) {
+            int count = Math.min(BATCH, keys.length - start);
+            for (int j = 0; j < count; j++) {
+                hashes[j] = hashStrategy.hash(keys[start + j].hashCode());
+            }
+            for (int j = 0; j < count; j++) {
+                first[j] = table[h1(hashes[j])];
+            }
+            for (int j = 0; j < count; j++) {
+                K key = keys[start + j];
+                Element<K, V> e = first[j];
+                if (e == null) {
+                    results[start + j] = null;
+                } else if (e != TOMBSTONE && e.key.equals(key)) {
+                    results[start + j] = e.value;
+                } else {
+                    results[start + j] = search(key);
+                }
             }
         }
-        return null;
+        return results;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    @Override
+    public V search(K key) {
+        if (!HashTableStats.ENABLED) return get(key);
+        long start = System.nanoTime();
+        V value = get(key);
+        stats.recordSearch(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * The search itself, search adds the latency statistics
+     */
+    private V get(K key) {
+        int index = indexOf(key);
+        return index < 0 ? null : table[index].value;
     }
 
     /**
      * Removes the mapping for a key from this hash table if it is present.
+     * The slot is marked with a tombstone.
      */
     @Override
     public V delete(K key) {
-        for (int i = 0; i < m; i++) {
-            int index = this.hash(key, i);
-            Element<K, V> e = table[index];
+        if (!HashTableStats.ENABLED) return remove(key);
+        long start = System.nanoTime();
+        V old = remove(key);
+        stats.recordDelete(System.nanoTime() - start);
+        return old;
+    }
 
-            if (e == null) {
-                return null;
-            }
+    /**
+     * The deletion itself, delete adds the latency statistics
+     */
+    private V remove(K key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        return removeAt(index);
+    }
 
-            if (e.key.equals(key)) {
-                V oldValue = e.value;
-                table[index] = null;
-                n--;
-                return oldValue;
-            }
+    /**
+     * Replaces the element of a slot by a tombstone
+     * @return the value of the removed element
+     */
+    private V removeAt(int index) {
+        V oldValue = table[index].value;
+        table[index] = TOMBSTONE;
+        n--;
+        tombstones++;
+        if (shouldShrink()) {
+            // halve the table when it becomes too sparse (the tombstones are dropped too)
+            rehash(m / 2);
         }
-        return null;
+        return oldValue;
     }
 
     /**
@@ -138,7 +427,7 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
         List<K> keys = new LinkedList<K>();
         
         for (int i = 0; i < m; i++) {
-            if (table[i] != null) {
+            if (table[i] != null && table[i] != TOMBSTONE) {
                 keys.add(table[i].key);
             }
         }
@@ -154,7 +443,7 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
         List<V> values = new LinkedList<V>();
         
         for (int i = 0; i < m; i++) {
-            if (table[i] != null) {
+            if (table[i] != null && table[i] != TOMBSTONE) {
                 values.add(table[i].value);
             }
         }
@@ -162,6 +451,98 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
         return values;
     }
 
+    /**
+     * Performs the given action for each (key, value) of this hash table, in the order of the slots.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Element<K, V>[] slots = table;
+        for (int i = 0; i < slots.length; i++) {
+            Element<K, V> e = slots[i];
+            if (e != null && e != TOMBSTONE) action.accept(e.key, e.value);
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Returns a spliterator over the elements of this hash table, it splits the slot array.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new ElementSpliterator(table, 0, table.length);
+    }
+
+    /**
+     * A cursor walking the slots in the order of the array
+     */
+    private class SlotCursor implements Cursor<K, V> {
+        private int index = -1;
+        private Element<K, V> e;
+
+        public boolean advance() {
+            while (++index < table.length) {
+                e = table[index];
+                if (e != null && e != TOMBSTONE) return true;
+            }
+            e = null;
+            return false;
+        }
+
+        public K key() {
+            return e.key;
+        }
+
+        public V value() {
+            return e.value;
+        }
+
+        public void reset() {
+            index = -1;
+            e = null;
+        }
+    }
+
+    /**
+     * A spliterator over the elements of the slots [index, fence)
+     */
+    private class ElementSpliterator extends SlotSpliterator {
+        private final Element<K, V>[] slots;
+
+        ElementSpliterator(Element<K, V>[] slots, int origin, int fence) {
+            super(origin, fence);
+            this.slots = slots;
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new ElementSpliterator(slots, origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            while (index < fence) {
+                Element<K, V> e = slots[index++];
+                if (e != null && e != TOMBSTONE) {
+                    action.accept(e);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            for (; index < fence; index++) {
+                Element<K, V> e = slots[index];
+                if (e != null && e != TOMBSTONE) action.accept(e);
+            }
+        }
+    }
+
     /**
      * Removes all of the (key, value) from this hash table.
      */
@@ -171,5 +552,33 @@ public class OpenAddressingHashTable<K, V> extends HashTable<K, V> {
             this.table[i] = null;
         }
         n = 0;
+        tombstones = 0;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table,
+     * with release the table returns to its initial capacity.
+     */
+    @Override
+    public void clear(boolean release) {
+        if (release) minCapacity = initialCapacity;
+        if (!release || m == initialCapacity) {
+            clear();
+            return;
+        }
+        this.m = initialCapacity;
+        this.table = (Element<K, V>[]) new Element[m];
+        n = 0;
+        tombstones = 0;
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds its elements below MAX_LOAD
+     * (at least 2 slots), and drops the tombstones
+     */
+    @Override
+    public void trimToSize() {
+        int capacity = Math.max(2, capacityFor(n, MAX_LOAD));
+        if (capacity < m || tombstones > 0) rehash(Math.min(capacity, m));
     }
 }
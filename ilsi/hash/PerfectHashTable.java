@@ -0,0 +1,478 @@
+package ilsi.hash;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The classe PerfectHashTable represent an immutable hash table built once from the mappings of
+ * another table (freeze), for the data that is read only : its hash function is a minimal perfect
+ * hash function of the keys, computed with the "hash and displace" method (CHD).
+ *
+ * The n keys and their values are stored in two flat arrays of exactly n slots (no free slot),
+ * and every key has its own slot : a search hashes the key, reads the displacement of its bucket,
+ * and compares the key of one slot. There is no chain and no probe sequence.
+ *
+ * Construction : the keys are hashed into about n / LAMBDA buckets. The buckets are placed from the
+ * largest to the smallest : for a bucket, the displacements d = 0, 1, 2... select other positions
+ * position(h, d) of its keys, until all of them fall in free slots. The buckets of a single key are
+ * placed last, directly in the remaining free slots (their displacement stores the slot itself).
+ * The displacements cost an int per bucket, about one byte per key.
+ *
+ * The keys are separated by their hashCode : when several keys have the same hashCode, all but
+ * one of them are stored after the slots, sorted by hashCode, and found by a binary search
+ * when the slot does not hold the key.
+ *
+ * The table is immutable : insert, delete and clear throw UnsupportedOperationException.
+ * Its state is in final fields set by the constructor (size() reads its own final field, not the
+ * inherited counter n), and a search writes nothing, so it can be read from any number of threads
+ * without synchronization, even when it is published without a lock.
+ *
+ * Example :
+ *      PerfectHashTable<String, Integer> codes = PerfectHashTable.freeze(table);
+ *      codes.search("FR");
+ */
+public final class PerfectHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The average number of keys per bucket
+     */
+    public static final int LAMBDA = 4;
+
+    /**
+     * The largest displacement tried for a bucket before the construction starts again with another seed
+     */
+    private static final int MAX_DISPLACEMENT = 1 << 22;
+
+    /**
+     * The number of seeds tried before the construction fails
+     */
+    private static final int MAX_SEEDS = 16;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+
+    /**
+     * The displacement of each bucket, or ~slot for a bucket of a single key
+     */
+    private final int[] displacements;
+
+    /**
+     * The number of slots of the perfect hash function : keys[0 .. slots - 1]
+     */
+    private final int slots;
+
+    /**
+     * The slots, then the keys with the same hashCode as another key (sorted by hashCode)
+     */
+    private final Object[] keys;
+    private final Object[] vals;
+
+    /**
+     * The hashCodes of the keys keys[slots ..], sorted
+     */
+    private final int[] overflowCodes;
+
+    /**
+     * The number of mappings
+     */
+    private final int size;
+
+    /**
+     * The result of a construction with one seed
+     */
+    private static final class Layout {
+        final long seed;
+        final int[] displacements;
+        final Object[] keys;
+        final Object[] vals;
+
+        Layout(long seed, int[] displacements, Object[] keys, Object[] vals) {
+            this.seed = seed;
+            this.displacements = displacements;
+            this.keys = keys;
+            this.vals = vals;
+        }
+    }
+
+    private PerfectHashTable(Layout layout, List<Object> overflowKeys, List<Object> overflowVals, int[] overflowCodes) {
+        super(0, false);
+        this.seed = layout.seed;
+        this.displacements = layout.displacements;
+        this.slots = layout.keys.length;
+        this.size = this.slots + overflowCodes.length;
+        this.keys = Arrays.copyOf(layout.keys, this.size);
+        this.vals = Arrays.copyOf(layout.vals, this.size);
+        for (int i = 0; i < overflowCodes.length; i++) {
+            this.keys[this.slots + i] = overflowKeys.get(i);
+            this.vals[this.slots + i] = overflowVals.get(i);
+        }
+        this.overflowCodes = overflowCodes;
+        this.m = this.size;
+        this.n = this.size;
+    }
+
+    /**
+     * Returns an immutable copy of the mappings of table, with a minimal perfect hash function of its keys.
+     * The construction takes O(n) expected time. table is not modified.
+     * @param table the mappings to freeze (null keys are not supported)
+     * @throws IllegalStateException if no perfect hash function was found (it does not happen with distinct hashCodes)
+     */
+    public static <K, V> PerfectHashTable<K, V> freeze(HashTable<K, V> table) {
+        List<Object> keys = new ArrayList<Object>(table.size());
+        List<Object> vals = new ArrayList<Object>(table.size());
+        table.forEach((key, value) -> {
+            keys.add(key);
+            vals.add(value);
+        });
+        int size = keys.size();
+
+        // the keys are sorted by hashCode : the next keys of a same hashCode go to the overflow
+        long[] byCode = new long[size];
+        for (int i = 0; i < size; i++) {
+            byCode[i] = ((long) keys.get(i).hashCode() << 32) | i;
+        }
+        Arrays.sort(byCode);
+        List<Object> mainKeys = new ArrayList<Object>(size);
+        List<Object> mainVals = new ArrayList<Object>(size);
+        List<Object> overflowKeys = new ArrayList<Object>();
+        List<Object> overflowVals = new ArrayList<Object>();
+        int[] overflowCodes = new int[size];
+        for (int j = 0; j < size; j++) {
+            int i = (int) byCode[j];
+            int code = (int) (byCode[j] >> 32);
+            if (j > 0 && code == (int) (byCode[j - 1] >> 32)) {
+                overflowCodes[overflowKeys.size()] = code;
+                overflowKeys.add(keys.get(i));
+                overflowVals.add(vals.get(i));
+            } else {
+                mainKeys.add(keys.get(i));
+                mainVals.add(vals.get(i));
+            }
+        }
+        overflowCodes = Arrays.copyOf(overflowCodes, overflowKeys.size());
+
+        Object[] k = mainKeys.toArray();
+        Object[] v = mainVals.toArray();
+        for (long s = 0; s < MAX_SEEDS; s++) {
+            Layout layout = build(k, v, s);
+            if (layout != null) return new PerfectHashTable<K, V>(layout, overflowKeys, overflowVals, overflowCodes);
+        }
+        throw new IllegalStateException("No perfect hash function found for " + k.length + " keys");
+    }
+
+    /**
+     * Mixes 64 bits (the finalizer of SplitMix64, a bijection)
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * The hash of a key for a seed : distinct hashCodes give distinct hashes
+     */
+    private static long hash64(Object key, long seed) {
+        return mix((key.hashCode() & 0xFFFFFFFFL) + seed * GOLDEN);
+    }
+
+    /**
+     * Returns x * range / 2^32 : maps the 32 high bits of x to [0, range) without division
+     */
+    private static int reduce(long x, int range) {
+        return (int) (((x >>> 32) * range) >>> 32);
+    }
+
+    private static int position(long h, int displacement, int slots) {
+        return reduce(mix(h + displacement * GOLDEN), slots);
+    }
+
+    /**
+     * Places the keys with the hash of seed
+     * @return the layout, or null if a bucket found no displacement
+     */
+    private static Layout build(Object[] keys, Object[] vals, long seed) {
+        int size = keys.length;
+        int buckets = Math.max(1, (size + LAMBDA - 1) / LAMBDA);
+        long[] h = new long[size];
+        int[] bucketOf = new int[size];
+        int[] start = new int[buckets + 1];
+        for (int i = 0; i < size; i++) {
+            h[i] = hash64(keys[i], seed);
+            bucketOf[i] = reduce(h[i] << 32, buckets);  // the low half of the hash, position uses all of it
+            start[bucketOf[i] + 1]++;
+        }
+        int maxSize = 0;
+        for (int b = 0; b < buckets; b++) {
+            maxSize = Math.max(maxSize, start[b + 1]);
+            start[b + 1] += start[b];
+        }
+        // the keys of each bucket, together
+        int[] members = new int[size];
+        int[] fill = Arrays.copyOf(start, buckets);
+        for (int i = 0; i < size; i++) {
+            members[fill[bucketOf[i]]++] = i;
+        }
+        // the buckets by decreasing size
+        int[] sizeStart = new int[maxSize + 2];
+        for (int b = 0; b < buckets; b++) {
+            sizeStart[maxSize - (start[b + 1] - start[b]) + 1]++;
+        }
+        for (int s = 0; s <= maxSize; s++) sizeStart[s + 1] += sizeStart[s];
+        int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[sizeStart[maxSize - (start[b + 1] - start[b])]++] = b;
+        }
+
+        int[] displacements = new int[buckets];
+        long[] taken = new long[(size + 63) >>> 6];
+        int[] positions = new int[Math.max(1, maxSize)];
+        int free = 0;
+        for (int b : order) {
+            int from = start[b];
+            int count = start[b + 1] - from;
+            if (count == 0) break;  // the empty buckets are last, their displacement stays 0
+            if (count == 1) {
+                // a single key takes the next free slot directly
+                while ((taken[free >>> 6] & (1L << free)) != 0) free++;
+                taken[free >>> 6] |= 1L << free;
+                displacements[b] = ~free;
+                continue;
+            }
+            int d = 0;
+            search:
+            for (;; d++) {
+                if (d == MAX_DISPLACEMENT) return null;
+                for (int j = 0; j < count; j++) {
+                    int p = position(h[members[from + j]], d, size);
+                    if ((taken[p >>> 6] & (1L << p)) != 0) continue search;
+                    for (int q = 0; q < j; q++) {
+                        if (positions[q] == p) continue search;
+                    }
+                    positions[j] = p;
+                }
+                break;
+            }
+            for (int j = 0; j < count; j++) {
+                taken[positions[j] >>> 6] |= 1L << positions[j];
+            }
+            displacements[b] = d;
+        }
+
+        Object[] slotKeys = new Object[size];
+        Object[] slotVals = new Object[size];
+        for (int i = 0; i < size; i++) {
+            int d = displacements[bucketOf[i]];
+            int p = (d < 0) ? ~d : position(h[i], d, size);
+            slotKeys[p] = keys[i];
+            slotVals[p] = vals[i];
+        }
+        return new Layout(seed, displacements, slotKeys, slotVals);
+    }
+
+    /**
+     * Hashes a key to its slot : the only slot where it can be
+     * @param key the key to be hashed
+     * @return int - the slot of the key
+     */
+    @Override
+    protected int hash(K key) {
+        long h = hash64(key, seed);
+        int d = displacements[reduce(h << 32, displacements.length)];
+        return (d < 0) ? ~d : position(h, d, slots);
+    }
+
+    /**
+     * Search the value associated with a specified key : one slot is compared
+     * (then the keys sharing their hashCode with another key, by a binary search).
+     * @return the value associated with key if exists, or null if there was no mapping for key.
+     */
+    @Override
+    public V search(K key) {
+        if (key == null) return null;
+        if (slots > 0) {
+            int slot = hash(key);
+            if (keys[slot].equals(key)) return (V) vals[slot];
+        }
+        return (overflowCodes.length == 0) ? null : searchOverflow(key);
+    }
+
+    /**
+     * Returns the value of key among the keys stored after the slots, or null
+     */
+    private V searchOverflow(K key) {
+        int code = key.hashCode();
+        int i = Arrays.binarySearch(overflowCodes, code);
+        if (i < 0) return null;
+        while (i > 0 && overflowCodes[i - 1] == code) i--;
+        for (; i < overflowCodes.length && overflowCodes[i] == code; i++) {
+            if (keys[slots + i].equals(key)) return (V) vals[slots + i];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this hash table.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if this hash table contains no key-value mappings
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Unsupported : the table is immutable
+     */
+    @Override
+    public V insert(K key, V value) {
+        throw new UnsupportedOperationException("PerfectHashTable is immutable");
+    }
+
+    /**
+     * Unsupported : the table is immutable
+     */
+    @Override
+    public V delete(K key) {
+        throw new UnsupportedOperationException("PerfectHashTable is immutable");
+    }
+
+    /**
+     * Unsupported : the table is immutable
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("PerfectHashTable is immutable");
+    }
+
+    /**
+     * Unsupported : the table is immutable
+     */
+    @Override
+    public void clear(boolean release) {
+        throw new UnsupportedOperationException("PerfectHashTable is immutable");
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        forEach((key, value) -> list.add(key));
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        forEach((key, value) -> list.add(value));
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, value) : the slots in order, then the overflow.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < size; i++) action.accept((K) keys[i], (V) vals[i]);
+    }
+
+    /**
+     * Returns a reusable cursor over the slots, then the overflow
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries, it splits the slot arrays
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(0, size);
+    }
+
+    /**
+     * Returns an estimate of the memory of the displacements, the key and value arrays and the overflow hashCodes
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long arrays = MemoryFootprint.of(displacements) + MemoryFootprint.of(keys) + MemoryFootprint.of(vals)
+                + MemoryFootprint.of(overflowCodes);
+        return new MemoryFootprint(size, size, arrays, 0, 0);
+    }
+
+    /**
+     * A cursor walking the slots, then the overflow
+     */
+    private class SlotCursor implements Cursor<K, V> {
+        private int index = -1;
+
+        public boolean advance() {
+            return ++index < size;
+        }
+
+        public K key() {
+            return (K) keys[index];
+        }
+
+        public V value() {
+            return (V) vals[index];
+        }
+
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /**
+     * A spliterator over the entries [index, fence) : all of them are mappings
+     */
+    private class EntrySpliterator extends SlotSpliterator {
+
+        EntrySpliterator(int origin, int fence) {
+            super(origin, fence);
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new EntrySpliterator(origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            if (index >= fence) return false;
+            int i = index++;
+            action.accept(new AbstractMap.SimpleImmutableEntry<K, V>((K) keys[i], (V) vals[i]));
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.IMMUTABLE;
+        }
+    }
+}
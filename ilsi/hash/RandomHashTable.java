@@ -1,26 +1,46 @@
 package ilsi.hash;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The classe RandomHashTable represent a hash table with random hashing.
- * The design of the Family of hash functions is based on multiply-shift with random parameters.
+ * The hash function is drawn at random from the universal family h(k) = (a*k + b) mod p,
+ * with the Mersenne prime p = 2^61 - 1 (see HashStrategies.Mersenne) : the mod p is computed
+ * with a shift and an addition, and the index is the top l bits of the result (no mod m).
+ *
+ * When a lookup meets a chain longer than TREEIFY_THRESHOLD, the keys of the chain collide
+ * under the current function only if their hash codes differ : a new function is then drawn
+ * and the table is rehashed (at most MAX_RESEEDS times per capacity).
+ * Keys with equal hash codes collide under every function, their bucket is treeified instead.
  */
 public class RandomHashTable<K, V> extends StaticHashTable<K, V> {
     protected long p;
     protected long randomA;
     protected long randomB;
 
+    /**
+     * The number of reseeds allowed before a resize, long chains are treeified after them
+     */
+    protected static final int MAX_RESEEDS = 2;
+
+    /**
+     * The current hash function of the family, replaced by reseed
+     */
+    protected HashStrategies.Mersenne function;
+
+    /**
+     * The number of reseeds since the table has 2^reseedBits buckets
+     */
+    private int reseeds;
+    private int reseedBits;
+
     /**
      * Constructs a new empty RandomHashTable with a default initial capacity (16) 
      * and load factor (0.75).
      */
     public RandomHashTable() {
-        super(16);
-        this.p = 1000000007L; // Large prime number
-        Random rand = new Random();
-        this.randomA = rand.nextInt((int)p - 1) + 1; // a in range [1, p-1]
-        this.randomB = rand.nextInt((int)p);          // b in range [0, p-1]
+        this(16);
     }
 
     /**
@@ -29,26 +49,106 @@ public class RandomHashTable<K, V> extends StaticHashTable<K, V> {
      * @param capacity initial capacity of the hash table
      */
     public RandomHashTable(int capacity) {
-        super(capacity);
-        this.p = 1000000007L; // Large prime number
-        Random rand = new Random();
-        this.randomA = rand.nextInt((int)p - 1) + 1; // a in range [1, p-1]
-        this.randomB = rand.nextInt((int)p);          // b in range [0, p-1]
+        this(capacity, HashStrategies.mersenne(ThreadLocalRandom.current().nextLong()));
     }
 
     /**
-     * Hashes a key to a corresponding index using random hash function
-     * Uses universal hashing: h(k) = ((a*k + b) mod p) mod m
-     * @param key the key to be hashed
-     * @return int - the hash value
+     * Constructs a new empty RandomHashTable with the specified initial capacity
+     * and hash function of the family.
+     * @param capacity initial capacity of the hash table
+     * @param function the hash function, its a and b are randomA and randomB
+     */
+    RandomHashTable(int capacity, HashStrategies.Mersenne function) {
+        super(capacity, function);
+        this.p = HashStrategies.MERSENNE_61;
+        this.randomA = function.a; // a in range [1, p-1]
+        this.randomB = function.b; // b in range [0, p-1]
+        this.function = function;
+    }
+
+    /**
+     * Constructs a new empty RandomHashTable with the specified initial capacity
+     * and default load factor (0.75).
+     * @param capacity initial capacity of the hash table
+     * @param incremental true to grow by incremental rehashing
+     */
+    public RandomHashTable(int capacity, boolean incremental) {
+        this(capacity);
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns a new empty RandomHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> RandomHashTable<K, V> withExpectedSize(int expectedEntries) {
+        RandomHashTable<K, V> t = new RandomHashTable<K, V>(2);
+        t.ensureCapacity(expectedEntries);
+        return t;
+    }
+
+    /**
+     * Hashes a key to an index of a table of 2^bits slots with the current function
      */
     @Override
-    protected int hash(K key) {
+    protected int hash (K key, int bits){
         int k = 0;
-        if (key != null) k = Math.abs(key.hashCode());
-        
-        // Universal hashing formula: ((a*k + b) mod p) mod m
-        long hash = ((randomA * k + randomB) % p) % m;
-        return (int) hash;
+        if (key != null) k = key.hashCode();
+        return this.function.hash(k) >>> (w - bits);
+    }
+
+    /**
+     * Reseeds the table when the keys of the long chain have distinct hash codes,
+     * treeifies the bucket otherwise (or when the reseeds of this capacity are used up)
+     */
+    @Override
+    protected void onLongChain(Element<K,V>[] buckets, int index) {
+        if (this.reseedBits != this.l) {  // the table was resized since the last reseed
+            this.reseedBits = this.l;
+            this.reseeds = 0;
+        }
+        if (this.reseeds < MAX_RESEEDS && distinctHashCodes(buckets[index]) > TREEIFY_THRESHOLD / 2) {
+            this.reseeds++;
+            this.reseed();
+        } else {
+            super.onLongChain(buckets, index);
+        }
+    }
+
+    /**
+     * Returns the number of distinct hash codes of the keys of the chain p
+     */
+    private int distinctHashCodes(Element<K,V> p) {
+        int length = 0;
+        for (Element<K,V> e = p; e != null; e = e.next) length++;
+        int[] codes = new int[length];
+        int i = 0;
+        for (Element<K,V> e = p; e != null; e = e.next) codes[i++] = e.key.hashCode();
+        Arrays.sort(codes);
+        int distinct = 0;
+        for (i = 0; i < length; i++) {
+            if (i == 0 || codes[i] != codes[i - 1]) distinct++;
+        }
+        return distinct;
+    }
+
+    /**
+     * Draws a new hash function of the family and rehashes every element with it,
+     * the number of buckets does not change.
+     */
+    public void reseed() {
+        this.reseed(HashStrategies.mersenne(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Rehashes every element with the specified function of the family
+     */
+    void reseed(HashStrategies.Mersenne function) {
+        this.completeRehash();
+        this.function = function;
+        this.randomA = function.a;
+        this.randomB = function.b;
+        this.rehash(this.l, false, false);  // the new function moves the keys anywhere, not within blocks
     }
 }
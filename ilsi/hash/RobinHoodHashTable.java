@@ -0,0 +1,536 @@
+package ilsi.hash;
+
+import java.util.AbstractMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The classe RobinHoodHashTable represent a hash table with Open Addressing and Robin Hood hashing.
+ *
+ * The probing method is linear probing : the slots of a probe sequence are contiguous in memory.
+ * Each slot stores the probe distance of its entry (the distance to its home slot).
+ * On insertion, an entry that has travelled further than the entry of a slot takes the slot,
+ * and the displaced entry continues the probing ("take from the rich, give to the poor").
+ * This keeps the variance of the probe distances low, and a search can stop as soon as it meets
+ * an entry closer to its home than the searched key would be.
+ * Deletion shifts the following entries back by one slot, so no tombstones are needed.
+ *
+ * The keys, values, hashes and distances are stored in parallel arrays (no Element objects),
+ * and the default max load factor is 0.9.
+ */
+public class RobinHoodHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The default max load factor of a Robin Hood table
+     */
+    public static final double DEFAULT_MAX_LOAD = 0.9;
+
+    /**
+     * The max load factor of this table
+     */
+    protected final double maxLoad;
+
+    /**
+     * The number of bits of an index : m = 2^bits
+     */
+    protected int bits;
+
+    protected Object[] keys;
+    protected Object[] vals;
+
+    /**
+     * The spread hash code of the key of each slot
+     */
+    protected int[] hashes;
+
+    /**
+     * The probe distance + 1 of the entry of each slot, 0 for an empty slot
+     */
+    protected int[] dists;
+
+    /**
+     * Constructs a new empty RobinHoodHashTable with a default initial capacity (16)
+     * and max load factor (0.9).
+     */
+    public RobinHoodHashTable() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty RobinHoodHashTable with the specified initial capacity
+     * (rounded up to a power of two) and max load factor (0.9).
+     * @param capacity initial capacity of the hash table
+     */
+    public RobinHoodHashTable(int capacity) {
+        this(capacity, DEFAULT_MAX_LOAD);
+    }
+
+    /**
+     * Constructs a new empty RobinHoodHashTable with the specified initial capacity
+     * (rounded up to a power of two) and max load factor.
+     * @param capacity initial capacity of the hash table
+     * @param maxLoad the max load factor, in ]0, 1[
+     */
+    public RobinHoodHashTable(int capacity, double maxLoad) {
+        this(capacity, maxLoad, HashStrategies.FIBONACCI);
+    }
+
+    /**
+     * Constructs a new empty RobinHoodHashTable with the specified initial capacity
+     * (rounded up to a power of two), max load factor and hash function.
+     * @param capacity initial capacity of the hash table
+     * @param maxLoad the max load factor, in ]0, 1[
+     * @param hashStrategy the hash function of the keys
+     */
+    public RobinHoodHashTable(int capacity, double maxLoad, HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("Illegal max load factor: " + maxLoad);
+        }
+        this.maxLoad = maxLoad;
+        this.allocate(Integer.numberOfTrailingZeros(tableSizeFor(Math.max(2, capacity))));
+        this.minCapacity = m;
+        this.initialCapacity = m;
+    }
+
+    /**
+     * Returns a new empty RobinHoodHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> RobinHoodHashTable<K, V> withExpectedSize(int expectedEntries) {
+        RobinHoodHashTable<K, V> t = new RobinHoodHashTable<K, V>(2);
+        t.ensureCapacity(expectedEntries);
+        return t;
+    }
+
+    /**
+     * Allocates empty arrays of 2^bits slots
+     */
+    private void allocate(int bits) {
+        this.bits = bits;
+        this.m = 1 << bits;
+        this.keys = new Object[m];
+        this.vals = new Object[m];
+        this.hashes = new int[m];
+        this.dists = new int[m];
+    }
+
+    /**
+     * Spreads the hash code of a key with the hash strategy (Fibonacci hashing by default)
+     * so that its high bits are well distributed
+     */
+    private int spread(Object key) {
+        return hashStrategy.hash(key.hashCode());
+    }
+
+    /**
+     * Returns the home slot of a spread hash code : its high bits
+     */
+    private int home(int h) {
+        return h >>> (32 - bits);
+    }
+
+    /**
+     * The operations of this table are recorded in stats
+     */
+    @Override
+    protected boolean isInstrumented() {
+        return true;
+    }
+
+    /**
+     * Hashes a key to its home slot
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return home(spread(key));
+    }
+
+    /**
+     * Returns the index of the slot containing key, or -1 if the key is not in the table
+     */
+    private int indexOf(Object key) {
+        int h = spread(key);
+        int mask = m - 1;
+        int index = home(h);
+        for (int d = 1; ; d++) {
+            int di = dists[index];
+            // an empty slot, or an entry closer to its home than we are : the key is not here
+            if (di < d || (hashes[index] == h && keys[index].equals(key))) {
+                if (HashTableStats.ENABLED) stats.recordProbe(d);
+                return (di < d) ? -1 : index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    @Override
+    public V search(K key) {
+        if (!HashTableStats.ENABLED) return get(key);
+        long start = System.nanoTime();
+        V value = get(key);
+        stats.recordSearch(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * The search itself, search adds the latency statistics
+     */
+    private V get(K key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) vals[index];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * If the hash table previously contained a mapping for the key, the old value is replaced.
+     */
+    @Override
+    public V insert(K key, V value) {
+        if (!HashTableStats.ENABLED) return put(key, value);
+        long start = System.nanoTime();
+        V old = put(key, value);
+        stats.recordInsert(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The insertion itself, insert adds the latency statistics
+     */
+    private V put(K key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            V old = (V) vals[index];
+            vals[index] = value;
+            return old;
+        }
+
+        if (n + 1 > maxLoad * m) {
+            resize(bits + 1);
+        }
+        place(key, value, spread(key));
+        n++;
+        return null;
+    }
+
+    /**
+     * Places a new entry (its key is not in the table) with Robin Hood displacement
+     */
+    private void place(Object key, Object value, int h) {
+        int mask = m - 1;
+        int index = home(h);
+        int d = 1;
+        while (true) {
+            int di = dists[index];
+            if (di == 0) {
+                keys[index] = key;
+                vals[index] = value;
+                hashes[index] = h;
+                dists[index] = d;
+                return;
+            }
+            if (di < d) {
+                // the entry of this slot is richer (closer to home) : swap and carry it on
+                Object k = keys[index];
+                Object v = vals[index];
+                int hh = hashes[index];
+                keys[index] = key;
+                vals[index] = value;
+                hashes[index] = h;
+                dists[index] = d;
+                key = k;
+                value = v;
+                h = hh;
+                d = di;
+            }
+            index = (index + 1) & mask;
+            d++;
+        }
+    }
+
+    /**
+     * Rebuilds the table with 2^newBits slots
+     */
+    protected void resize(int newBits) {
+        long start = HashTableStats.ENABLED ? System.nanoTime() : 0L;
+        Object[] oldKeys = keys;
+        Object[] oldVals = vals;
+        int[] oldHashes = hashes;
+        int[] oldDists = dists;
+
+        allocate(newBits);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDists[i] != 0) {
+                place(oldKeys[i], oldVals[i], oldHashes[i]);
+            }
+        }
+        if (HashTableStats.ENABLED) stats.recordResize(oldKeys.length, System.nanoTime() - start);
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        presize(expectedEntries);
+        reserveCapacity(capacityFor(expectedEntries, maxLoad));
+    }
+
+    /**
+     * Makes room for expectedEntries mappings without raising minCapacity
+     */
+    @Override
+    protected void presize(int expectedEntries) {
+        int newBits = Integer.numberOfTrailingZeros(capacityFor(expectedEntries, maxLoad));
+        if (newBits > bits) resize(newBits);
+    }
+
+    /**
+     * The number of keys of a batch in searchAll
+     */
+    protected static final int BATCH = 16;
+
+    /**
+     * Searches the values associated with a batch of keys.
+     * Each group of BATCH keys is processed in passes : hash all the keys, then load the distance
+     * of all their home slots (independent memory loads the CPU can overlap), then finish the probes.
+     */
+    @Override
+    public V[] searchAll(K[] keys, V[] results) {
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("results is shorter than keys: " + results.length + " < " + keys.length);
+        }
+        int[] h = new int[BATCH];
+        int[] homeDist = new int[BATCH];
+        int mask = m - 1;
+        for (int start = 0; start < keys.length; start += BATCH) {
+            int count = Math.min(BATCH, keys.length - start);
+            for (int j = 0; j < count; j++) {
+                h[j] = spread(keys[start + j]);
+            }
+            for (int j = 0; j < count; j++) {
+                homeDist[j] = dists[home(h[j])];
+            }
+            for (int j = 0; j < count; j++) {
+                Object key = keys[start + j];
+                V found = null;
+                if (homeDist[j] != 0) {
+                    int index = home(h[j]);
+                    for (int d = 1; dists[index] >= d; d++) {
+                        if (hashes[index] == h[j] && this.keys[index].equals(key)) {
+                            found = (V) vals[index];
+                            break;
+                        }
+                        index = (index + 1) & mask;
+                    }
+                }
+                results[start + j] = found;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * The following entries of the cluster are shifted back by one slot (backward shift deletion).
+     */
+    @Override
+    public V delete(K key) {
+        if (!HashTableStats.ENABLED) return remove(key);
+        long start = System.nanoTime();
+        V old = remove(key);
+        stats.recordDelete(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The deletion itself, delete adds the latency statistics
+     */
+    private V remove(K key) {
+        int index = indexOf(key);
+        if (index < 0) return null;
+
+        V old = (V) vals[index];
+        int mask = m - 1;
+        int next = (index + 1) & mask;
+        // shift back every entry that is not in its home slot
+        while (dists[next] > 1) {
+            keys[index] = keys[next];
+            vals[index] = vals[next];
+            hashes[index] = hashes[next];
+            dists[index] = dists[next] - 1;
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keys[index] = null;
+        vals[index] = null;
+        hashes[index] = 0;
+        dists[index] = 0;
+        n--;
+        if (shouldShrink()) {
+            // halve the table when it becomes too sparse
+            resize(bits - 1);
+        }
+        return old;
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        for (int i = 0; i < m; i++) {
+            if (dists[i] != 0) list.add((K) keys[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        for (int i = 0; i < m; i++) {
+            if (dists[i] != 0) list.add((V) vals[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, value) of this hash table, in the order of the slots.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < m; i++) {
+            if (dists[i] != 0) action.accept((K) keys[i], (V) vals[i]);
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries of this hash table, it splits the slot arrays.
+     * The entries are immutable copies, there is no entry object in the table.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(0, m);
+    }
+
+    /**
+     * A cursor walking the slots in the order of the arrays
+     */
+    private class SlotCursor implements Cursor<K, V> {
+        private int index = -1;
+
+        public boolean advance() {
+            while (++index < m) {
+                if (dists[index] != 0) return true;
+            }
+            return false;
+        }
+
+        public K key() {
+            return (K) keys[index];
+        }
+
+        public V value() {
+            return (V) vals[index];
+        }
+
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /**
+     * A spliterator over the entries of the slots [index, fence)
+     */
+    private class EntrySpliterator extends SlotSpliterator {
+
+        EntrySpliterator(int origin, int fence) {
+            super(origin, fence);
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new EntrySpliterator(origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            while (index < fence) {
+                int i = index++;
+                if (dists[i] != 0) {
+                    action.accept(new AbstractMap.SimpleImmutableEntry<K, V>((K) keys[i], (V) vals[i]));
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < m; i++) {
+            keys[i] = null;
+            vals[i] = null;
+            hashes[i] = 0;
+            dists[i] = 0;
+        }
+        n = 0;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table,
+     * with release the table returns to its initial capacity.
+     */
+    @Override
+    public void clear(boolean release) {
+        if (release) minCapacity = initialCapacity;
+        if (!release || m == initialCapacity) {
+            clear();
+            return;
+        }
+        allocate(Integer.numberOfTrailingZeros(initialCapacity));
+        n = 0;
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds its entries below maxLoad (at least 2 slots)
+     */
+    @Override
+    public void trimToSize() {
+        int newBits = Integer.numberOfTrailingZeros(Math.max(2, capacityFor(n, maxLoad)));
+        if (newBits < bits) resize(newBits);
+    }
+
+    /**
+     * Returns an estimate of the memory of the four slot arrays
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long arrays = MemoryFootprint.of(keys) + MemoryFootprint.of(vals)
+                + MemoryFootprint.of(hashes) + MemoryFootprint.of(dists);
+        return new MemoryFootprint(n, m, arrays, 0, 0);
+    }
+}
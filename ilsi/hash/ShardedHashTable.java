@@ -0,0 +1,586 @@
+package ilsi.hash;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The classe ShardedHashTable represent a thread-safe hash table made of independent sub-tables,
+ * the shards : each key is routed to one shard, and each shard has its own lock.
+ *
+ * A shard is an ordinary HashTable (StaticHashTable by default, any subclass from the factory) :
+ * it resizes alone, so a resize rehashes one shard and blocks only the keys of that shard,
+ * and the whole table can hold more than 2^31 mappings (mappingCount() is a long) even though
+ * each shard is limited to 2^30 slots.
+ *
+ * The shard of a key comes from a 64 bits hash of its hashCode, independent from the hash function
+ * of the shards (so the keys of a shard are still spread over all its slots) :
+ * - PREFIX : the top bits of the hash, the number of shards is a power of two. Doubling the shards
+ *   splits shard i into shards 2i and 2i+1.
+ * - JUMP : jump consistent hashing (Lamping and Veach), for any number of shards. Going from N to
+ *   N+1 shards moves only 1/(N+1) of the keys, all of them to the new shard.
+ * reshard(count) changes the number of shards and moves the keys whose shard changed.
+ *
+ * Every operation locks the shard of its key, so compute and merge are atomic. withShard(i, action)
+ * runs an action on one shard under its lock. The scans (forEach, keys, values) lock the shards one
+ * after the other : they are not a snapshot of the whole table. The cursor and the spliterator take
+ * no lock, the table must not be modified while they are used.
+ *
+ * The shards are local tables of this JVM. A shard in another process would be a HashTable
+ * subclass forwarding the operations to it, it is not provided here.
+ *
+ * Null keys are not supported.
+ */
+public class ShardedHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The default number of shards
+     */
+    public static final int DEFAULT_SHARDS = 16;
+
+    /**
+     * The routing of the keys to the shards
+     */
+    public enum Routing {
+        PREFIX, JUMP
+    }
+
+    /**
+     * A shard : its table, guarded by the shard itself (a lock)
+     */
+    static final class Shard<K, V> extends ReentrantLock {
+        final HashTable<K, V> table;
+
+        Shard(HashTable<K, V> table) {
+            this.table = table;
+        }
+    }
+
+    private final Routing routing;
+    private final Supplier<? extends HashTable<K, V>> factory;
+
+    /**
+     * The shards, replaced by reshard
+     */
+    private volatile Shard<K, V>[] shards;
+
+    /**
+     * Constructs a new empty ShardedHashTable of DEFAULT_SHARDS StaticHashTable, with jump consistent hashing
+     */
+    public ShardedHashTable() {
+        this(DEFAULT_SHARDS);
+    }
+
+    /**
+     * Constructs a new empty ShardedHashTable of StaticHashTable, with jump consistent hashing
+     * @param shards the number of shards
+     */
+    public ShardedHashTable(int shards) {
+        this(shards, Routing.JUMP, StaticHashTable::new);
+    }
+
+    /**
+     * Constructs a new empty ShardedHashTable
+     * @param shards the number of shards, a power of two for PREFIX
+     * @param routing the routing of the keys to the shards
+     * @param factory creates an empty table for each shard
+     */
+    public ShardedHashTable(int shards, Routing routing, Supplier<? extends HashTable<K, V>> factory) {
+        super(0, false);
+        this.routing = Objects.requireNonNull(routing, "routing");
+        this.factory = Objects.requireNonNull(factory, "factory");
+        checkShards(shards);
+        this.shards = this.newShards(shards);
+        this.m = shards;
+    }
+
+    private void checkShards(int count) {
+        if (count < 1) throw new IllegalArgumentException("Illegal number of shards: " + count);
+        if (routing == Routing.PREFIX && Integer.bitCount(count) != 1) {
+            throw new IllegalArgumentException("The number of shards of PREFIX must be a power of two: " + count);
+        }
+    }
+
+    /**
+     * Returns count new empty shards
+     */
+    private Shard<K, V>[] newShards(int count) {
+        Shard<K, V>[] a = (Shard<K, V>[]) new Shard[count];
+        for (int i = 0; i < count; i++) {
+            a[i] = new Shard<K, V>(factory.get());
+        }
+        return a;
+    }
+
+    /**
+     * Returns the index among count shards where the shard i of from shards is kept by reshard, or -1 if it is dropped.
+     * PREFIX keeps shard i where most of its keys go : at i * count / from when the shards grow
+     * (its keys then go to the shards [i * count / from, (i + 1) * count / from)).
+     * JUMP keeps the first shards, the keys of a kept shard either stay or move to a new shard.
+     */
+    private int keptIndex(int i, int from, int count) {
+        if (routing == Routing.PREFIX) {
+            if (count >= from) return i * (count / from);
+            return (i % (from / count) == 0) ? i / (from / count) : -1;
+        }
+        return (i < count) ? i : -1;
+    }
+
+    /**
+     * Mixes the hash code of a key to 64 bits (the finalizer of SplitMix64)
+     */
+    private static long mix(int h) {
+        long x = (h & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Returns the bucket of key in [0, buckets) with the jump consistent hash of Lamping and Veach
+     */
+    private static int jump(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    /**
+     * Returns the shard of a key among count shards
+     */
+    private int route(Object key, int count) {
+        if (count == 1) return 0;
+        long x = mix(key.hashCode());
+        if (routing == Routing.PREFIX) return (int) (x >>> (64 - Integer.numberOfTrailingZeros(count)));
+        return jump(x, count);
+    }
+
+    /**
+     * Hashes a key to the index of its shard
+     * @param key the key to be hashed
+     * @return int - the index of the shard
+     */
+    @Override
+    protected int hash(K key) {
+        return route(key, shards.length);
+    }
+
+    /**
+     * Returns the index of the shard of key
+     */
+    public int shardOf(K key) {
+        return hash(key);
+    }
+
+    /**
+     * Returns the number of shards
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard of key, locked by the current thread
+     */
+    private Shard<K, V> lock(K key) {
+        Objects.requireNonNull(key, "key");
+        for (;;) {
+            Shard<K, V>[] a = shards;
+            Shard<K, V> s = a[route(key, a.length)];
+            s.lock();
+            if (a == shards) return s;
+            s.unlock();  // resharded meanwhile : route again
+        }
+    }
+
+    /**
+     * Runs action on the table of a shard, under the lock of the shard.
+     * For example withShard(i, HashTable::size) or withShard(i, t -> { t.trimToSize(); return null; }).
+     * The action must not use the other shards.
+     * @param index the index of the shard, in [0, shardCount())
+     * @param action the action on the table of the shard
+     * @return the result of action
+     */
+    public <R> R withShard(int index, Function<? super HashTable<K, V>, ? extends R> action) {
+        for (;;) {
+            Shard<K, V>[] a = shards;
+            Shard<K, V> s = a[Objects.checkIndex(index, a.length)];
+            s.lock();
+            try {
+                if (a == shards) return action.apply(s.table);
+            } finally {
+                s.unlock();
+            }
+        }
+    }
+
+    /**
+     * Runs action on the table of each shard in turn, under the lock of the shard
+     */
+    private void eachShard(Consumer<? super HashTable<K, V>> action) {
+        for (Shard<K, V> s : shards) {
+            s.lock();
+            try {
+                action.accept(s.table);
+            } finally {
+                s.unlock();
+            }
+        }
+    }
+
+    /**
+     * Changes the number of shards, and moves the mappings whose shard changed.
+     * All the shards are locked meanwhile. The shards are kept where they receive most of their keys
+     * (see keptIndex), the mappings of the dropped shards are moved to the remaining ones.
+     * @param count the new number of shards, a power of two for PREFIX
+     */
+    public synchronized void reshard(int count) {
+        checkShards(count);
+        Shard<K, V>[] old = shards;
+        if (count == old.length) return;
+        for (Shard<K, V> s : old) s.lock();
+        try {
+            Shard<K, V>[] next = (Shard<K, V>[]) new Shard[count];
+            int[] kept = new int[old.length];
+            for (int i = 0; i < old.length; i++) {
+                kept[i] = keptIndex(i, old.length, count);
+                if (kept[i] >= 0) next[kept[i]] = old[i];
+            }
+            for (int j = 0; j < count; j++) {
+                if (next[j] == null) next[j] = new Shard<K, V>(factory.get());
+            }
+            for (int i = 0; i < old.length; i++) {
+                final int at = kept[i];
+                HashTable<K, V> table = old[i].table;
+                List<K> moved = new LinkedList<K>();
+                table.forEach((key, value) -> {
+                    int j = route(key, count);
+                    if (j != at) {
+                        next[j].table.insert(key, value);
+                        moved.add(key);
+                    }
+                });
+                if (at >= 0) {
+                    for (K key : moved) table.delete(key);
+                }
+            }
+            this.m = count;
+            this.shards = next;
+        } finally {
+            for (Shard<K, V> s : old) s.unlock();
+        }
+    }
+
+    @Override
+    public V insert(K key, V value) {
+        Shard<K, V> s = lock(key);
+        try {
+            return s.table.insert(key, value);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public V search(K key) {
+        Shard<K, V> s = lock(key);
+        try {
+            return s.table.search(key);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public V delete(K key) {
+        Shard<K, V> s = lock(key);
+        try {
+            return s.table.delete(key);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    /**
+     * Associates value with key only if the key has no mapping, atomically
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Shard<K, V> s = lock(key);
+        try {
+            return s.table.putIfAbsent(key, value);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    /**
+     * Computes the new value of key, atomically : the shard of key is locked while remapping runs
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Shard<K, V> s = lock(key);
+        try {
+            return s.table.compute(key, remapping);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    /**
+     * Merges value with the current value of key, atomically : the shard of key is locked while remapping runs
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        Shard<K, V> s = lock(key);
+        try {
+            return s.table.merge(key, value, remapping);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    /**
+     * Makes room for expectedEntries mappings : each shard is sized for its share of them
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        int count = shards.length;
+        int share = (int) ((expectedEntries + (long) count - 1) / count);
+        eachShard(t -> t.ensureCapacity(share));
+    }
+
+    /**
+     * Shrinks each shard to the smallest capacity that holds its mappings
+     */
+    @Override
+    public void trimToSize() {
+        eachShard(HashTable::trimToSize);
+    }
+
+    /**
+     * Returns the number of key-value mappings, which may exceed Integer.MAX_VALUE
+     */
+    public long mappingCount() {
+        long count = 0;
+        for (Shard<K, V> s : shards) count += s.table.size();
+        return count;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this hash table, or Integer.MAX_VALUE if there are more.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, mappingCount());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Shard<K, V> s : shards) {
+            if (!s.table.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table, shard by shard.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        forEach((key, value) -> list.add(key));
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table, shard by shard.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        forEach((key, value) -> list.add(value));
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, value), shard by shard under the lock of each shard.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        eachShard(t -> t.forEach(action));
+    }
+
+    /**
+     * Returns a cursor over the (key, value) of the shards one after the other, without locking.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new ShardCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries : it splits the range of shards, then the spliterator of the last shard.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        Shard<K, V>[] a = shards;
+        return new ShardSpliterator(a, 0, a.length);
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table, shard by shard.
+     */
+    @Override
+    public void clear() {
+        clear(false);
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table, shard by shard,
+     * with release each shard returns to its initial capacity.
+     */
+    @Override
+    public void clear(boolean release) {
+        eachShard(t -> t.clear(release));
+    }
+
+    /**
+     * Returns the sum of the tombstones of the shards
+     */
+    @Override
+    protected int tombstoneCount() {
+        int count = 0;
+        for (Shard<K, V> s : shards) count += s.table.tombstoneCount();
+        return count;
+    }
+
+    /**
+     * Returns the sum of the chain length histograms of the shards, or null if they have no chains
+     */
+    @Override
+    protected long[] chainLengthHistogram() {
+        long[] histogram = null;
+        for (Shard<K, V> s : shards) {
+            long[] h = s.table.chainLengthHistogram();
+            if (h == null) continue;
+            if (histogram == null) histogram = new long[h.length];
+            for (int i = 0; i < h.length; i++) histogram[i] += h[i];
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the sum of the footprints of the shards, with the shard array and the shard locks
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        Shard<K, V>[] a = shards;
+        long capacity = 0;
+        long arrays = MemoryFootprint.of(a);
+        long entries = 0;
+        long offHeap = 0;
+        // a shard : its table reference and the synchronizer of its lock
+        long shard = MemoryFootprint.object(2 * MemoryFootprint.REFERENCE) + MemoryFootprint.object(4 + 3 * MemoryFootprint.REFERENCE);
+        for (Shard<K, V> s : a) {
+            MemoryFootprint f = s.table.memoryFootprint();
+            capacity += f.capacity();
+            arrays += f.arrayBytes();
+            entries += f.entryBytes() + shard;
+            offHeap += f.offHeapBytes();
+        }
+        return new MemoryFootprint(size(), (int) Math.min(Integer.MAX_VALUE, capacity), arrays, entries, offHeap);
+    }
+
+    /**
+     * A cursor walking the cursors of the shards in turn
+     */
+    private class ShardCursor implements Cursor<K, V> {
+        private final Shard<K, V>[] a = shards;
+        private int index = -1;
+        private Cursor<K, V> current;
+
+        public boolean advance() {
+            for (;;) {
+                if (current != null && current.advance()) return true;
+                if (++index >= a.length) {
+                    current = null;
+                    return false;
+                }
+                current = a[index].table.cursor();
+            }
+        }
+
+        public K key() {
+            return current.key();
+        }
+
+        public V value() {
+            return current.value();
+        }
+
+        public void reset() {
+            index = -1;
+            current = null;
+        }
+    }
+
+    /**
+     * A spliterator over the shards [index, fence) : it gives away the second half of its shards,
+     * and when no shard is left it splits the spliterator of its current shard
+     */
+    private final class ShardSpliterator implements Spliterator<Map.Entry<K, V>> {
+        private final Shard<K, V>[] a;
+        private int index;
+        private int fence;
+        private Spliterator<Map.Entry<K, V>> current;
+
+        ShardSpliterator(Shard<K, V>[] a, int origin, int fence) {
+            this.a = a;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            for (;;) {
+                if (current != null && current.tryAdvance(action)) return true;
+                if (index >= fence) return false;
+                current = a[index++].table.spliterator();
+            }
+        }
+
+        public Spliterator<Map.Entry<K, V>> trySplit() {
+            if (current == null && index < fence) current = a[index++].table.spliterator();
+            if (index < fence) {
+                int mid = (index + fence) >>> 1;
+                ShardSpliterator suffix = new ShardSpliterator(a, mid, fence);
+                fence = mid;
+                return suffix;
+            }
+            return (current == null) ? null : current.trySplit();
+        }
+
+        public long estimateSize() {
+            long size = (current == null) ? 0 : current.estimateSize();
+            for (int i = index; i < fence; i++) size += a[i].table.size();
+            return size;
+        }
+
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ilsi.hash;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The classe SpillPartitions represent the partitions of a Grace hash join or aggregation
+ * spilled to local disk (see HashJoin and HashAggregate) : one temporary file per partition,
+ * where the records are appended with a FixedWidthCodec and read back sequentially.
+ *
+ * A record goes to the partition given by the top FANOUT_BITS bits of a hash of its key,
+ * with a different hash function at each level of recursive partitioning (a partition that is
+ * still too large is partitioned again, its records then spread over new partitions).
+ * Each partition has a write buffer of about BUFFER bytes, holding whole records.
+ *
+ * @param <T> the type of the records
+ */
+final class SpillPartitions<T> implements Closeable {
+
+    /**
+     * The number of bits of a partition number : FANOUT partitions per level
+     */
+    static final int FANOUT_BITS = 4;
+
+    static final int FANOUT = 1 << FANOUT_BITS;
+
+    /**
+     * The number of levels of partitioning : a partition of the last level is joined in memory
+     * whatever its size (all its keys may be equal)
+     */
+    static final int MAX_LEVELS = 4;
+
+    /**
+     * The size of the write and read buffers of a partition
+     */
+    static final int BUFFER = 1 << 16;
+
+    private static final HashStrategy[] LEVEL_HASH = new HashStrategy[MAX_LEVELS + 1];
+
+    static {
+        for (int level = 0; level <= MAX_LEVELS; level++) {
+            LEVEL_HASH[level] = HashStrategies.wyMix(0x5EED0000L + level);
+        }
+    }
+
+    private final FixedWidthCodec<T> codec;
+    private final Path[] files;
+    private final FileChannel[] channels;
+    private final byte[][] buffers;
+    private final int[] positions;
+    private final long[] counts;
+
+    /**
+     * The size of a buffer : a whole number of records
+     */
+    private final int bufferSize;
+
+    /**
+     * Creates FANOUT empty partition files in dir
+     * @param dir the directory of the temporary files
+     * @param codec the encoding of the records
+     * @throws IOException if a file cannot be created
+     */
+    SpillPartitions(Path dir, FixedWidthCodec<T> codec) throws IOException {
+        this.codec = codec;
+        this.bufferSize = Math.max(1, BUFFER / codec.width()) * codec.width();
+        this.files = new Path[FANOUT];
+        this.channels = new FileChannel[FANOUT];
+        this.buffers = new byte[FANOUT][];
+        this.positions = new int[FANOUT];
+        this.counts = new long[FANOUT];
+        try {
+            for (int p = 0; p < FANOUT; p++) {
+                files[p] = Files.createTempFile(dir, "ilsi-spill-", ".part");
+                channels[p] = FileChannel.open(files[p], StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the partition of a key at a level of partitioning
+     */
+    static int partitionOf(Object key, int level) {
+        return LEVEL_HASH[level].hash(key.hashCode()) >>> (32 - FANOUT_BITS);
+    }
+
+    /**
+     * The work on one partition, returning a count
+     */
+    interface PartitionTask {
+        long run(int partition) throws IOException;
+    }
+
+    /**
+     * Runs task on the FANOUT partitions and returns the sum of their counts.
+     * With parallelism above 1, the partitions are processed concurrently on a ForkJoinPool
+     * of parallelism workers.
+     */
+    static long sum(int parallelism, PartitionTask task) throws IOException {
+        long total = 0;
+        if (parallelism <= 1) {
+            for (int p = 0; p < FANOUT; p++) total += task.run(p);
+            return total;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Long>> tasks = new ArrayList<ForkJoinTask<Long>>(FANOUT);
+            for (int p = 0; p < FANOUT; p++) {
+                final int partition = p;
+                tasks.add(pool.submit(() -> {
+                    try {
+                        return task.run(partition);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (ForkJoinTask<Long> t : tasks) total += t.join();
+            return total;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Appends a record to a partition
+     */
+    void add(int partition, T record) throws IOException {
+        byte[] buffer = buffers[partition];
+        if (buffer == null) buffer = buffers[partition] = new byte[bufferSize];
+        codec.write(MemorySegment.ofArray(buffer), positions[partition], record);
+        positions[partition] += codec.width();
+        counts[partition]++;
+        if (positions[partition] == bufferSize) flush(partition);
+    }
+
+    /**
+     * Returns the number of records of a partition
+     */
+    long count(int partition) {
+        return counts[partition];
+    }
+
+    private void flush(int partition) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffers[partition], 0, positions[partition]);
+        while (bytes.hasRemaining()) channels[partition].write(bytes);
+        positions[partition] = 0;
+    }
+
+    /**
+     * Returns an iterator over the records of a partition, in the order they were added.
+     * No record can be added to the partition anymore. The buffer of the partition is reused for reading.
+     * @throws UncheckedIOException from the iterator if the file cannot be read
+     */
+    Iterator<T> read(int partition) throws IOException {
+        if (buffers[partition] != null) flush(partition);
+        else buffers[partition] = new byte[bufferSize];
+        return new RecordIterator(partition);
+    }
+
+    /**
+     * Closes and deletes the file of a partition, once it is read
+     */
+    void delete(int partition) throws IOException {
+        buffers[partition] = null;
+        if (channels[partition] != null) {
+            channels[partition].close();
+            channels[partition] = null;
+        }
+        if (files[partition] != null) {
+            Files.deleteIfExists(files[partition]);
+            files[partition] = null;
+        }
+    }
+
+    /**
+     * Deletes all the partition files
+     */
+    public void close() throws IOException {
+        IOException failure = null;
+        for (int p = 0; p < FANOUT; p++) {
+            try {
+                delete(p);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Reads the records of a partition file buffer by buffer
+     */
+    private final class RecordIterator implements Iterator<T> {
+        private final int partition;
+        private final MemorySegment segment;
+        private long offset;      // the position of the next read in the file
+        private int position;     // the next record in the buffer
+        private int limit;        // the end of the records in the buffer
+
+        RecordIterator(int partition) {
+            this.partition = partition;
+            this.segment = MemorySegment.ofArray(buffers[partition]);
+        }
+
+        public boolean hasNext() {
+            if (position < limit) return true;
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(buffers[partition]);
+                int read;
+                while (bytes.hasRemaining() && (read = channels[partition].read(bytes, offset)) > 0) {
+                    offset += read;
+                }
+                position = 0;
+                limit = bytes.position();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return position < limit;
+        }
+
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T record = codec.read(segment, position);
+            position += codec.width();
+            return record;
+        }
+    }
+}
@@ -1,18 +1,125 @@
 package ilsi.hash;
 
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * The classe StaticHashTable represent a hash table with static hashing.
- * The hashing method used is "multiply-shift"
+ * The hashing method used is "multiply-shift" (HashStrategies.MULTIPLY_SHIFT with the constant a),
+ * another HashStrategy can be given to the constructor.
+ *
+ * The chains are monitored : a lookup that walks more than TREEIFY_THRESHOLD elements indexes
+ * its bucket with a balanced tree when the keys are Comparable (as java.util.HashMap does),
+ * so that a hash-flooding attack costs O(log n) per lookup instead of O(n).
+ * The chains stay the reference of the content, the trees only index them.
+ *
+ * The index of a key is the top l bits of its hash : the keys of the bucket i of a table of 2^l
+ * buckets go to the buckets 2i and 2i+1 of a table of 2^(l+1) buckets. Disjoint ranges of
+ * buckets are thus filled by disjoint ranges of old buckets (or of hash prefixes), and a large
+ * rehash or insertAllParallel runs on the ForkJoinPool workers without any lock.
  */
 public class StaticHashTable<K, V> extends HashTable<K, V> {
 
+    /**
+     * The multiply-shift constant of the first version of this class. The hash is now computed by hashStrategy
+     * (HashStrategies.MULTIPLY_SHIFT uses the same constant) : this field is not read anymore,
+     * it is kept only for the source compatibility of the subclasses.
+     * @deprecated use hashStrategy
+     */
+    @Deprecated
     protected long a = 6180339887L;
     protected int w = 32;
     protected int l;
 
+    /**
+     * Number of old buckets migrated by each operation during an incremental rehash
+     */
+    protected static final int REHASH_STEP = 2;
+
+    /**
+     * The number of keys of a batch in searchAll : their hashes and bucket heads are loaded
+     * together before any chain is walked
+     */
+    protected static final int BATCH = 16;
+
+    /**
+     * A rehash of at least this number of buckets, or an insertAllParallel of at least this number
+     * of keys, is split between the ForkJoinPool workers
+     */
+    protected static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * When true, the table grows by incremental rehashing : the old and the new bucket arrays
+     * are kept together and each operation migrates a few buckets, instead of rehashing
+     * every element at once inside insert.
+     */
+    protected boolean incremental;
+
+    /**
+     * The bucket array being migrated during an incremental rehash, null otherwise
+     */
+    protected Element<K,V>[] oldTable;
+
+    /**
+     * The number of bits (l) of the old bucket array
+     */
+    protected int oldL;
+
+    /**
+     * The index of the next old bucket to migrate
+     */
+    protected int rehashIndex;
+
+    /**
+     * False when the current migration changes the hash function (it cannot run in parallel)
+     */
+    private boolean parallelSafe = true;
+
+    /**
+     * A lookup walking more than this number of elements of a chain reports it with onLongChain
+     */
+    protected static final int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * The order of the keys of a tree : by hash code, then by compareTo
+     */
+    private static final Comparator<Object> HASH_ORDER = new Comparator<Object>() {
+        public int compare(Object x, Object y) {
+            int hx = x.hashCode();
+            int hy = y.hashCode();
+            if (hx != hy) return hx < hy ? -1 : 1;
+            return ((Comparable<Object>) x).compareTo(y);
+        }
+    };
+
+    /**
+     * The tree index of each long chain of table (null while no chain has been treeified)
+     */
+    protected TreeBin<K, Element<K,V>>[] trees;
+
+    /**
+     * The tree index of each long chain of oldTable during an incremental rehash
+     */
+    protected TreeBin<K, Element<K,V>>[] oldTrees;
+
+    /**
+     * The bucket array and index of the last long chain met by a lookup, reported once
+     * the operation is finished (the report may rehash the table)
+     */
+    private Element<K,V>[] longBuckets;
+    private int longIndex;
+
     /**
      * Constructs a new empty StaticHashtable with a default initial capacity (16)
      * and load factor (0.75).
@@ -25,13 +132,44 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
 
     /**
      * Constructs a new empty StaticHashtable with the specified initial capacity
-     * and default load factor (0.75).
+     * (rounded up to a power of two) and default load factor (0.75).
      * @param capacity initial capacity of the hash table
      */
     public StaticHashTable(int capacity) {
-        super(  1  <<  ( (int) (Math.log(capacity)/Math.log(2)) )  );
-        this.l = (int) (Math.log(capacity)/Math.log(2));
-        this.m = 1 << l;
+        this(capacity, HashStrategies.MULTIPLY_SHIFT);
+    }
+
+    /**
+     * Constructs a new empty StaticHashtable with the specified initial capacity
+     * (rounded up to a power of two) and hash function.
+     * @param capacity initial capacity of the hash table
+     * @param hashStrategy the hash function of the keys
+     */
+    public StaticHashTable(int capacity, HashStrategy hashStrategy) {
+        super(tableSizeFor(Math.max(2, capacity)), hashStrategy);
+        this.l = Integer.numberOfTrailingZeros(this.m);  // m = 2^l
+    }
+
+    /**
+     * Constructs a new empty StaticHashtable with the specified initial capacity
+     * and default load factor (0.75).
+     * @param capacity initial capacity of the hash table
+     * @param incremental true to grow by incremental rehashing (see {@link #incremental})
+     */
+    public StaticHashTable(int capacity, boolean incremental) {
+        this(capacity);
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns a new empty StaticHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> StaticHashTable<K, V> withExpectedSize(int expectedEntries) {
+        StaticHashTable<K, V> t = new StaticHashTable<K, V>(2);
+        t.ensureCapacity(expectedEntries);
+        return t;
     }
 
     /**
@@ -40,11 +178,28 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
      * @return int - the hash value
      */
     protected int hash (K key){
+        return this.hash(key, this.l);
+    }
+
+    /**
+     * Hashes a key to an index of a table of 2^bits slots
+     * @param key the key to be hashed
+     * @param bits the number of bits of the index
+     * @return int - the hash value
+     */
+    protected int hash (K key, int bits){
         int k = 0;
         if (key != null) k = key.hashCode();
 
-        long ka = ((long) a * (long) k) & 0xFFFFFFFFL;  // this is  k*a mod 2^w
-        return (int) (ka >>> (w - l));  // this is to take only l bits from ka (from the left - msb)
+        int ka = this.hashStrategy.hash(k);  // by default this is  k*a mod 2^w
+        return ka >>> (w - bits);  // this is to take only l bits from ka (from the left - msb)
+    }
+
+    /**
+     * Returns true if an incremental rehash is in progress
+     */
+    public boolean isRehashing() {
+        return this.oldTable != null;
     }
 
     /**
@@ -52,28 +207,399 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
      */
     private void resize() {
         // Double the capacity
-        this.l++;
-        int oldM = this.m;
+        this.rehash(this.l + 1, this.incremental);
+    }
+
+    /**
+     * Moves the elements to a new bucket array of 2^newBits buckets
+     * @param newBits the number of bits of the new array
+     * @param allowIncremental true to only start an incremental migration, false to migrate everything now
+     */
+    protected void rehash(int newBits, boolean allowIncremental) {
+        this.rehash(newBits, allowIncremental, true);
+    }
+
+    /**
+     * Moves the elements to a new bucket array of 2^newBits buckets
+     * @param newBits the number of bits of the new array
+     * @param allowIncremental true to only start an incremental migration, false to migrate everything now
+     * @param parallelSafe false when the hash function changed : the blocks of old buckets no longer
+     *                     go to disjoint ranges of new buckets, the migration must be sequential
+     */
+    protected void rehash(int newBits, boolean allowIncremental, boolean parallelSafe) {
+        long start = HashTableStats.ENABLED ? System.nanoTime() : 0L;
+        // a rehash requested before the end of the previous migration finishes it first
+        if (this.oldTable != null) this.completeRehash();
+
+        Element<K,V>[] old = this.table;
+        int oldBits = this.l;
+
+        this.l = newBits;
         this.m = 1 << l;
-        
-        // Save old table
-        Element<K,V>[] oldTable = this.table;
-        
-        // Create new table with doubled capacity
         this.table = (Element<K,V>[]) new Element[this.m];
-        for (int i = 0; i < this.m; i++) {
-            this.table[i] = null;
+
+        this.oldTable = old;
+        this.oldL = oldBits;
+        this.rehashIndex = 0;
+        this.parallelSafe = parallelSafe;
+        this.oldTrees = this.trees;
+        this.trees = null;
+
+        // Without incremental mode, the whole table is migrated now
+        if (!allowIncremental) this.completeRehash();
+        // an incremental rehash only counts the allocation, its steps are spread over the operations
+        if (HashTableStats.ENABLED) this.stats.recordResize(1 << oldBits, System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the number of bits of the smallest table that holds expectedEntries
+     * without exceeding MAX_LOAD
+     */
+    protected int bitsFor(int expectedEntries) {
+        return Math.max(this.l, Integer.numberOfTrailingZeros(capacityFor(expectedEntries, MAX_LOAD)));
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash (never incremental)
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        this.presize(expectedEntries);
+        this.reserveCapacity(capacityFor(expectedEntries, MAX_LOAD));
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash, without raising minCapacity
+     */
+    @Override
+    protected void presize(int expectedEntries) {
+        int bits = this.bitsFor(expectedEntries);
+        if (bits > this.l) this.rehash(bits, false);
+        else if (this.oldTable != null) this.completeRehash();
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds its elements below MAX_LOAD
+     * (at least 2 buckets), with a single rehash (never incremental)
+     */
+    @Override
+    public void trimToSize() {
+        int bits = Math.max(1, Integer.numberOfTrailingZeros(capacityFor(this.n, MAX_LOAD)));
+        if (bits < this.l) this.rehash(bits, false);
+        else this.completeRehash();
+    }
+
+    /**
+     * Migrates the elements of one old bucket into the new table.
+     * The elements are relinked, not copied : the migration allocates nothing
+     * (but the tree entries of a treeified new bucket).
+     * @param index the index of the old bucket
+     */
+    private void migrateBucket(int index) {
+        Element<K,V> p = this.oldTable[index];
+        while (p != null) {
+            Element<K,V> next = p.next;
+            this.link(this.hash(p.key), p);
+            p = next;
         }
-        
-        // Reset size and re-insert all elements
-        this.n = 0;
-        for (int i = 0; i < oldM; i++) {
-            Element<K,V> p = oldTable[i];
-            while (p != null) {
-                this.insert(p.key, p.value);
-                p = p.next;
+        this.oldTable[index] = null;
+        if (this.oldTrees != null) this.oldTrees[index] = null;
+    }
+
+    /**
+     * Performs one bounded step of incremental rehashing :
+     * migrates at most REHASH_STEP non empty buckets, and visits at most 10 * REHASH_STEP empty ones
+     * (as Redis does) so that the cost of an operation stays constant.
+     */
+    private void rehashStep() {
+        int oldM = 1 << this.oldL;
+        int emptyVisits = 10 * REHASH_STEP;
+        for (int moved = 0; moved < REHASH_STEP && this.rehashIndex < oldM; moved++) {
+            while (this.oldTable[this.rehashIndex] == null) {
+                this.rehashIndex++;
+                if (this.rehashIndex == oldM || --emptyVisits == 0) break;
+            }
+            if (this.rehashIndex == oldM || this.oldTable[this.rehashIndex] == null) break;
+            this.migrateBucket(this.rehashIndex++);
+        }
+        if (this.rehashIndex == oldM) {
+            this.oldTable = null;
+            this.oldTrees = null;
+        }
+    }
+
+    /**
+     * Migrates all the remaining old buckets
+     */
+    protected void completeRehash() {
+        if (this.oldTable == null) return;
+        int oldM = 1 << this.oldL;
+        if (this.parallelSafe && oldM - this.rehashIndex >= PARALLEL_THRESHOLD) {
+            this.migrateParallel();
+        } else {
+            for (int i = this.rehashIndex; i < oldM; i++) {
+                if (this.oldTable[i] != null) this.migrateBucket(i);
+            }
+        }
+        this.oldTable = null;
+        this.oldTrees = null;
+    }
+
+    /**
+     * Migrates all the remaining old buckets on the ForkJoinPool workers.
+     * Each task migrates an aligned block of old buckets : their elements go to a range of new
+     * buckets that no other task touches (top bits indexing), so no lock is needed.
+     * A block holds at least 2^(oldL - l) old buckets, the buckets that share a new bucket when
+     * the table shrinks.
+     */
+    private void migrateParallel() {
+        int oldM = 1 << this.oldL;
+        int shared = 1 << Math.max(0, this.oldL - this.l);
+        int blocks = Math.min(oldM / shared, tableSizeFor(4 * ForkJoinPool.getCommonPoolParallelism()));
+        int blockSize = oldM / blocks;
+        int from = this.rehashIndex;
+        forEachBlock(blocks, block -> {
+            int end = (block + 1) * blockSize;
+            for (int i = Math.max(from, block * blockSize); i < end; i++) {
+                if (this.oldTable[i] != null) this.migrateBucket(i);
+            }
+        });
+    }
+
+    /**
+     * Runs action(0), ..., action(blocks - 1) on the ForkJoinPool workers and waits for them
+     */
+    private static void forEachBlock(int blocks, IntConsumer action) {
+        ForkJoinPool.commonPool().invoke(new BlockTask(0, blocks, action));
+    }
+
+    /**
+     * A task running action on the blocks [from, to), split in halves down to one block
+     */
+    private static final class BlockTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        BlockTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                this.action.accept(this.from);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new BlockTask(this.from, mid, this.action), new BlockTask(mid, this.to, this.action));
+        }
+    }
+
+    /**
+     * The operations of this table are recorded in stats
+     */
+    @Override
+    protected boolean isInstrumented() {
+        return true;
+    }
+
+    /**
+     * Returns the number of buckets of each chain length, in table and oldTable
+     */
+    @Override
+    protected long[] chainLengthHistogram (){
+        long[] histogram = new long[HashTableStats.LENGTH_BUCKETS];
+        this.countChains(this.table, histogram);
+        if (this.oldTable != null) this.countChains(this.oldTable, histogram);
+        return histogram;
+    }
+
+    /**
+     * Returns an estimate of the memory of table, oldTable (during an incremental rehash) and the elements
+     */
+    @Override
+    public MemoryFootprint memoryFootprint (){
+        long arrays = MemoryFootprint.of(this.table) + MemoryFootprint.of(this.oldTable);
+        return new MemoryFootprint(this.n, this.m, arrays, (long) this.n * this.elementBytes(), 0);
+    }
+
+    private void countChains (Element<K,V>[] buckets, long[] histogram){
+        for (Element<K,V> p : buckets) {
+            int length = 0;
+            for (; p != null; p = p.next) length++;
+            histogram[Math.min(length, histogram.length - 1)]++;
+        }
+    }
+
+    /**
+     * Returns the element of the chain p with the specified key, or null
+     */
+    private Element<K,V> walk(Element<K,V> p, K key) {
+        while (p != null && !p.key.equals(key)){
+            p = p.next;
+        }
+        return p;
+    }
+
+    /**
+     * Returns the element of the bucket index of buckets with the specified key, or null.
+     * A treeified bucket is searched in its tree, a chain longer than TREEIFY_THRESHOLD
+     * is remembered to be reported by reportLongChain.
+     */
+    private Element<K,V> find(Element<K,V>[] buckets, int index, K key) {
+        TreeBin<K, Element<K,V>> bin = this.binOf(buckets, index);
+        if (bin != null && bin.map != null) {
+            Element<K,V> e = bin.get(key);
+            // a key can compare equal to another key without being equal to it (1.0 and 1.00)
+            return (e == null || e.key.equals(key)) ? e : this.walk(buckets[index], key);
+        }
+
+        Element<K,V> p = buckets[index];
+        int length = 0;
+        while (p != null && !p.key.equals(key)){
+            p = p.next;
+            length++;
+        }
+        if (length > TREEIFY_THRESHOLD && bin == null) {
+            this.longBuckets = buckets;
+            this.longIndex = index;
+        }
+        if (HashTableStats.ENABLED) this.stats.recordProbe(p == null ? length : length + 1);
+        return p;
+    }
+
+    /**
+     * Returns the tree of the bucket index of buckets (table or oldTable), or null
+     */
+    private TreeBin<K, Element<K,V>> binOf(Element<K,V>[] buckets, int index) {
+        TreeBin<K, Element<K,V>>[] bins = (buckets == this.table) ? this.trees : this.oldTrees;
+        return (bins == null) ? null : bins[index];
+    }
+
+    /**
+     * Links a new element at the head of the bucket index of table, and in its tree if any
+     */
+    private void link(int index, Element<K,V> elem) {
+        elem.next = this.table[index];
+        this.table[index] = elem;
+        if (this.isTreeified(index)) this.trees[index].add(elem.key, elem);
+    }
+
+    /**
+     * Reports the long chain met by the last lookup, if any, to onLongChain
+     */
+    private void reportLongChain() {
+        Element<K,V>[] buckets = this.longBuckets;
+        if (buckets == null) return;
+        this.longBuckets = null;
+        // the chain may have been migrated by a resize since the lookup
+        if (buckets == this.table || buckets == this.oldTable) this.onLongChain(buckets, this.longIndex);
+    }
+
+    /**
+     * Called when a lookup walked more than TREEIFY_THRESHOLD elements of the chain of the
+     * bucket index of buckets (table or oldTable).
+     * By default the bucket is treeified, a subclass can rehash the table instead.
+     */
+    protected void onLongChain(Element<K,V>[] buckets, int index) {
+        this.treeify(buckets, index);
+    }
+
+    /**
+     * Indexes the chain of the bucket index of buckets (table or oldTable) with a balanced tree.
+     * If the keys of the chain are not all Comparable instances of the same class, or if their
+     * compareTo is not consistent with equals, the bucket is marked as not treeifiable and stays a chain.
+     */
+    protected void treeify(Element<K,V>[] buckets, int index) {
+        TreeBin<K, Element<K,V>>[] bins = (buckets == this.table) ? this.trees : this.oldTrees;
+        if (bins == null) {
+            bins = (TreeBin<K, Element<K,V>>[]) new TreeBin[buckets.length];
+            if (buckets == this.table) this.trees = bins;
+            else this.oldTrees = bins;
+        }
+        Element<K,V> p = buckets[index];
+        if (p == null) return;
+        TreeBin<K, Element<K,V>> bin = new TreeBin<K, Element<K,V>>(p.key.getClass());
+        for (; p != null && bin.map != null; p = p.next){
+            if (!(p.key instanceof Comparable)) bin.map = null;
+            else bin.add(p.key, p);
+        }
+        bins[index] = bin;
+    }
+
+    /**
+     * Returns true if the bucket index of table is indexed by a tree
+     */
+    protected boolean isTreeified(int index) {
+        return this.trees != null && this.trees[index] != null && this.trees[index].map != null;
+    }
+
+    /**
+     * The tree index of a long chain : a TreeMap from the keys to the elements of the chain.
+     * A null map marks a bucket that cannot be treeified.
+     */
+    protected static final class TreeBin<K, E> {
+        /**
+         * The class of all the keys of the tree
+         */
+        final Class<?> keyClass;
+        TreeMap<K, E> map;
+
+        TreeBin(Class<?> keyClass) {
+            this.keyClass = keyClass;
+            this.map = new TreeMap<K, E>(HASH_ORDER);
+        }
+
+        /**
+         * Returns the element of the key, or null (a key of another class is not in the tree)
+         */
+        E get(Object key) {
+            if (key == null || key.getClass() != this.keyClass) return null;
+            return this.map.get(key);
+        }
+
+        /**
+         * Adds an element, the tree is dropped if the key cannot be ordered with the others
+         */
+        void add(K key, E elem) {
+            if (key == null || key.getClass() != this.keyClass || this.map.put(key, elem) != null) {
+                this.map = null;
             }
         }
+
+        /**
+         * Removes the element of a key present in the chain
+         */
+        void remove(Object key) {
+            this.map.remove(key);
+        }
+    }
+
+    /**
+     * Creates the element of a new (key, value), a subclass can return a subclass of Element
+     */
+    protected Element<K,V> newElement (K key, V value){
+        return new Element<K,V>(key, value);
+    }
+
+    /**
+     * Called after a new element is linked into the table (and after a possible resize)
+     */
+    protected void afterInsert (Element<K,V> e){
+    }
+
+    /**
+     * Called after insert has replaced the value of an existing element
+     */
+    protected void afterUpdate (Element<K,V> e){
+    }
+
+    /**
+     * Called after an element is unlinked from the table by delete
+     */
+    protected void afterRemove (Element<K,V> e){
     }
 
     /**
@@ -81,69 +607,372 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
      * If the hash table previously contained a mapping for the key, the old value is replaced.
      */
     public V insert (K key, V value){
+        if (!HashTableStats.ENABLED) return this.put(key, value);
+        long start = System.nanoTime();
+        V old = this.put(key, value);
+        this.stats.recordInsert(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The insertion itself, insert adds the latency statistics
+     */
+    private V put (K key, V value){
+        if (this.oldTable != null) this.rehashStep();
         int index = this.hash(key);
 
-        Element<K,V> p = this.table[index];
-        while (p != null && !p.key.equals(key)){
-            p = p.next;
-        }
+        Element<K,V> p = this.lookup(key, index);
         if (p == null) { // key does not exist in the Hash Table, so we add (key, value)
-            this.n++; // Increment the size
-            Element<K,V> elem = new Element<K,V>(key, value);
-            elem.next = this.table[index];
-            this.table[index] = elem;
-            
-            // Check if load factor exceeds MAX_LOAD and resize if needed
-            double loadFactor = (double) n / m;
-            if (loadFactor > MAX_LOAD) {
-                this.resize();
-            }
+            this.add(index, key, value);
             return null;
         }
         else{           // key already in the hash table, so we modify the value
             V old = p.value;
-            p.value = value;
+            this.update(p, value);
             return old;
         }
     }
 
     /**
-     * Search the value associated with a specified key in this hash table.
+     * Returns the element with the specified key, or null
+     * @param index the bucket of key in table
      */
-    public V search (K key){
+    private Element<K,V> lookup (K key, int index){
+        Element<K,V> p = this.find(this.table, index, key);
+        if (p == null && this.oldTable != null) { // the key may be in a bucket not migrated yet
+            p = this.find(this.oldTable, this.hash(key, this.oldL), key);
+        }
+        return p;
+    }
+
+    /**
+     * Adds (key, value) in the bucket index of table, the key is not in the table
+     */
+    private void add (int index, K key, V value){
+        this.n++; // Increment the size
+        Element<K,V> elem = this.newElement(key, value);
+        this.link(index, elem);
+
+        // Check if load factor exceeds MAX_LOAD and resize if needed
+        if (this.n > MAX_LOAD * this.m) {
+            this.resize();
+        }
+        this.reportLongChain();
+        this.afterInsert(elem);
+    }
+
+    /**
+     * Replaces the value of an element of the table
+     */
+    private void update (Element<K,V> p, V value){
+        p.value = value;
+        this.reportLongChain();
+        this.afterUpdate(p);
+    }
+
+    /**
+     * Associates value with key only if the key has no mapping, with a single walk of the chain.
+     * @return the current value of key, or null if value was inserted
+     */
+    @Override
+    public V putIfAbsent (K key, V value){
+        if (this.oldTable != null) this.rehashStep();
         int index = this.hash(key);
 
-        Element<K,V> p = this.table[index];
-        while (p != null && !p.key.equals(key)){
-            p = p.next;
+        Element<K,V> p = this.lookup(key, index);
+        if (p == null) {
+            this.add(index, key, value);
+            return null;
         }
+        this.reportLongChain();
+        return p.value;
+    }
+
+    /**
+     * Computes the new value of key from its current value (null if absent), with a single walk
+     * of the chain : the element is updated in place (a removal walks the chain again).
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    @Override
+    public V compute (K key, BiFunction<? super K, ? super V, ? extends V> remapping){
+        if (this.oldTable != null) this.rehashStep();
+        int index = this.hash(key);
+
+        Element<K,V> p = this.lookup(key, index);
+        V value = remapping.apply(key, (p == null) ? null : p.value);
+        if (value == null) {
+            this.reportLongChain();
+            if (p != null) this.remove(key);
+        }
+        else if (p == null) this.add(index, key, value);
+        else this.update(p, value);
+        return value;
+    }
+
+    /**
+     * Inserts value, or merges it with the current value of key, with a single walk of the chain :
+     * the element is updated in place (a removal walks the chain again).
+     * @return the new value of key, or null if there is no mapping anymore
+     */
+    @Override
+    public V merge (K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping){
+        Objects.requireNonNull(value, "value");
+        if (this.oldTable != null) this.rehashStep();
+        int index = this.hash(key);
+
+        Element<K,V> p = this.lookup(key, index);
+        if (p == null) {
+            this.add(index, key, value);
+            return value;
+        }
+        V merged = remapping.apply(p.value, value);
+        if (merged == null) {
+            this.reportLongChain();
+            this.remove(key);
+        }
+        else this.update(p, merged);
+        return merged;
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    public V search (K key){
+        if (!HashTableStats.ENABLED) return this.get(key);
+        long start = System.nanoTime();
+        V value = this.get(key);
+        this.stats.recordSearch(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * The search itself, search adds the latency statistics
+     */
+    private V get (K key){
+        Element<K,V> p = this.getElement(key);
         if (p == null) return null;
         else return p.value;
     }
 
+    /**
+     * Returns the element with the specified key, or null
+     */
+    protected Element<K,V> getElement (K key){
+        if (this.oldTable != null) this.rehashStep();
+        Element<K,V> p = this.lookup(key, this.hash(key));
+        this.reportLongChain();
+        return p;
+    }
+
+    /**
+     * Associates each keys[i] with values[i] in this hash table.
+     * The table is resized once to its final capacity, then each key is hashed once
+     * and linked without any load factor check.
+     */
+    @Override
+    public void insertAll (K[] keys, V[] values){
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values have different lengths: " + keys.length + " != " + values.length);
+        }
+        this.presize((int) Math.min(Integer.MAX_VALUE, (long) this.size() + keys.length));
+        for (int i = 0; i < keys.length; i++) {
+            K key = keys[i];
+            int index = this.hash(key);
+            Element<K,V> p = this.find(this.table, index, key);
+            if (p == null) {
+                Element<K,V> elem = this.newElement(key, values[i]);
+                this.link(index, elem);
+                this.n++;
+                this.reportLongChain();
+                this.afterInsert(elem);
+            } else {
+                p.value = values[i];
+                this.reportLongChain();
+                this.afterUpdate(p);
+            }
+        }
+    }
+
+    /**
+     * Associates each keys[i] with values[i] in this hash table, on the ForkJoinPool workers.
+     * The table is resized once to its final capacity, then the keys are hashed in parallel and
+     * partitioned by the prefix of their index (a stable counting sort), and each worker links the
+     * keys of its partitions into its own range of buckets, without any lock.
+     * As in insertAll, a key present several times takes its last value.
+     *
+     * The long chains are not reported during the build, the next lookups report them.
+     * Below PARALLEL_THRESHOLD keys, or when the table has treeified buckets, this is insertAll.
+     */
+    public void insertAllParallel (K[] keys, V[] values){
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values have different lengths: " + keys.length + " != " + values.length);
+        }
+        this.presize((int) Math.min(Integer.MAX_VALUE, (long) this.size() + keys.length));
+        if (keys.length < PARALLEL_THRESHOLD || this.trees != null) {
+            this.insertAll(keys, values);
+            return;
+        }
+
+        int length = keys.length;
+        int tasks = tableSizeFor(4 * ForkJoinPool.getCommonPoolParallelism());
+        int partitionBits = Math.min(this.l, Integer.numberOfTrailingZeros(tasks));
+        int partitions = 1 << partitionBits;
+        int shift = this.l - partitionBits;
+        int chunks = tasks;
+        int chunkSize = (length + chunks - 1) / chunks;
+
+        // 1. hash the keys and count the keys of each partition in each chunk of the input
+        int[] index = new int[length];
+        int[][] counts = new int[chunks][partitions];
+        forEachBlock(chunks, chunk -> {
+            int[] count = counts[chunk];
+            int end = Math.min(length, (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < end; i++) {
+                index[i] = this.hash(keys[i]);
+                count[index[i] >>> shift]++;
+            }
+        });
+
+        // 2. the position of each (partition, chunk) in the sorted order, then scatter the positions
+        int[] partitionStart = new int[partitions + 1];
+        int position = 0;
+        for (int p = 0; p < partitions; p++) {
+            partitionStart[p] = position;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int count = counts[chunk][p];
+                counts[chunk][p] = position;
+                position += count;
+            }
+        }
+        partitionStart[partitions] = position;
+        int[] order = new int[length];
+        forEachBlock(chunks, chunk -> {
+            int[] next = counts[chunk];
+            int end = Math.min(length, (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < end; i++) {
+                order[next[index[i] >>> shift]++] = i;
+            }
+        });
+
+        // 3. each partition is linked into its own range of buckets
+        int[] added = new int[partitions];
+        forEachBlock(partitions, p -> {
+            Element<K,V>[] buckets = this.table;
+            int count = 0;
+            for (int j = partitionStart[p]; j < partitionStart[p + 1]; j++) {
+                int i = order[j];
+                Element<K,V> e = this.walk(buckets[index[i]], keys[i]);
+                if (e == null) {
+                    e = this.newElement(keys[i], values[i]);
+                    e.next = buckets[index[i]];
+                    buckets[index[i]] = e;
+                    count++;
+                } else {
+                    e.value = values[i];
+                }
+            }
+            added[p] = count;
+        });
+        for (int count : added) this.n += count;
+    }
+
+    /**
+     * Searches the values associated with a batch of keys.
+     * Each group of BATCH keys is processed in passes : hash all the keys, then load all the
+     * bucket heads (independent memory loads the CPU can overlap), then walk the chains.
+     */
+    @Override
+    public V[] searchAll (K[] keys, V[] results){
+        if (this.oldTable != null) return super.searchAll(keys, results);
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("results is shorter than keys: " + results.length + " < " + keys.length);
+        }
+        int[] index = new int[BATCH];
+        Element<K,V>[] heads = (Element<K,V>[]) new Element[BATCH];
+        Element<K,V>[] buckets = this.table;
+        for (int start = 0; start < keys.length; start += BATCH) {
+            int count = Math.min(BATCH, keys.length - start);
+            for (int j = 0; j < count; j++) {
+                index[j] = this.hash(keys[start + j]);
+            }
+            for (int j = 0; j < count; j++) {
+                heads[j] = buckets[index[j]];
+            }
+            for (int j = 0; j < count; j++) {
+                // a treeified bucket is searched in its tree
+                Element<K,V> p = (this.trees == null) ? this.walk(heads[j], keys[start + j])
+                                                      : this.find(buckets, index[j], keys[start + j]);
+                results[start + j] = (p == null) ? null : p.value;
+            }
+        }
+        return results;
+    }
+
     /**
      * Removes the mapping for a key from this hash table if it is present.
      */
     public V delete (K key){
-        int index = this.hash(key);
-        Element<K,V> p = this.table[index];
-        Element<K,V> prev = null;
-        
-        while (p != null && !p.key.equals(key)){
-            prev = p;
-            p = p.next;
+        if (!HashTableStats.ENABLED) return this.remove(key);
+        long start = System.nanoTime();
+        V old = this.remove(key);
+        this.stats.recordDelete(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The deletion itself, delete adds the latency statistics
+     */
+    private V remove (K key){
+        if (this.oldTable != null) this.rehashStep();
+        V old = this.unlink(this.table, this.hash(key), key);
+        if (old == null && this.oldTable != null) {
+            old = this.unlink(this.oldTable, this.hash(key, this.oldL), key);
+        }
+        // halve the table when it becomes too sparse (not during a migration)
+        if (old != null && this.oldTable == null && this.shouldShrink()) {
+            this.rehash(this.l - 1, this.incremental);
         }
+        return old;
+    }
 
-        if (p == null) return null;
+    /**
+     * Removes the element with the specified key from the bucket index of buckets
+     * @return the value of the removed element, or null if the bucket does not contain the key
+     */
+    private V unlink (Element<K,V>[] buckets, int index, K key){
+        Element<K,V> p = buckets[index];
+        Element<K,V> prev = null;
+        TreeBin<K, Element<K,V>> bin = this.binOf(buckets, index);
+
+        Element<K,V> target = (bin != null && bin.map != null) ? bin.get(key) : null;
+        if (target != null && target.key.equals(key)) {
+            // the tree finds the element, the chain is then walked by reference only
+            bin.remove(key);
+            while (p != target){
+                prev = p;
+                p = p.next;
+            }
+        } else if (target == null && bin != null && bin.map != null) {
+            return null;
+        } else {
+            // a chain, or a tree that found a key comparing equal to key without being equal to it
+            while (p != null && !p.key.equals(key)){
+                prev = p;
+                p = p.next;
+            }
+            if (p == null) return null;
+            if (target != null) bin.map = null;  // the tree cannot index this bucket
+        }
         
         this.n--;
         V old = p.value;
         
         if(prev == null){
-            this.table[index] = p.next;
+            buckets[index] = p.next;
         } else {
             prev.next = p.next;
         }
+        this.afterRemove(p);
         
         return old;
     }
@@ -153,15 +982,23 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
      */
     public List<K> keys (){
         List<K> keys = new LinkedList<K>();
+        if (this.oldTable != null) this.addKeys(this.oldTable, keys);
+        this.addKeys(this.table, keys);
+        return keys;
+    }
+
+    /**
+     * Adds the keys of all the chains of buckets to the list keys
+     */
+    private void addKeys (Element<K,V>[] buckets, List<K> keys){
         Element<K,V> p;
-        for (int i = 0; i < m; i++){
-            p = this.table[i];
+        for (int i = 0; i < buckets.length; i++){
+            p = buckets[i];
             while (p != null){
                 keys.add(p.key);
                 p = p.next;
             }
         }
-        return keys;
     }
 
     /**
@@ -169,15 +1006,126 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
      */
     public List<V> values (){
         List<V> values = new LinkedList<V>();
+        if (this.oldTable != null) this.addValues(this.oldTable, values);
+        this.addValues(this.table, values);
+        return values;
+    }
+
+    /**
+     * Adds the values of all the chains of buckets to the list values
+     */
+    private void addValues (Element<K,V>[] buckets, List<V> values){
         Element<K,V> p;
-        for (int i = 0; i < m; i++){
-            p = this.table[i];
+        for (int i = 0; i < buckets.length; i++){
+            p = buckets[i];
             while (p != null){
                 values.add(p.value);
                 p = p.next;
             }
         }
-        return values;
+    }
+
+    /**
+     * Performs the given action for each (key, value) of this hash table,
+     * walking the buckets in the order of the array.
+     * A pending incremental rehash is completed first (it costs less than the walk).
+     */
+    @Override
+    public void forEach (BiConsumer<? super K, ? super V> action){
+        if (this.oldTable != null) this.completeRehash();
+        Element<K,V>[] buckets = this.table;
+        for (int i = 0; i < buckets.length; i++){
+            for (Element<K,V> p = buckets[i]; p != null; p = p.next){
+                action.accept(p.key, p.value);
+            }
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     * A pending incremental rehash is completed first.
+     */
+    @Override
+    public Cursor<K,V> cursor (){
+        if (this.oldTable != null) this.completeRehash();
+        return new BucketCursor();
+    }
+
+    /**
+     * Returns a spliterator over the elements of this hash table, it splits the bucket array.
+     * A pending incremental rehash is completed first.
+     */
+    @Override
+    public Spliterator<Map.Entry<K,V>> spliterator (){
+        if (this.oldTable != null) this.completeRehash();
+        return new BucketSpliterator(this.table, 0, this.table.length);
+    }
+
+    /**
+     * A cursor walking the chains of the buckets in the order of the array
+     */
+    private class BucketCursor implements Cursor<K,V> {
+        private int index = -1;
+        private Element<K,V> e;
+
+        public boolean advance (){
+            if (e != null) e = e.next;
+            while (e == null){
+                if (++index >= table.length) return false;
+                e = table[index];
+            }
+            return true;
+        }
+
+        public K key (){
+            return e.key;
+        }
+
+        public V value (){
+            return e.value;
+        }
+
+        public void reset (){
+            if (oldTable != null) completeRehash();
+            index = -1;
+            e = null;
+        }
+    }
+
+    /**
+     * A spliterator over the chains of the buckets [index, fence)
+     */
+    private class BucketSpliterator extends SlotSpliterator {
+        private final Element<K,V>[] buckets;
+        private Element<K,V> e;
+
+        BucketSpliterator (Element<K,V>[] buckets, int origin, int fence){
+            super(origin, fence);
+            this.buckets = buckets;
+        }
+
+        protected SlotSpliterator split (int origin, int fence){
+            return new BucketSpliterator(buckets, origin, fence);
+        }
+
+        public boolean tryAdvance (Consumer<? super Map.Entry<K,V>> action){
+            while (e == null){
+                if (index >= fence) return false;
+                e = buckets[index++];
+            }
+            Element<K,V> p = e;
+            e = p.next;
+            action.accept(p);
+            return true;
+        }
+
+        public void forEachRemaining (Consumer<? super Map.Entry<K,V>> action){
+            for (Element<K,V> p = e; p != null; p = p.next) action.accept(p);
+            e = null;
+            for (; index < fence; index++){
+                for (Element<K,V> p = buckets[index]; p != null; p = p.next) action.accept(p);
+            }
+        }
     }
 
     /**
@@ -187,6 +1135,29 @@ public class StaticHashTable<K, V> extends HashTable<K, V> {
         for (int i = 0; i < m; i++){
             this.table[i] = null;
         }
+        this.oldTable = null;
+        this.trees = null;
+        this.oldTrees = null;
+        this.n = 0;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table,
+     * with release the table returns to its initial capacity.
+     */
+    @Override
+    public void clear (boolean release){
+        if (release) this.minCapacity = this.initialCapacity;
+        if (!release || this.m == this.initialCapacity) {
+            this.clear();
+            return;
+        }
+        this.l = Integer.numberOfTrailingZeros(this.initialCapacity);
+        this.m = this.initialCapacity;
+        this.table = (Element<K,V>[]) new Element[this.m];
+        this.oldTable = null;
+        this.trees = null;
+        this.oldTrees = null;
         this.n = 0;
     }
 }
@@ -0,0 +1,50 @@
+package ilsi.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The scalar GroupMatcher : a group of 16 control bytes is read as two longs and its bytes
+ * are compared with bit tricks on the whole words (SIMD within a register).
+ */
+final class SwarGroupMatcher extends GroupMatcher {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LSB = 0x0101010101010101L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long MSB = 0x8080808080808080L;
+    private static final long EMPTY_PATTERN = (EMPTY & 0xFFL) * LSB;
+
+    long probe(byte[] ctrl, int base, byte h2) {
+        long lo = (long) LONGS.get(ctrl, base);
+        long hi = (long) LONGS.get(ctrl, base + 8);
+        long pattern = (h2 & 0xFFL) * LSB;
+        long match = lanes(equal(lo, pattern)) | lanes(equal(hi, pattern)) << 8;
+        long empty = lanes(equal(lo, EMPTY_PATTERN)) | lanes(equal(hi, EMPTY_PATTERN)) << 8;
+        return match | empty << GROUP;
+    }
+
+    long matchFree(byte[] ctrl, int base) {
+        long lo = (long) LONGS.get(ctrl, base);
+        long hi = (long) LONGS.get(ctrl, base + 8);
+        return lanes(lo & MSB) | lanes(hi & MSB) << 8;  // EMPTY and DELETED are negative
+    }
+
+    /**
+     * Returns a word with the high bit of the byte i set if the bytes i of x and pattern are equal
+     * (exact : no false positive, unlike the usual haszero trick)
+     */
+    private static long equal(long x, long pattern) {
+        long y = x ^ pattern;
+        return ~(((y & LOW7) + LOW7) | y | LOW7);
+    }
+
+    /**
+     * Gathers the high bits of the 8 bytes of a word into the 8 low bits of the result
+     */
+    private static long lanes(long highBits) {
+        return ((highBits >>> 7) * 0x0102040810204080L) >>> 56;
+    }
+}
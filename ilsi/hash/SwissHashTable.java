@@ -0,0 +1,514 @@
+package ilsi.hash;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static ilsi.hash.GroupMatcher.DELETED;
+import static ilsi.hash.GroupMatcher.EMPTY;
+import static ilsi.hash.GroupMatcher.GROUP;
+
+/**
+ * The classe SwissHashTable represent a hash table with Open Addressing in the style of
+ * Abseil's SwissTable.
+ *
+ * A separate array of control bytes has one byte per slot : EMPTY, DELETED, or 7 bits of the
+ * hash of the key (its fingerprint h2) for a full slot. The slots are probed by groups of
+ * 16 : the 16 control bytes of a group are compared with the fingerprint at once (GroupMatcher,
+ * with the Vector API when it is available), and equals is called only on the slots whose
+ * fingerprint matches, so a miss almost never calls equals (1 chance in 128 per full slot).
+ * A probe stops at the first group with an EMPTY slot. The groups of a probe sequence are
+ * visited by triangular steps (g, g+1, g+3, g+6, ...), which visits every group.
+ *
+ * The keys and values are stored in flat arrays (no Element objects),
+ * and the default max load factor is 0.875.
+ */
+public class SwissHashTable<K, V> extends HashTable<K, V> {
+
+    /**
+     * The default max load factor of a Swiss table, the full and deleted slots both count
+     */
+    public static final double DEFAULT_MAX_LOAD = 0.875;
+
+    private static final GroupMatcher MATCHER = GroupMatcher.INSTANCE;
+
+    /**
+     * The max load factor of this table
+     */
+    protected final double maxLoad;
+
+    /**
+     * The number of bits of a group index : m = GROUP * 2^groupBits
+     */
+    protected int groupBits;
+
+    /**
+     * The shift of the fingerprint : its 7 bits are just below the bits of the group index
+     */
+    protected int h2Shift;
+
+    /**
+     * The control byte of each slot
+     */
+    protected byte[] ctrl;
+
+    protected Object[] keys;
+    protected Object[] vals;
+
+    /**
+     * The number of DELETED slots
+     */
+    protected int deleted;
+
+    /**
+     * Constructs a new empty SwissHashTable with a default initial capacity (32)
+     * and max load factor (0.875).
+     */
+    public SwissHashTable() {
+        this(32);
+    }
+
+    /**
+     * Constructs a new empty SwissHashTable with the specified initial capacity
+     * (rounded up to a power of two, at least 2 groups) and max load factor (0.875).
+     * @param capacity initial capacity of the hash table
+     */
+    public SwissHashTable(int capacity) {
+        this(capacity, DEFAULT_MAX_LOAD);
+    }
+
+    /**
+     * Constructs a new empty SwissHashTable with the specified initial capacity
+     * (rounded up to a power of two, at least 2 groups) and max load factor.
+     * @param capacity initial capacity of the hash table
+     * @param maxLoad the max load factor, in ]0, 1[
+     */
+    public SwissHashTable(int capacity, double maxLoad) {
+        this(capacity, maxLoad, HashStrategies.FIBONACCI);
+    }
+
+    /**
+     * Constructs a new empty SwissHashTable with the specified initial capacity
+     * (rounded up to a power of two, at least 2 groups), max load factor and hash function.
+     * @param capacity initial capacity of the hash table
+     * @param maxLoad the max load factor, in ]0, 1[
+     * @param hashStrategy the hash function of the keys
+     */
+    public SwissHashTable(int capacity, double maxLoad, HashStrategy hashStrategy) {
+        super(0, false, hashStrategy);
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("Illegal max load factor: " + maxLoad);
+        }
+        this.maxLoad = maxLoad;
+        this.allocate(Integer.numberOfTrailingZeros(tableSizeFor(Math.max(2 * GROUP, capacity)) / GROUP));
+        this.minCapacity = m;
+        this.initialCapacity = m;
+    }
+
+    /**
+     * Returns a new empty SwissHashTable large enough to receive expectedEntries mappings
+     * without any resize.
+     * @param expectedEntries the number of mappings the table will hold
+     */
+    public static <K, V> SwissHashTable<K, V> withExpectedSize(int expectedEntries) {
+        SwissHashTable<K, V> t = new SwissHashTable<K, V>(2 * GROUP);
+        t.ensureCapacity(expectedEntries);
+        return t;
+    }
+
+    /**
+     * Allocates empty arrays of 2^groupBits groups
+     */
+    private void allocate(int groupBits) {
+        this.groupBits = groupBits;
+        this.h2Shift = Math.max(0, 25 - groupBits);
+        this.m = GROUP << groupBits;
+        this.ctrl = new byte[m];
+        Arrays.fill(this.ctrl, EMPTY);
+        this.keys = new Object[m];
+        this.vals = new Object[m];
+        this.deleted = 0;
+    }
+
+    /**
+     * Spreads the hash code of a key with the hash strategy (Fibonacci hashing by default)
+     */
+    private int spread(Object key) {
+        return hashStrategy.hash(key.hashCode());
+    }
+
+    /**
+     * Returns the first group of the probe sequence of a spread hash code : its high bits
+     */
+    private int group(int h) {
+        return h >>> (32 - groupBits);
+    }
+
+    /**
+     * Returns the fingerprint of a spread hash code : the 7 bits below the group index
+     */
+    private byte h2(int h) {
+        return (byte) ((h >>> h2Shift) & 0x7F);
+    }
+
+    /**
+     * Hashes a key to the first group of its probe sequence
+     * @param key the key to be hashed
+     * @return int - the hash value
+     */
+    @Override
+    protected int hash(K key) {
+        return group(spread(key));
+    }
+
+    /**
+     * Returns the slot containing key, or -1 if the key is not in the table
+     */
+    private int indexOf(Object key, int h) {
+        byte h2 = h2(h);
+        int mask = (1 << groupBits) - 1;
+        int g = group(h);
+        for (int step = 1; ; step++) {
+            int base = g * GROUP;
+            long bits = MATCHER.probe(ctrl, base, h2);
+            for (long match = bits & 0xFFFF; match != 0; match &= match - 1) {
+                int i = base + Long.numberOfTrailingZeros(match);
+                if (keys[i].equals(key)) {
+                    if (HashTableStats.ENABLED) stats.recordProbe(step);
+                    return i;
+                }
+            }
+            // a group with an EMPTY slot ends every probe sequence that reaches it
+            if ((bits >>> GROUP) != 0) {
+                if (HashTableStats.ENABLED) stats.recordProbe(step);
+                return -1;
+            }
+            g = (g + step) & mask;
+        }
+    }
+
+    /**
+     * Returns the first EMPTY or DELETED slot of the probe sequence of h
+     */
+    private int freeSlot(int h) {
+        int mask = (1 << groupBits) - 1;
+        int g = group(h);
+        for (int step = 1; ; step++) {
+            int base = g * GROUP;
+            long free = MATCHER.matchFree(ctrl, base);
+            if (free != 0) return base + Long.numberOfTrailingZeros(free);
+            g = (g + step) & mask;
+        }
+    }
+
+    /**
+     * Search the value associated with a specified key in this hash table.
+     */
+    @Override
+    public V search(K key) {
+        if (!HashTableStats.ENABLED) return get(key);
+        long start = System.nanoTime();
+        V value = get(key);
+        stats.recordSearch(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * The search itself, search adds the latency statistics
+     */
+    private V get(K key) {
+        int index = indexOf(key, spread(key));
+        return index < 0 ? null : (V) vals[index];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this hash table.
+     * If the hash table previously contained a mapping for the key, the old value is replaced.
+     */
+    @Override
+    public V insert(K key, V value) {
+        if (!HashTableStats.ENABLED) return put(key, value);
+        long start = System.nanoTime();
+        V old = put(key, value);
+        stats.recordInsert(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The insertion itself, insert adds the latency statistics
+     */
+    private V put(K key, V value) {
+        int h = spread(key);
+        int index = indexOf(key, h);
+        if (index >= 0) {
+            V old = (V) vals[index];
+            vals[index] = value;
+            return old;
+        }
+
+        if (n + deleted + 1 > maxLoad * m) {
+            // mostly tombstones : rehash at the same size to drop them
+            resize(n + 1 > maxLoad * m / 2 ? groupBits + 1 : groupBits);
+        }
+        place(key, value, h);
+        n++;
+        return null;
+    }
+
+    /**
+     * Places a new entry (its key is not in the table) in the first free slot of its probe sequence
+     */
+    private void place(Object key, Object value, int h) {
+        int i = freeSlot(h);
+        if (ctrl[i] == DELETED) deleted--;
+        ctrl[i] = h2(h);
+        keys[i] = key;
+        vals[i] = value;
+    }
+
+    /**
+     * Rebuilds the table with 2^newGroupBits groups
+     */
+    protected void resize(int newGroupBits) {
+        long start = HashTableStats.ENABLED ? System.nanoTime() : 0L;
+        byte[] oldCtrl = ctrl;
+        Object[] oldKeys = keys;
+        Object[] oldVals = vals;
+
+        allocate(newGroupBits);
+        for (int i = 0; i < oldCtrl.length; i++) {
+            if (oldCtrl[i] >= 0) {
+                place(oldKeys[i], oldVals[i], spread(oldKeys[i]));
+            }
+        }
+        if (HashTableStats.ENABLED) stats.recordResize(oldCtrl.length, System.nanoTime() - start);
+    }
+
+    /**
+     * The operations of this table are recorded in stats
+     */
+    @Override
+    protected boolean isInstrumented() {
+        return true;
+    }
+
+    /**
+     * Returns the number of DELETED slots
+     */
+    @Override
+    protected int tombstoneCount() {
+        return deleted;
+    }
+
+    /**
+     * Makes room for expectedEntries mappings with a single rehash
+     */
+    @Override
+    public void ensureCapacity(int expectedEntries) {
+        presize(expectedEntries);
+        reserveCapacity(Math.max(2 * GROUP, capacityFor(expectedEntries, maxLoad)));
+    }
+
+    /**
+     * Makes room for expectedEntries mappings without raising minCapacity
+     */
+    @Override
+    protected void presize(int expectedEntries) {
+        int newGroupBits = Integer.numberOfTrailingZeros(Math.max(2 * GROUP, capacityFor(expectedEntries, maxLoad)) / GROUP);
+        if (newGroupBits > groupBits) resize(newGroupBits);
+    }
+
+    /**
+     * Removes the mapping for a key from this hash table if it is present.
+     * The slot becomes EMPTY if its group has an EMPTY slot (no probe sequence goes
+     * through that group), DELETED otherwise.
+     */
+    @Override
+    public V delete(K key) {
+        if (!HashTableStats.ENABLED) return remove(key);
+        long start = System.nanoTime();
+        V old = remove(key);
+        stats.recordDelete(System.nanoTime() - start);
+        return old;
+    }
+
+    /**
+     * The deletion itself, delete adds the latency statistics
+     */
+    private V remove(K key) {
+        int index = indexOf(key, spread(key));
+        if (index < 0) return null;
+
+        V old = (V) vals[index];
+        int base = index & -GROUP;
+        if ((MATCHER.probe(ctrl, base, (byte) 0) >>> GROUP) != 0) {
+            ctrl[index] = EMPTY;
+        } else {
+            ctrl[index] = DELETED;
+            deleted++;
+        }
+        keys[index] = null;
+        vals[index] = null;
+        n--;
+        if (shouldShrink()) {
+            // halve the table when it becomes too sparse (the DELETED slots are dropped too)
+            resize(groupBits - 1);
+        }
+        return old;
+    }
+
+    /**
+     * Returns a list of the keys contained in this hash table.
+     */
+    @Override
+    public List<K> keys() {
+        List<K> list = new LinkedList<K>();
+        for (int i = 0; i < m; i++) {
+            if (ctrl[i] >= 0) list.add((K) keys[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a list of the values contained in this hash table.
+     */
+    @Override
+    public List<V> values() {
+        List<V> list = new LinkedList<V>();
+        for (int i = 0; i < m; i++) {
+            if (ctrl[i] >= 0) list.add((V) vals[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Performs the given action for each (key, value) of this hash table, in the order of the slots.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < m; i++) {
+            if (ctrl[i] >= 0) action.accept((K) keys[i], (V) vals[i]);
+        }
+    }
+
+    /**
+     * Returns a reusable cursor over the (key, value) of this hash table.
+     */
+    @Override
+    public Cursor<K, V> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Returns a spliterator over the entries of this hash table, it splits the slot arrays.
+     * The entries are immutable copies, there is no entry object in the table.
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new EntrySpliterator(0, m);
+    }
+
+    /**
+     * A cursor walking the slots in the order of the arrays
+     */
+    private class SlotCursor implements Cursor<K, V> {
+        private int index = -1;
+
+        public boolean advance() {
+            while (++index < m) {
+                if (ctrl[index] >= 0) return true;
+            }
+            return false;
+        }
+
+        public K key() {
+            return (K) keys[index];
+        }
+
+        public V value() {
+            return (V) vals[index];
+        }
+
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /**
+     * A spliterator over the entries of the slots [index, fence)
+     */
+    private class EntrySpliterator extends SlotSpliterator {
+
+        EntrySpliterator(int origin, int fence) {
+            super(origin, fence);
+        }
+
+        protected SlotSpliterator split(int origin, int fence) {
+            return new EntrySpliterator(origin, fence);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            while (index < fence) {
+                int i = index++;
+                if (ctrl[i] >= 0) {
+                    action.accept(new AbstractMap.SimpleImmutableEntry<K, V>((K) keys[i], (V) vals[i]));
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < m; i++) {
+            ctrl[i] = EMPTY;
+            keys[i] = null;
+            vals[i] = null;
+        }
+        deleted = 0;
+        n = 0;
+    }
+
+    /**
+     * Removes all of the (key, value) from this hash table,
+     * with release the table returns to its initial capacity.
+     */
+    @Override
+    public void clear(boolean release) {
+        if (release) minCapacity = initialCapacity;
+        if (!release || m == initialCapacity) {
+            clear();
+            return;
+        }
+        allocate(Integer.numberOfTrailingZeros(initialCapacity / GROUP));
+        n = 0;
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds its entries below maxLoad
+     * (at least 2 groups), and drops the DELETED slots
+     */
+    @Override
+    public void trimToSize() {
+        int newGroupBits = Integer.numberOfTrailingZeros(Math.max(2 * GROUP, capacityFor(n, maxLoad)) / GROUP);
+        if (newGroupBits < groupBits || deleted > 0) resize(Math.min(newGroupBits, groupBits));
+    }
+
+    /**
+     * Returns an estimate of the memory of the control bytes and the slot arrays
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long arrays = MemoryFootprint.of(ctrl) + MemoryFootprint.of(keys) + MemoryFootprint.of(vals);
+        return new MemoryFootprint(n, m, arrays, 0, 0);
+    }
+}
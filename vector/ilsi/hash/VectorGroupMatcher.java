@@ -0,0 +1,31 @@
+package ilsi.hash;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The GroupMatcher of the Vector API : a group of 16 control bytes is one 128-bit vector,
+ * compared with one instruction (SSE2 / NEON) and turned into a bit mask.
+ * This class is only loaded when the module jdk.incubator.vector is present.
+ * It is in its own source root, the only one compiled with --add-modules jdk.incubator.vector.
+ */
+final class VectorGroupMatcher extends GroupMatcher {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+    VectorGroupMatcher() {
+        // without 128-bit vectors the Vector API runs in Java code, slower than SWAR
+        if (ByteVector.SPECIES_PREFERRED.vectorBitSize() < SPECIES.vectorBitSize()) {
+            throw new UnsupportedOperationException("No 128-bit vectors on this platform");
+        }
+    }
+
+    long probe(byte[] ctrl, int base, byte h2) {
+        ByteVector v = ByteVector.fromArray(SPECIES, ctrl, base);
+        return v.eq(h2).toLong() | v.eq(EMPTY).toLong() << GROUP;
+    }
+
+    long matchFree(byte[] ctrl, int base) {
+        return ByteVector.fromArray(SPECIES, ctrl, base).lt((byte) 0).toLong();  // EMPTY and DELETED are negative
+    }
+}